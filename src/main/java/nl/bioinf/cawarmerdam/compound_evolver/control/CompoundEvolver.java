@@ -161,11 +161,14 @@ import org.apache.commons.lang3.tuple.ImmutablePair;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 
 /**
@@ -174,17 +177,30 @@ import java.util.stream.Collectors;
  * @version 0.0.1
  */
 public class CompoundEvolver {
-    private ExecutorService executor;
+    private ExecutorService validationExecutor;
+    private ExecutorService scoringExecutor;
     private final Map<Long, Integer> clashingConformerCounter = new HashMap<>();
     private final Map<Long, Integer> tooDistantConformerCounter = new HashMap<>();
-    private final List<List<Double>> scores = new ArrayList<>();
+    private final EvolutionStatistics statistics = new EvolutionStatistics();
+    private final PipelineStatistics pipelineStatistics = new PipelineStatistics();
     private Path pipelineOutputFilePath;
     private ConformerOption conformerOption;
     private ForceField forceField;
     private ScoringOption scoringOption;
     private TerminationCondition terminationCondition;
+    private EvolutionMode evolutionMode = EvolutionMode.GENERATIONAL;
+    private int islandCount = 1;
+    private int migrationInterval = 5;
+    private int migrantCount = 1;
+    private MigrationTopology migrationTopology = MigrationTopology.RING;
+    private final List<Population.SelectionMethod> islandSelectionMethods = new ArrayList<>();
+    private final List<Population.MutationMethod> islandMutationMethods = new ArrayList<>();
     private List<PipelineStep<Candidate, Void>> pipe;
     private List<PipelineStep<Candidate, Candidate>> pipe2;
+    private List<StagedPipeline<Candidate, Void>> stagedPipe;
+    private SharedLigandPreparation ligandPreparation;
+    private final List<String> pipelineSignatures = new ArrayList<>();
+    private ScoreCache scoreCache;
     private Population population;
     private final EvolutionProgressConnector evolutionProgressConnector;
     private FitnessMeasure fitnessMeasure;
@@ -195,7 +211,7 @@ public class CompoundEvolver {
     private double nonImprovingGenerationAmountFactor;
     private boolean dummyFitness;
     private int targetCandidateCount;
-    private int candidatesScored;
+    private final AtomicInteger candidatesScored = new AtomicInteger();
     private GenerationDataFileManager manager;
     private boolean selective;
     private boolean prepareReceptor;
@@ -213,6 +229,9 @@ public class CompoundEvolver {
     public CompoundEvolver(Population population, EvolutionProgressConnector evolutionProgressConnector) {
         this.population = population;
         this.evolutionProgressConnector = evolutionProgressConnector;
+        this.population.setStatistics(statistics);
+        this.evolutionProgressConnector.setStatistics(statistics);
+        this.evolutionProgressConnector.setPipelineStatistics(pipelineStatistics);
         this.maxNumberOfGenerations = 25;
         this.maximumAllowedDuration = 600000;
         this.forceField = ForceField.MAB;
@@ -243,12 +262,21 @@ public class CompoundEvolver {
     }
 
     /**
-     * Getter for the fitness of candidates in every generationNumber so far.
+     * Getter for the statistics of the fitness of candidates in every generation so far.
      *
-     * @return a list of lists of fitness scores
+     * @return the statistics of the fitness scores.
      */
-    public List<List<Double>> getFitness() {
-        return scores;
+    public EvolutionStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Getter for the latencies and outcomes of the pipeline steps of every receptor.
+     *
+     * @return the statistics of the pipeline steps.
+     */
+    public PipelineStatistics getPipelineStatistics() {
+        return pipelineStatistics;
     }
 
     /**
@@ -436,6 +464,87 @@ public class CompoundEvolver {
         return terminationCondition;
     }
 
+    /**
+     * Getter for the evolution mode.
+     *
+     * @return the evolution mode.
+     */
+    public EvolutionMode getEvolutionMode() {
+        return evolutionMode;
+    }
+
+    /**
+     * Setter for the evolution mode.
+     *
+     * @param evolutionMode The evolution mode.
+     */
+    public void setEvolutionMode(EvolutionMode evolutionMode) {
+        this.evolutionMode = evolutionMode;
+    }
+
+    /**
+     * Setter for the amount of islands, populations that evolve in parallel and exchange their best candidates.
+     * Islands are only used in the generational evolution mode.
+     *
+     * @param islandCount The amount of islands, 1 to evolve a single population.
+     */
+    public void setIslandCount(int islandCount) {
+        if (islandCount < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "The island count should be at least 1, got %d", islandCount));
+        }
+        this.islandCount = islandCount;
+    }
+
+    /**
+     * Setter for the amount of generations between two migrations.
+     *
+     * @param migrationInterval The amount of generations between two migrations, 0 to never migrate.
+     */
+    public void setMigrationInterval(int migrationInterval) {
+        this.migrationInterval = migrationInterval;
+    }
+
+    /**
+     * Setter for the amount of fittest candidates that migrate from an island in a single migration.
+     *
+     * @param migrantCount The amount of migrating candidates per island.
+     */
+    public void setMigrantCount(int migrantCount) {
+        this.migrantCount = migrantCount;
+    }
+
+    /**
+     * Setter for the topology that determines to which islands candidates migrate.
+     *
+     * @param migrationTopology The migration topology.
+     */
+    public void setMigrationTopology(MigrationTopology migrationTopology) {
+        this.migrationTopology = migrationTopology;
+    }
+
+    /**
+     * Setter for the selection methods of the islands. Island i uses the selection method at i modulo the amount
+     * of methods. When no methods are given, every island uses the selection method of the initial population.
+     *
+     * @param selectionMethods The selection methods of the islands.
+     */
+    public void setIslandSelectionMethods(List<Population.SelectionMethod> selectionMethods) {
+        this.islandSelectionMethods.clear();
+        this.islandSelectionMethods.addAll(selectionMethods);
+    }
+
+    /**
+     * Setter for the mutation methods of the islands. Island i uses the mutation method at i modulo the amount
+     * of methods. When no methods are given, every island uses the mutation method of the initial population.
+     *
+     * @param mutationMethods The mutation methods of the islands.
+     */
+    public void setIslandMutationMethods(List<Population.MutationMethod> mutationMethods) {
+        this.islandMutationMethods.clear();
+        this.islandMutationMethods.addAll(mutationMethods);
+    }
+
     /**
      * Setter for the termination condition.
      *
@@ -528,12 +637,31 @@ public class CompoundEvolver {
         mainEvolution();
     }
 
+    /**
+     * Opens the product library in the directory given by the PRODUCT_LIBRARY_DIR environment variable, so that
+     * candidates are looked up in the enumerated products instead of reacted. Nothing is done if the variable is not
+     * set, and the products are reacted as usual if the library could not be opened.
+     */
+    private void openProductLibrary() {
+        String productLibraryDirectory = System.getenv("PRODUCT_LIBRARY_DIR");
+        if (productLibraryDirectory == null) {
+            return;
+        }
+        try {
+            this.population.openProductLibrary(Paths.get(productLibraryDirectory));
+        } catch (IOException e) {
+            System.out.println("Product library is disabled: " + e.getMessage());
+        }
+    }
+
     private void getInitialPopulation() throws ForcedTerminationException, TooFewScoredCandidates {
         //        dummyFitness = true;
         // Set startTime and signal that the evolution procedure has started
         startTime = System.currentTimeMillis();
-        this.executor = Executors.newFixedThreadPool(getIntegerEnvironmentVariable("POOL_SIZE"));
+        this.validationExecutor = ExecutionService.getInstance().newTaskGroup(ExecutionService.PoolType.CPU);
+        this.scoringExecutor = ExecutionService.getInstance().newTaskGroup(ExecutionService.PoolType.PROCESS);
         evolutionProgressConnector.setStatus(EvolutionProgressConnector.Status.RUNNING);
+        openProductLibrary();
 
         this.population.setTotalGenerations(maxNumberOfGenerations);
         // Score the initial population
@@ -573,24 +701,30 @@ public class CompoundEvolver {
     private void mainEvolution() throws ForcedTerminationException, OffspringFailureOverflow, TooFewScoredCandidates {
         try {
             // Evolve
-            while (!shouldTerminate()) {
-                System.out.println(this.population.toString());
-
-                // Try to produce offspring
-                System.out.println("Producing offspring!");
-                this.population.produceOffspring();
-
-                // Score the candidates
-                System.out.println("Scoring candidates!");
-                scoreCandidates();
-                try {
-                    manager.writeGeneration(population);
-                } catch (Exception ignored) {
+            if (this.evolutionMode == EvolutionMode.STEADY_STATE) {
+                steadyStateEvolution();
+            } else if (this.islandCount > 1) {
+                islandEvolution();
+            } else {
+                while (!shouldTerminate()) {
+                    System.out.println(this.population.toString());
+
+                    // Try to produce offspring
+                    System.out.println("Producing offspring!");
+                    this.population.produceOffspring();
+
+                    // Score the candidates
+                    System.out.println("Scoring candidates!");
+                    scoreCandidates();
+                    try {
+                        manager.writeGeneration(population);
+                    } catch (Exception ignored) {
+                    }
+                    evolutionProgressConnector.handleNewGeneration(population.getCurrentGeneration());
+                    updateDuration();
+                    System.out.println("Deleting empty folders!");
+                    deleteEmpty();
                 }
-                evolutionProgressConnector.handleNewGeneration(population.getCurrentGeneration());
-                updateDuration();
-                System.out.println("Deleting empty folders!");
-                deleteEmpty();
             }
             if (this.scoringOption == ScoringOption.SCORPION && this.population.species.size() == 1
                     && !this.isBoosting && this.boosterApplication == BoosterApplication.SCORPION_BOOSTER) {
@@ -603,38 +737,262 @@ public class CompoundEvolver {
             evolutionProgressConnector.setStatus(EvolutionProgressConnector.Status.FAILED);
             throw e;
         } finally {
-            executor.shutdown();
-            try {
-                if (!executor.awaitTermination(800, TimeUnit.MILLISECONDS)) {
-                    executor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
-            }
+            shutdownExecutor(validationExecutor);
+            shutdownExecutor(scoringExecutor);
         }
         System.out.println("population.tooDistantConformerCounter = " + tooDistantConformerCounter.values().stream().mapToInt(i -> i).sum());
         System.out.println("clashingConformerCounter = " + clashingConformerCounter.values().stream().mapToInt(i -> i).sum());
+        for (Species species : this.population.species) {
+            System.out.println(species + " reactor pool: " + species.getReactorPool());
+        }
+        System.out.println("Reaction service: " + ReactionService.getInstance());
+        System.out.println("Product cache: " + this.population.getReactantLibrary().getProductCache());
+        if (this.scoreCache != null) {
+            System.out.println("Score cache: " + this.scoreCache);
+        }
         this.manager.close();
     }
 
+    /**
+     * Evolves the population in a steady state fashion. Every scored candidate is inserted into the population
+     * as soon as its scoring finishes, after which a new candidate is bred and submitted. A generation is counted
+     * for every population size of inserted candidates, which is when the generation is reported.
+     */
+    private void steadyStateEvolution() throws ForcedTerminationException, OffspringFailureOverflow, TooFewScoredCandidates {
+        int poolSize = ExecutionService.getInstance().getPoolSize(ExecutionService.PoolType.PROCESS);
+        // Scored candidates are queued as soon as their scoring completes
+        BlockingQueue<Future<List<Candidate>>> completed = new LinkedBlockingQueue<>();
+        List<Future<List<Candidate>>> pending = new ArrayList<>();
+        int insertedCandidates = 0;
+        try {
+            while (!shouldTerminate()) {
+                // Keep every worker busy with a candidate
+                if (pending.size() < poolSize) {
+                    for (List<Candidate> candidates : this.population.produceSteadyStateOffspring(poolSize - pending.size())) {
+                        CompletableFuture<List<Candidate>> scoring = submitScoring(candidates);
+                        pending.add(scoring);
+                        scoring.whenComplete((value, throwable) -> completed.add(scoring));
+                    }
+                }
+                if (this.pipelineOutputFilePath.resolve("terminate").toFile().exists())
+                    throw new ForcedTerminationException("The program was terminated forcefully.");
+                Future<List<Candidate>> future = completed.poll(1, TimeUnit.SECONDS);
+                updateDuration();
+                if (future == null) continue;
+                pending.remove(future);
+                candidatesScored.incrementAndGet();
+                List<Candidate> candidates;
+                try {
+                    candidates = future.get();
+                } catch (ExecutionException e) {
+                    System.err.println("Encountered an exception while scoring candidates: " + e.getCause().getMessage());
+                    // Pipeline exceptions are expected, they are used to signal null candidates from validation as well
+                    if (!(e.getCause() instanceof PipelineException)) {
+                        e.getCause().printStackTrace();
+                    }
+                    continue;
+                }
+                if (!this.population.addScoredCandidate(candidates)) continue;
+                // Normalize the scores with the new candidate before determining which candidate is replaced
+                normalizeRawScores(this.population);
+                this.population.replaceSurplusCandidates();
+                insertedCandidates++;
+                if (insertedCandidates % this.population.getPopulationSize() == 0) {
+                    this.population.completeSteadyStateGeneration();
+                    archiveScores(Collections.singletonList(this.population));
+                    try {
+                        manager.writeGeneration(population);
+                    } catch (Exception ignored) {
+                    }
+                    evolutionProgressConnector.handleNewGeneration(population.getCurrentGeneration());
+                    deleteEmpty();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ForcedTerminationException("The program was interrupted while scoring candidates.");
+        } finally {
+            // Candidates that are still being scored are not needed anymore
+            for (Future<List<Candidate>> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Evolves multiple islands in parallel. Every island produces and scores its own offspring, while sharing the
+     * scoring workers, the genotype registry and the score cache with the other islands. Every migration interval
+     * the fittest candidates of every island migrate to other islands according to the migration topology.
+     * The first island is the population of this evolver, which is used for the termination conditions.
+     */
+    private void islandEvolution() throws ForcedTerminationException, OffspringFailureOverflow, TooFewScoredCandidates {
+        List<Population> islands = this.population.divideIntoIslands(this.islandCount);
+        int islandPoolSize = Math.max(1,
+                ExecutionService.getInstance().getPoolSize(ExecutionService.PoolType.CPU) / islands.size());
+        for (int k = 0; k < islands.size(); k++) {
+            Population island = islands.get(k);
+            if (!islandSelectionMethods.isEmpty()) {
+                island.setSelectionMethod(islandSelectionMethods.get(k % islandSelectionMethods.size()));
+            }
+            if (!islandMutationMethods.isEmpty()) {
+                island.setMutationMethod(islandMutationMethods.get(k % islandMutationMethods.size()));
+            }
+            // Every island validates its offspring with its share of the workers
+            island.setPoolSize(islandPoolSize);
+            normalizeRawScores(island);
+        }
+        ExecutorService islandExecutor = ExecutionService.getInstance().newTaskGroup(ExecutionService.PoolType.CPU);
+        // Islands wait for the validation of their offspring, which runs on the same pool. The calling thread
+        // evolves islands as well, and at least one thread of the pool is left for the work that islands wait for.
+        int islandWorkerCount = Math.min(islands.size(),
+                ExecutionService.getInstance().getPoolSize(ExecutionService.PoolType.CPU)) - 1;
+        try {
+            while (!shouldTerminate()) {
+                System.out.println(this.population.toString());
+                System.out.println("Producing and scoring offspring on " + islands.size() + " islands!");
+                Queue<Population> pendingIslands = new ConcurrentLinkedQueue<>(islands);
+                List<Future<Void>> futures = new ArrayList<>();
+                for (int i = 0; i < islandWorkerCount; i++) {
+                    futures.add(islandExecutor.submit(() -> {
+                        evolveIslands(pendingIslands);
+                        return null;
+                    }));
+                }
+                evolveIslands(pendingIslands);
+                for (Future<Void> future : futures) {
+                    getIslandResult(future);
+                }
+                int generationNumber = this.population.getGenerationNumber();
+                if (this.migrationInterval > 0 && generationNumber % this.migrationInterval == 0) {
+                    migrate(islands);
+                }
+                archiveScores(islands);
+                for (int k = 0; k < islands.size(); k++) {
+                    try {
+                        manager.writeGeneration(islands.get(k), k);
+                    } catch (Exception ignored) {
+                    }
+                    evolutionProgressConnector.handleNewIslandGeneration(k, islands.get(k).getCurrentGeneration());
+                }
+                evolutionProgressConnector.handleNewGeneration(population.getCurrentGeneration());
+                updateDuration();
+                System.out.println("Deleting empty folders!");
+                deleteEmpty();
+            }
+        } finally {
+            islandExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Produces and scores the offspring of islands until no island is pending for this generation.
+     *
+     * @param pendingIslands The islands that did not start producing offspring for this generation.
+     */
+    private void evolveIslands(Queue<Population> pendingIslands)
+            throws ForcedTerminationException, OffspringFailureOverflow, TooFewScoredCandidates {
+        Population island;
+        while ((island = pendingIslands.poll()) != null) {
+            island.produceOffspring();
+            scoreCandidates(island);
+        }
+    }
+
+    /**
+     * Waits for the islands of a worker to finish a generation and rethrows the exceptions that it encountered.
+     *
+     * @param future The future of the island worker.
+     */
+    private void getIslandResult(Future<Void> future) throws ForcedTerminationException, OffspringFailureOverflow, TooFewScoredCandidates {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ForcedTerminationException("The program was interrupted while evolving islands.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ForcedTerminationException) throw (ForcedTerminationException) cause;
+            if (cause instanceof OffspringFailureOverflow) throw (OffspringFailureOverflow) cause;
+            if (cause instanceof TooFewScoredCandidates) throw (TooFewScoredCandidates) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Lets the fittest candidates of every island migrate to other islands according to the migration topology.
+     * Migrants replace the worst candidates of the island they migrate to.
+     *
+     * @param islands The islands to migrate candidates between.
+     */
+    private void migrate(List<Population> islands) {
+        // Collect every migration before any island receives immigrants, so that a migrant moves only once
+        List<List<List<Candidate>>> immigrants = new ArrayList<>();
+        for (int k = 0; k < islands.size(); k++) {
+            immigrants.add(new ArrayList<>());
+        }
+        for (int k = 0; k < islands.size(); k++) {
+            for (int target = 0; target < islands.size(); target++) {
+                boolean connected = this.migrationTopology == MigrationTopology.RING ?
+                        target == (k + 1) % islands.size() : target != k;
+                if (connected) {
+                    immigrants.get(target).addAll(islands.get(k).getEmigrants(this.migrantCount));
+                }
+            }
+        }
+        for (int k = 0; k < islands.size(); k++) {
+            islands.get(k).receiveImmigrants(immigrants.get(k));
+            normalizeRawScores(islands.get(k));
+        }
+    }
+
+    /**
+     * Submits a single candidate to the staged pipeline, which scores the candidate for every receptor at the
+     * same time.
+     *
+     * @param candidates The candidate for every receptor.
+     * @return the future that completes with the candidates when the candidate is scored.
+     */
+    private CompletableFuture<List<Candidate>> submitScoring(List<Candidate> candidates) {
+        if (dummyFitness) {
+            return CompletableFuture.supplyAsync(() -> {
+                setDummyFitness(candidates);
+                return candidates;
+            }, scoringExecutor);
+        }
+        // Check if pipe is present
+        if (pipe == null) throw new RuntimeException("pipeline setup not complete!");
+        CallableFullPipelineContainer pipelineContainer = new CallableFullPipelineContainer(pipe, pipelineOutputFilePath, candidates);
+        pipelineContainer.setScoreCache(scoreCache, pipelineSignatures);
+        return pipelineContainer.submit(stagedPipe, this::executeOnCpuPool).thenApply(value -> candidates);
+    }
+
     private void getBestCombinations() throws ForcedTerminationException, TooFewScoredCandidates {
         List<Candidate> bestCandidates = this.population.stream().sorted().collect(Collectors.toList()).subList((int) (0.9*population.size()), population.size());
         List<List<Integer>> bestReactants = new ArrayList<>();
-        for (int i = 0; i < bestCandidates.get(0).getGenotype().size(); i++) {
+        for (int i = 0; i < bestCandidates.get(0).getGenomeSize(); i++) {
             bestReactants.add(new ArrayList<>());
         }
         for (Candidate bestCandidate : bestCandidates) {
-            for (int i = 0; i < bestCandidate.getGenotype().size(); i++) {
-                bestReactants.get(i).add(bestCandidate.getGenotype().get(i));
+            for (int i = 0; i < bestCandidate.getGenomeSize(); i++) {
+                bestReactants.get(i).add(bestCandidate.getAllele(i));
             }
         }
         List<List<Integer>> allCombinations = Lists.cartesianProduct(bestReactants);
         List<Candidate> out = new ArrayList<>();
         for (List<Integer> combination : allCombinations) {
-            Candidate c = new Candidate(combination, this.population.getCurrentValue().incrementAndGet(), population.getBaseSeed());
-            c.finish(this.population.reactantLists, this.population.species);
+            int[] genome = combination.stream().mapToInt(Integer::intValue).toArray();
+            // Combinations that were encountered before in this run do not have to be reacted and scored again
+            if (!this.population.getGenotypeRegistry().register(genome)) {
+                continue;
+            }
+            Candidate c = new Candidate(genome, this.population.getCurrentValue().incrementAndGet(), population.getBaseSeed());
+            c.finish(this.population.getReactantLibrary(), this.population.species);
             out.add(c);
         }
+        if (out.isEmpty()) {
+            System.out.println("Every combination of the best reactants was scored before");
+            return;
+        }
         this.population.setCandidateList(out);
         scoreCandidates();
         try {
@@ -652,14 +1010,18 @@ public class CompoundEvolver {
             int startIndex = best_reactants.size();
             try {
                 for (int i = startIndex; i < startIndex + candidate_count; i++) {
-                    Candidate c = generation.getCandidateList().get(i-startIndex);
+                    CandidateRecord record = generation.getCandidateList().get(i-startIndex);
+                    // Only candidates with scored conformers are rebuilt, the others have no reactant scores
+                    if (record.getScoredConformersFile() == null) continue;
+                    Candidate c = generation.loadCandidate(record);
+                    if (c == null) continue;
                     List<Double> scores = ReactantScoreHelper.getReactantScores(c, this.fitnessMeasure);
                     if (scores != null) {
                         for (int j = 0; j < scores.size(); j++) {
                             while (best_reactants.size() <= i) {
                                 best_reactants.add(new ArrayList<>());
                             }
-                            best_reactants.get(i).add(new ImmutablePair<>(scores.get(j), c.getGenotype().get(j)));
+                            best_reactants.get(i).add(new ImmutablePair<>(scores.get(j), c.getAllele(j)));
                         }
                     }
                 }
@@ -718,18 +1080,20 @@ public class CompoundEvolver {
     }
 
     /**
-     * Gets an environment variable as an integer.
+     * Shuts down a task group of the shared execution service, which leaves the shared pools running.
      *
-     * @param variableName the name of the environment variable that should be parsed to an integer.
-     * @return An integer.
+     * @param executor The task group to shut down.
      */
-    private int getIntegerEnvironmentVariable(String variableName) {
-        String environmentVariable = getEnvironmentVariable(variableName);
-        if (NumberCheckUtilities.isInteger(environmentVariable, 10)) {
-            return Integer.parseInt(environmentVariable);
+    private void shutdownExecutor(ExecutorService executor) {
+        if (executor == null) return;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(800, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
         }
-        // Throw an exception because the environment variables was not an integer.
-        throw new RuntimeException(String.format("Environment variable '%s' was not an integer value", variableName));
     }
 
     /**
@@ -741,23 +1105,52 @@ public class CompoundEvolver {
     }
 
     /**
-     * Scores the candidates in the population.
+     * Runs a stage of the staged pipeline on the CPU-bound executor of this evolution.
+     *
+     * @param command The stage to run.
+     */
+    private void executeOnCpuPool(Runnable command) {
+        validationExecutor.execute(command);
+    }
+
+    /**
+     * Runs a stage of the staged pipeline on the executor of this evolution that waits on external processes.
+     *
+     * @param command The stage to run.
      */
+    private void executeOnProcessPool(Runnable command) {
+        scoringExecutor.execute(command);
+    }
+
     private void scoreCandidates() throws TooFewScoredCandidates, ForcedTerminationException {
+        scoreCandidates(this.population);
+        archiveScores(Collections.singletonList(this.population));
+    }
+
+    /**
+     * Scores the candidates in the given population, and normalizes their scores.
+     *
+     * @param population The population to score the candidates of.
+     */
+    private void scoreCandidates(Population population) throws TooFewScoredCandidates, ForcedTerminationException {
         if (!dummyFitness) {
             // Check if pipe is present
             if (pipe == null) throw new RuntimeException("pipeline setup not complete!");
             // Create list to hold future object associated with Callable
             List<Future<Void>> futures = new ArrayList<>();
             // Loop through candidates to produce and submit new tasks
-            List<List<Candidate>> matchingCandidateList = this.population.matchingCandidateList();
+            List<List<Candidate>> matchingCandidateList = population.matchingCandidateList();
             for (List<Candidate> candidates : matchingCandidateList) {
-                for (Candidate candidate : candidates) {
-                    // Get candidate output directory
-                    File candidate_dir = Paths.get(pipelineOutputFilePath.toString(),
-                            String.valueOf(candidate.getIdentifier())).toFile();
+                for (int i = 0; i < candidates.size(); i++) {
+                    Candidate candidate = candidates.get(i);
+                    // Get candidate output directory, in which every receptor has its own directory
+                    Path candidateDirectory = pipelineOutputFilePath.resolve(String.valueOf(candidate.getIdentifier()));
+                    File candidate_dir = candidates.size() == 1 ?
+                            candidateDirectory.toFile() :
+                            SharedLigandPreparation.resolveReceptorDirectory(candidateDirectory, i).toFile();
                     try {
-                        if (candidate_dir.exists() && candidate.canBeDeleted())
+                        // The minimized conformers of validated candidates are reused by the scoring pipeline
+                        if (candidate_dir.exists() && candidate.canBeDeleted() && candidate.getValidationPipeline() == null)
                             FileUtils.cleanDirectory(candidate_dir);
                     } catch (IOException e) {
                         if (debugPrint) {
@@ -766,9 +1159,10 @@ public class CompoundEvolver {
                     }
                 }
                 // Setup callable
-                Callable<Void> PipelineContainer = new CallableFullPipelineContainer(pipe, pipelineOutputFilePath, candidates);
-                // Add future, which the executor will return to the list
-                futures.add(executor.submit(PipelineContainer));
+                CallableFullPipelineContainer PipelineContainer = new CallableFullPipelineContainer(pipe, pipelineOutputFilePath, candidates);
+                PipelineContainer.setScoreCache(scoreCache, pipelineSignatures);
+                // Add future, which completes when every stage of the pipeline handled the candidates
+                futures.add(PipelineContainer.submit(stagedPipe, this::executeOnCpuPool));
             }
             // Loop through futures to handle thrown exceptions
             for (Future<Void> future : futures) {
@@ -776,7 +1170,7 @@ public class CompoundEvolver {
                     if (this.pipelineOutputFilePath.resolve("terminate").toFile().exists())
                         throw new ForcedTerminationException("The program was terminated forcefully.");
                     future.get();
-                    candidatesScored += 1;
+                    candidatesScored.incrementAndGet();
                 } catch (InterruptedException | ExecutionException e) {
                     // Handle exception
 //                    evolutionProgressConnector.putException(e);
@@ -792,18 +1186,8 @@ public class CompoundEvolver {
             // Log completed scoring round
             System.out.println("Finished all threads");
         } else {
-            for (List<Candidate> candidates : this.population.matchingCandidateList()) {
-                for (Candidate candidate : candidates) {
-                    // Set dummy fitness
-                    double score = candidate.getPhenotype().getExactMass();
-                    candidate.setRawScore(score);
-                    try {
-                        candidate.calculateLigandEfficiency();
-                    } catch (PluginException e) {
-                        e.printStackTrace();
-                    }
-                    candidate.calculateLigandLipophilicityEfficiency();
-                }
+            for (List<Candidate> candidates : population.matchingCandidateList()) {
+                setDummyFitness(candidates);
             }
         }
         population.filterUnscoredCandidates();
@@ -811,7 +1195,26 @@ public class CompoundEvolver {
             throw new TooFewScoredCandidates(
                     "The population is empty. Increase the amount of candidates or conformers, or apply less restrictive filters");
         }
-        processRawScores();
+        normalizeRawScores(population);
+    }
+
+    /**
+     * Sets a dummy fitness for the candidates, which is the exact mass of the phenotype.
+     *
+     * @param candidates The candidates to set the dummy fitness for.
+     */
+    private void setDummyFitness(List<Candidate> candidates) {
+        for (Candidate candidate : candidates) {
+            // Set dummy fitness
+            double score = candidate.getPhenotype().getExactMass();
+            candidate.setRawScore(score);
+            try {
+                candidate.calculateLigandEfficiency();
+            } catch (PluginException e) {
+                e.printStackTrace();
+            }
+            candidate.calculateLigandLipophilicityEfficiency();
+        }
     }
 
     /**
@@ -831,7 +1234,7 @@ public class CompoundEvolver {
                 CallableValidationPipelineContainer PipelineContainer = new CallableValidationPipelineContainer(pipe2, pipelineOutputFilePath, candidateList);
                 PipelineContainer.setDebug(this.debugPrint);
                 // Add future, which the executor will return to the list
-                futures.add(executor.submit(PipelineContainer));
+                futures.add(validationExecutor.submit(PipelineContainer));
             }
             // Loop through futures to handle thrown exceptions
             for (Future<List<Candidate>> future : futures) {
@@ -858,24 +1261,23 @@ public class CompoundEvolver {
     /**
      * Method responsible for processing the raw scores. Normalized scores are calculated by using the set
      * fitness measure.
+     *
+     * @param population The population to normalize the scores of.
      */
-    private void processRawScores() {
-        for (List<Candidate> candidates : this.population.getCandidateList()) {
+    private void normalizeRawScores(Population population) {
+        // Get min and max in a single pass
+        double maxFitness = Double.NEGATIVE_INFINITY;
+        double minFitness = Double.POSITIVE_INFINITY;
+        for (List<Candidate> candidates : population.getCandidateList()) {
             for (Candidate candidate : candidates) {
                 candidate.setFitnessMeasure(this.fitnessMeasure);
+                double fitness = candidate.getFitness();
+                maxFitness = Math.max(maxFitness, fitness);
+                minFitness = Math.min(minFitness, fitness);
             }
         }
-        // Collect scores
-        List<List<Double>> fitnesses = new ArrayList<>();
-        for (List<Candidate> c : population.getCandidateList()) {
-            fitnesses.add(c.stream().map(Candidate::getFitness).collect(Collectors.toList()));
-        }
-
-        // Get min and max
-        Double maxFitness = Collections.max(fitnesses.stream().mapToDouble(Collections::max).boxed().collect(Collectors.toList()));
-        Double minFitness = Collections.min(fitnesses.stream().mapToDouble(Collections::min).boxed().collect(Collectors.toList()));
         // We would like to calculate the fitness with the heavy atom
-        for (List<Candidate> candidates : this.population.getCandidateList()) {
+        for (List<Candidate> candidates : population.getCandidateList()) {
             for (Candidate candidate : candidates) {
                 // Ligand efficiency
                 candidate.calcNormFitness(minFitness, maxFitness);
@@ -883,11 +1285,37 @@ public class CompoundEvolver {
             }
         }
         population.setFitnessCandidateList();
-        // Add scores for the archive
-        if (this.selective) {
-            scores.add(Arrays.stream(MultiReceptorHelper.getFitnessList(population.getCandidateList())).boxed().collect(Collectors.toList()));
-        } else {
-            scores.add(Arrays.stream(MultiReceptorHelper.getFitnessListSelectivity(population.getCandidateList())).boxed().collect(Collectors.toList()));
+    }
+
+    /**
+     * Adds the scores of the current generation to the archive of scores.
+     *
+     * @param populations The populations, or islands, that together form the current generation.
+     */
+    private void archiveScores(List<Population> populations) {
+        statistics.startGeneration();
+        for (Population population : populations) {
+            double[] fitnesses = this.selective ?
+                    MultiReceptorHelper.getFitnessList(population.getCandidateList()) :
+                    MultiReceptorHelper.getFitnessListSelectivity(population.getCandidateList());
+            for (double fitness : fitnesses) {
+                statistics.accept(fitness);
+            }
+        }
+        statistics.finishGeneration();
+        pipelineStatistics.finishGeneration();
+        writePipelineStatistics();
+    }
+
+    /**
+     * Writes the statistics of the pipeline steps to the pipeline output location.
+     */
+    private void writePipelineStatistics() {
+        if (this.pipelineOutputFilePath == null) return;
+        try {
+            pipelineStatistics.write(this.pipelineOutputFilePath.resolve("pipeline-statistics.json"));
+        } catch (IOException e) {
+            System.err.println("Could not write pipeline statistics: " + e.getMessage());
         }
     }
 
@@ -904,7 +1332,7 @@ public class CompoundEvolver {
             return this.maximumAllowedDuration <= duration;
         } else if (this.terminationCondition == TerminationCondition.MAXIMUM_CANDIDATE_COUNT) {
             System.out.println("candidatesScored = " + this.candidatesScored + ", max = " + this.targetCandidateCount);
-            return this.targetCandidateCount <= this.candidatesScored;
+            return this.targetCandidateCount <= this.candidatesScored.get();
         }
         return generationNumber == this.maxNumberOfGenerations || evolutionProgressConnector.isTerminationRequired();
     }
@@ -916,25 +1344,8 @@ public class CompoundEvolver {
      * @return true if the evolution has converged.
      */
     private boolean hasConverged(int generationNumber) {
-        // Get all fitness scores so far
-        List<List<Double>> populationFitness = this.getFitness();
-
-        // Initialize highestScore and it's generation number
-        double highestScore = 0;
-        int highestScoringGenerationNumber = 0;
-
-        // Initialize maximum of the generation.
-        double max;
-        for (int i = 0; i < populationFitness.size(); i++) {
-            // Get maximum of the generation
-            max = Collections.max(populationFitness.get(i));
-
-            // If maximum of the generation is larger than the highest score overall, set new highest score
-            if (max > highestScore) {
-                highestScore = max;
-                highestScoringGenerationNumber = i;
-            }
-        }
+        // The generation in which the highest score so far was first reached
+        int highestScoringGenerationNumber = Math.max(statistics.getBestGeneration(), 0);
         double nonImprovingGenerationNumber = highestScoringGenerationNumber * this.nonImprovingGenerationAmountFactor + highestScoringGenerationNumber;
         return nonImprovingGenerationNumber < generationNumber;
     }
@@ -963,6 +1374,8 @@ public class CompoundEvolver {
             this.pipe = new ArrayList<>();
         if (this.pipe2 == null)
             this.pipe2 = new ArrayList<>();
+        if (this.stagedPipe == null)
+            this.stagedPipe = new ArrayList<>();
         if (this.prepareReceptor) {
             PdbFixer.runFixer(System.getenv("LEPRO_EXE"), receptorFilePath);
             receptorFilePath = receptorFilePath.resolveSibling("pro.pdb");
@@ -975,28 +1388,56 @@ public class CompoundEvolver {
             throw new PipelineException("Could not import receptor for exclusion shape");
         }
         ExclusionShape shape = new ExclusionShape(receptor, exclusionShapeTolerance);
+        // Every step is instrumented with the index of the receptor that the pipeline is for
+        int receptorIndex = this.pipe.size();
         // Get the step for converting 'flat' molecules into multiple 3d conformers
         PipelineStep<Candidate, Candidate> threeDimensionalConverterStep = getConformerStep(conformerCount, anchor, maximumAnchorDistance);
 //        PipelineStep<Candidate, Candidate> threeDimensionalConverterStep = new ThreeDimensionalConverterStep(this.pipelineOutputFilePath, conformerCount);
         // Get the step for fixing conformers to an anchor point
 //        ConformerFixationStep conformerFixationStep = new ConformerFixationStep(anchor, System.getenv("OBFIT_EXE"));
+        PipelineStep<Candidate, Candidate> conformerStep = instrument(receptorIndex, threeDimensionalConverterStep);
+        PipelineStep<Candidate, Candidate> alignmentStep = threeDimensionalConverterStep instanceof CustomConformerStep ?
+                null : instrument(receptorIndex, new ConformerAlignmentStep(anchor, fast_align));
         PipelineStep<Candidate, Candidate> converterStep;
-        if (threeDimensionalConverterStep instanceof CustomConformerStep) {
-            converterStep = threeDimensionalConverterStep;
+        if (this.population.getReceptorAmount() > 1) {
+            // The conformers are prepared once for the receptors, after which every receptor docks in its own directory
+            converterStep = getSharedLigandPreparationStep(receptorIndex, conformerStep, alignmentStep,
+                    anchor, conformerCount, maximumAnchorDistance, fast_align);
+        } else if (alignmentStep == null) {
+            converterStep = conformerStep;
         } else {
-            converterStep = threeDimensionalConverterStep.pipe(new ConformerAlignmentStep(anchor, fast_align));
+            converterStep = conformerStep.pipe(alignmentStep);
         }
         // Get step that handles scored candidates
-        PipelineStep<Candidate, Void> scoredCandidateHandlingStep = new ScoredCandidateHandlingStep(
-        );
+        PipelineStep<Candidate, Void> scoredCandidateHandlingStep = InstrumentedStep.ofTerminal(
+                ScoredCandidateHandlingStep.class.getSimpleName(), receptorIndex, pipelineStatistics,
+                new ScoredCandidateHandlingStep());
         // Get the step for energy minimization
-        PipelineStep<Candidate, Candidate> energyMinimizationStep = getEnergyMinimizationStep(receptorFilePath, anchor, exclusionShapeTolerance, maximumAnchorDistance, false);
-        PipelineStep<Candidate, Candidate> energyAndScoringStep = getEnergyMinimizationStep(receptorFilePath, anchor, exclusionShapeTolerance, maximumAnchorDistance, true);
+        PipelineStep<Candidate, Candidate> energyMinimizationStep = getEnergyMinimizationStep(receptorFilePath, anchor, exclusionShapeTolerance, maximumAnchorDistance, receptorIndex);
+        PipelineStep<Candidate, Candidate> scoringStep = getScoringStep(receptorFilePath, anchor, exclusionShapeTolerance, maximumAnchorDistance, receptorIndex);
         // Combine the steps and set the pipe.
-        ValidateConformersStep validifyStep = new ValidateConformersStep(anchor, maximumAnchorDistance, clashingConformerCounter, tooDistantConformerCounter, deleteInvalid, shape);
-        validifyStep.setDebug(this.debugPrint);
-        this.pipe2.add(converterStep.pipe(validifyStep).pipe(energyMinimizationStep));
-        this.pipe.add(converterStep.pipe(validifyStep).pipe(energyAndScoringStep).pipe(scoredCandidateHandlingStep));
+        ValidateConformersStep validateConformersStep = new ValidateConformersStep(anchor, maximumAnchorDistance, clashingConformerCounter, tooDistantConformerCounter, deleteInvalid, shape);
+        validateConformersStep.setDebug(this.debugPrint);
+        PipelineStep<Candidate, Candidate> validifyStep = instrument(receptorIndex, validateConformersStep);
+        PipelineStep<Candidate, Candidate> validationPipeline = converterStep.pipe(validifyStep).pipe(energyMinimizationStep);
+        this.pipe2.add(validationPipeline);
+        // The scoring pipeline resumes from the minimized conformers of candidates that passed the validation pipeline
+        PipelineStep<Candidate, Candidate> validatedStep = new ResumeValidatedStep(validationPipeline, validationPipeline);
+        this.pipe.add(scoringStep != null ?
+                validatedStep.pipe(scoringStep).pipe(scoredCandidateHandlingStep) :
+                validatedStep.pipe(scoredCandidateHandlingStep));
+        // The same steps as stages, so that the conformers of one candidate are generated while another is docked
+        int cpuPoolSize = ExecutionService.getInstance().getPoolSize(ExecutionService.PoolType.CPU);
+        int processPoolSize = ExecutionService.getInstance().getPoolSize(ExecutionService.PoolType.PROCESS);
+        StagedPipeline<Candidate, Candidate> stagedPipeline = StagedPipeline
+                .of(new ResumeValidatedStep(validationPipeline, converterStep), this::executeOnCpuPool, cpuPoolSize)
+                .then(new ResumeValidatedStep(validationPipeline, validifyStep), this::executeOnCpuPool, cpuPoolSize)
+                .then(new ResumeValidatedStep(validationPipeline, energyMinimizationStep), this::executeOnProcessPool, processPoolSize);
+        if (scoringStep != null) {
+            stagedPipeline = stagedPipeline.then(scoringStep, this::executeOnProcessPool, processPoolSize);
+        }
+        this.stagedPipe.add(stagedPipeline.then(scoredCandidateHandlingStep, this::executeOnCpuPool, cpuPoolSize));
+        setupScoreCache(receptorFilePath, anchor, conformerCount, exclusionShapeTolerance, maximumAnchorDistance, fast_align);
         System.out.println("Initializing generation manager");
         try {
             this.manager = new GenerationDataFileManager(pipelineOutputFilePath.resolve("gen-info.txt").toFile());
@@ -1005,24 +1446,95 @@ public class CompoundEvolver {
         }
     }
 
+    /**
+     * Gets the step that prepares the conformers of a candidate for a receptor, which is shared with the other
+     * receptors. Conformer generation is shared between every receptor, unless the conformers are generated with
+     * the anchor, and the alignment is shared between the receptors that have the same anchor.
+     *
+     * @param receptorIndex         The index of the receptor that the step is for.
+     * @param conformerStep         The step that generates the conformers.
+     * @param alignmentStep         The step that aligns the conformers to the anchor, or null if the conformers are
+     *                              aligned while they are generated.
+     * @param anchor                The anchor file path in sdf format.
+     * @param conformerCount        The amount of conformers to generate.
+     * @param maximumAnchorDistance The maximum distance of the conformers to the anchor.
+     * @param fast_align            If the fast alignment should be used.
+     * @return the shared ligand preparation step.
+     * @throws PipelineException if the anchor could not be read.
+     */
+    private PipelineStep<Candidate, Candidate> getSharedLigandPreparationStep(int receptorIndex,
+                                                                            PipelineStep<Candidate, Candidate> conformerStep,
+                                                                            PipelineStep<Candidate, Candidate> alignmentStep,
+                                                                            Path anchor,
+                                                                            int conformerCount,
+                                                                            double maximumAnchorDistance,
+                                                                            boolean fast_align) throws PipelineException {
+        if (this.ligandPreparation == null) {
+            this.ligandPreparation = new SharedLigandPreparation(this.population.getReceptorAmount());
+        }
+        // The anchor is compared by its content, since every receptor is uploaded with its own anchor file
+        ByteBuffer anchorContent;
+        try {
+            anchorContent = ByteBuffer.wrap(Files.readAllBytes(anchor));
+        } catch (IOException e) {
+            throw new PipelineException("Could not read anchor", e);
+        }
+        List<Object> keys = new ArrayList<>();
+        List<PipelineStep<Candidate, Candidate>> steps = new ArrayList<>();
+        if (alignmentStep == null) {
+            keys.add(Arrays.asList(conformerOption, conformerCount, maximumAnchorDistance, anchorContent));
+            steps.add(conformerStep);
+        } else {
+            keys.add(Arrays.asList(conformerOption, conformerCount));
+            steps.add(conformerStep);
+            keys.add(Arrays.asList(anchorContent, fast_align));
+            steps.add(alignmentStep);
+        }
+        return this.ligandPreparation.getStep(receptorIndex, keys, steps);
+    }
+
+    /**
+     * Opens the score cache and adds the signature of the pipeline that was set up last. The cache is located in the
+     * directory given by the SCORE_CACHE_DIR environment variable, or in the parent of the pipeline output location.
+     * The cache is disabled when it could not be opened.
+     *
+     * @param receptorFilePath The receptor file path in pdb format.
+     * @param anchor           The anchor file path in sdf format.
+     */
+    private void setupScoreCache(Path receptorFilePath,
+                                 Path anchor,
+                                 int conformerCount,
+                                 double exclusionShapeTolerance,
+                                 double maximumAnchorDistance,
+                                 boolean fast_align) {
+        try {
+            if (this.scoreCache == null) {
+                String scoreCacheDirectory = System.getenv("SCORE_CACHE_DIR");
+                this.scoreCache = ScoreCache.open(scoreCacheDirectory != null ?
+                        Paths.get(scoreCacheDirectory) :
+                        this.pipelineOutputFilePath.toAbsolutePath().getParent().resolve("score-cache"));
+            }
+            this.pipelineSignatures.add(ScoreCache.createPipelineSignature(receptorFilePath, anchor,
+                    conformerOption, forceField, scoringOption, conformerCount, exclusionShapeTolerance,
+                    maximumAnchorDistance, fast_align));
+        } catch (IOException e) {
+            System.err.println("Score cache is disabled: " + e.getMessage());
+            this.scoreCache = null;
+        }
+    }
+
     /**
      * Gets the minimization step that should be included in the pipeline based on the set force field.
      *
      * @param receptorFile   The receptor file path in pdb format.
      * @param anchorFilePath the anchor file path in sdf format.
+     * @param receptorIndex  The index of the receptor that the steps are instrumented with.
      * @return The energy minimization step that complies with the set force field.
      * @throws PipelineException if the minimization step could not be initialized.
      */
-    private PipelineStep<Candidate, Candidate> getEnergyMinimizationStep(Path receptorFile, Path anchorFilePath, double exclusionShapeTolerance, double maximumAnchorDistance, boolean appendScoring) throws PipelineException {
+    private PipelineStep<Candidate, Candidate> getEnergyMinimizationStep(Path receptorFile, Path anchorFilePath, double exclusionShapeTolerance, double maximumAnchorDistance, int receptorIndex) throws PipelineException {
         PipelineStep<Candidate, Candidate> step;
-        Molecule receptor;
-        try {
-            receptor = new MolImporter(receptorFile.toFile(), "pdb").read();
-        } catch (IOException exception) {
-            exception.printStackTrace();
-            throw new PipelineException("Could not import receptor for exclusion shape");
-        }
-        ExclusionShape shape = new ExclusionShape(receptor, exclusionShapeTolerance);
+        ExclusionShape shape = getExclusionShape(receptorFile, exclusionShapeTolerance);
         ValidateConformersStep validateConformersStep = new ValidateConformersStep(anchorFilePath, maximumAnchorDistance, clashingConformerCounter, tooDistantConformerCounter, deleteInvalid, shape);
         validateConformersStep.setDebug(this.debugPrint);
         switch (this.forceField) {
@@ -1033,7 +1545,7 @@ public class CompoundEvolver {
                         receptorFile,
                         mol3dExecutable,
                         // Optimize and score at the same time if the scoring to use is the same as the force field we are using
-                        esprntoExecutable, this.scoringOption==ScoringOption.MAB).pipe(validateConformersStep);
+                        esprntoExecutable, this.scoringOption==ScoringOption.MAB);
                 break;
             case SMINA:
                 String sminaExecutable = getEnvironmentVariable("SMINA_EXE");
@@ -1042,51 +1554,136 @@ public class CompoundEvolver {
                         receptorFile,
                         sminaExecutable);
                 temp.setDebug(this.debugPrint);
-                step = temp.pipe(validateConformersStep);
+                step = temp;
                 break;
             default:
                 throw new RuntimeException(String.format("Force field '%s' is not implemented", this.forceField.toString()));
         }
-        if (appendScoring) {
-            switch (this.scoringOption) {
-                case MAB:
-                    if (this.forceField == ForceField.MAB) {
-                        return step;
-                    } else {
-                        String mol3dExecutable = getEnvironmentVariable("MOL3D_EXE");
-                        String esprntoExecutable = getEnvironmentVariable("ESPRNTO_EXE");
-                        return step.pipe(new MolocEnergyMinimizationStep(
-                                receptorFile,
-                                mol3dExecutable,
-                                esprntoExecutable, true).pipe(new ValidateConformersStep(anchorFilePath, maximumAnchorDistance, clashingConformerCounter, tooDistantConformerCounter, deleteInvalid, shape)));
-                    }
-                case SMINA:
-                    if (this.forceField == ForceField.SMINA) {
-                        return step;
-                    } else {
-                        String sminaExecutable = getEnvironmentVariable("SMINA_EXE");
-
-                        SminaEnergyMinimizationStep sminaStep = new SminaEnergyMinimizationStep(
-                                receptorFile,
-                                sminaExecutable);
-                        sminaStep.setDebug(this.debugPrint);
-
-                        // Return Smina implementation of the energy minimization step
-                        return step.pipe(sminaStep).pipe(new ValidateConformersStep(anchorFilePath, maximumAnchorDistance, clashingConformerCounter, tooDistantConformerCounter, deleteInvalid, shape));
-                    }
-                case SCORPION:
-                    String scorpionExecutable = getEnvironmentVariable("FINDPATHS3_EXE");
-                    String pythonExecutable = getEnvironmentVariable("PYTHON_EXE");
-                    String fixerExecutable = getEnvironmentVariable("FIXER_EXE");
-                    String scorpionWrapper = System.getenv("SCORPION_WRAPPER");
-                    return step.pipe(new ScorpionScoringStep(receptorFile, scorpionExecutable, fixerExecutable, pythonExecutable, scorpionWrapper));
-                default:
-                    throw new RuntimeException(String.format("Scoring step '%s' is not implemented", this.scoringOption.toString()));
+        return instrument(step.getClass().getSimpleName(), receptorIndex, shard(step)).pipe(instrument(
+                validateConformersStep.getClass().getSimpleName() + " after minimization", receptorIndex, validateConformersStep));
+    }
+
+    /**
+     * Gets the scoring step that should follow the minimization step in the pipeline based on the set scoring
+     * option.
+     *
+     * @param receptorFile   The receptor file path in pdb format.
+     * @param anchorFilePath the anchor file path in sdf format.
+     * @param receptorIndex  The index of the receptor that the steps are instrumented with.
+     * @return The scoring step that complies with the set scoring option, or null if the minimization step scores
+     * the conformers itself.
+     * @throws PipelineException if the scoring step could not be initialized.
+     */
+    private PipelineStep<Candidate, Candidate> getScoringStep(Path receptorFile, Path anchorFilePath, double exclusionShapeTolerance, double maximumAnchorDistance, int receptorIndex) throws PipelineException {
+        ExclusionShape shape = getExclusionShape(receptorFile, exclusionShapeTolerance);
+        String validationName = ValidateConformersStep.class.getSimpleName() + " after scoring";
+        switch (this.scoringOption) {
+            case MAB:
+                if (this.forceField == ForceField.MAB) {
+                    return null;
+                } else {
+                    String mol3dExecutable = getEnvironmentVariable("MOL3D_EXE");
+                    String esprntoExecutable = getEnvironmentVariable("ESPRNTO_EXE");
+                    MolocEnergyMinimizationStep molocStep = new MolocEnergyMinimizationStep(
+                            receptorFile,
+                            mol3dExecutable,
+                            esprntoExecutable, true);
+                    return instrument(molocStep.getClass().getSimpleName(), receptorIndex, shard(molocStep)).pipe(instrument(validationName, receptorIndex, new ValidateConformersStep(anchorFilePath, maximumAnchorDistance, clashingConformerCounter, tooDistantConformerCounter, deleteInvalid, shape)));
+                }
+            case SMINA:
+                if (this.forceField == ForceField.SMINA) {
+                    return null;
+                } else {
+                    String sminaExecutable = getEnvironmentVariable("SMINA_EXE");
+
+                    SminaEnergyMinimizationStep sminaStep = new SminaEnergyMinimizationStep(
+                            receptorFile,
+                            sminaExecutable);
+                    sminaStep.setDebug(this.debugPrint);
+
+                    // Return Smina implementation of the energy minimization step
+                    return instrument(sminaStep.getClass().getSimpleName(), receptorIndex, shard(sminaStep)).pipe(instrument(validationName, receptorIndex, new ValidateConformersStep(anchorFilePath, maximumAnchorDistance, clashingConformerCounter, tooDistantConformerCounter, deleteInvalid, shape)));
+                }
+            case SCORPION:
+                String scorpionExecutable = getEnvironmentVariable("FINDPATHS3_EXE");
+                String pythonExecutable = getEnvironmentVariable("PYTHON_EXE");
+                String fixerExecutable = getEnvironmentVariable("FIXER_EXE");
+                String scorpionWrapper = System.getenv("SCORPION_WRAPPER");
+                ScorpionScoringStep scorpionStep = new ScorpionScoringStep(receptorFile, scorpionExecutable, fixerExecutable, pythonExecutable, scorpionWrapper);
+                return instrument(scorpionStep.getClass().getSimpleName(), receptorIndex, shard(scorpionStep));
+            default:
+                throw new RuntimeException(String.format("Scoring step '%s' is not implemented", this.scoringOption.toString()));
+        }
+    }
 
+    /**
+     * Shards the conformers of a candidate over multiple processes of a docking or scoring step, if the
+     * CONFORMER_SHARD_COUNT environment variable allows more than one shard. With CONFORMER_SHARD_ADAPTIVE set to
+     * true, only idle threads of the process pool get a shard.
+     *
+     * @param step The docking or scoring step to shard.
+     * @return the sharded step, or the given step if sharding is disabled.
+     */
+    private PipelineStep<Candidate, Candidate> shard(PipelineStep<Candidate, Candidate> step) {
+        String shardCountVariable = System.getenv("CONFORMER_SHARD_COUNT");
+        int shardCount = 1;
+        if (shardCountVariable != null) {
+            if (!NumberCheckUtilities.isInteger(shardCountVariable, 10) || Integer.parseInt(shardCountVariable) < 1) {
+                throw new RuntimeException("Environment variable 'CONFORMER_SHARD_COUNT' was not a positive integer value");
             }
-        } else {
+            shardCount = Integer.parseInt(shardCountVariable);
+        }
+        if (shardCount < 2) {
             return step;
         }
+        IntSupplier idleWorkerCount = Boolean.parseBoolean(System.getenv("CONFORMER_SHARD_ADAPTIVE")) ?
+                () -> ExecutionService.getInstance().getIdleThreadCount(ExecutionService.PoolType.PROCESS) :
+                () -> Integer.MAX_VALUE;
+        return new ShardedConformerStep(step, this::executeOnProcessPool, shardCount, idleWorkerCount);
+    }
+
+    /**
+     * Instruments a step with its class name, so that the latency and the outcome of its executions are recorded
+     * in the pipeline statistics.
+     *
+     * @param receptorIndex The index of the receptor that the step belongs to.
+     * @param step          The step to instrument.
+     * @return the instrumented step.
+     */
+    private PipelineStep<Candidate, Candidate> instrument(int receptorIndex, PipelineStep<Candidate, Candidate> step) {
+        return instrument(step.getClass().getSimpleName(), receptorIndex, step);
+    }
+
+    /**
+     * Instruments a step, so that the latency and the outcome of its executions are recorded in the pipeline
+     * statistics.
+     *
+     * @param name          The name of the step in the statistics.
+     * @param receptorIndex The index of the receptor that the step belongs to.
+     * @param step          The step to instrument.
+     * @return the instrumented step.
+     */
+    private PipelineStep<Candidate, Candidate> instrument(String name, int receptorIndex, PipelineStep<Candidate, Candidate> step) {
+        return InstrumentedStep.of(name, receptorIndex, pipelineStatistics, step);
+    }
+
+    /**
+     * Gets the shape of the receptor that conformers should not clash with.
+     *
+     * @param receptorFile            The receptor file path in pdb format.
+     * @param exclusionShapeTolerance The tolerance of the exclusion shape.
+     * @return the exclusion shape of the receptor.
+     * @throws PipelineException if the receptor could not be imported.
+     */
+    private ExclusionShape getExclusionShape(Path receptorFile, double exclusionShapeTolerance) throws PipelineException {
+        Molecule receptor;
+        try {
+            receptor = new MolImporter(receptorFile.toFile(), "pdb").read();
+        } catch (IOException exception) {
+            exception.printStackTrace();
+            throw new PipelineException("Could not import receptor for exclusion shape");
+        }
+        return new ExclusionShape(receptor, exclusionShapeTolerance);
     }
 
     private PipelineStep<Candidate, Candidate> getConformerStep(int conformerCount, Path anchor, double rmsd) {
@@ -1227,6 +1824,52 @@ public class CompoundEvolver {
         }
     }
 
+    /**
+     * Evolution modes that can be chosen.
+     */
+    public enum EvolutionMode {
+        GENERATIONAL("generational"),
+        STEADY_STATE("steady state");
+
+        private final String text;
+
+        EvolutionMode(String text) {
+            this.text = text;
+        }
+
+        public static EvolutionMode fromString(String text) {
+            for (EvolutionMode mode : EvolutionMode.values()) {
+                if (mode.text.equalsIgnoreCase(text)) {
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException("No constant with text " + text + " found");
+        }
+    }
+
+    /**
+     * Topologies that determine to which islands candidates migrate.
+     */
+    public enum MigrationTopology {
+        RING("ring"),
+        FULLY_CONNECTED("fully connected");
+
+        private final String text;
+
+        MigrationTopology(String text) {
+            this.text = text;
+        }
+
+        public static MigrationTopology fromString(String text) {
+            for (MigrationTopology topology : MigrationTopology.values()) {
+                if (topology.text.equalsIgnoreCase(text)) {
+                    return topology;
+                }
+            }
+            throw new IllegalArgumentException("No constant with text " + text + " found");
+        }
+    }
+
     /**
      * Termination conditions that can be chosen.
      */
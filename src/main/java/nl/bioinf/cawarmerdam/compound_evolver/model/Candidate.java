@@ -5,10 +5,9 @@
 package nl.bioinf.cawarmerdam.compound_evolver.model;
 
 import chemaxon.formats.MolExporter;
-import chemaxon.marvin.calculations.ElementalAnalyserPlugin;
-import chemaxon.marvin.calculations.HBDAPlugin;
+import chemaxon.formats.MolFormatException;
+import chemaxon.formats.MolImporter;
 import chemaxon.marvin.calculations.IUPACNamingPlugin;
-import chemaxon.marvin.calculations.logPPlugin;
 import chemaxon.marvin.plugin.PluginException;
 import chemaxon.reaction.AtomIdentifier;
 import chemaxon.reaction.ReactionException;
@@ -17,9 +16,10 @@ import chemaxon.struc.MolAtom;
 import chemaxon.struc.Molecule;
 import nl.bioinf.cawarmerdam.compound_evolver.control.CompoundEvolver;
 import nl.bioinf.cawarmerdam.compound_evolver.model.pipeline.EnumColor;
+import nl.bioinf.cawarmerdam.compound_evolver.model.pipeline.PipelineStep;
 import nl.bioinf.cawarmerdam.compound_evolver.util.BBBScoreCalculator;
+import nl.bioinf.cawarmerdam.compound_evolver.util.DescriptorBundle;
 import nl.bioinf.cawarmerdam.compound_evolver.util.QuantitativeDrugEstimateCalculator;
-import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 
 import java.io.IOException;
@@ -27,7 +27,6 @@ import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * @author C.A. (Robert) Warmerdam
@@ -48,9 +47,9 @@ public class Candidate implements Comparable<Candidate> {
     private Double maxHydrogenBondAcceptors = null;
     private Double maxMolecularMass = null;
     private Double maxPartitionCoefficient = null;
-    private static final HBDAPlugin hydrogenBondPlugin = new HBDAPlugin();
-    private static final logPPlugin logPPlugin = new logPPlugin();
-    private final List<Integer> genotype;
+    private DescriptorBundle descriptors;
+    private final int[] genotype;
+    private final int genotypeHash;
     private Molecule phenotype;
     private String rejectionMessage;
     private boolean isScored;
@@ -60,22 +59,28 @@ public class Candidate implements Comparable<Candidate> {
     private final Random random = new Random();
     private List<Double> conformerScores;
     private Path minimizationOutputFilePath;
+    private PipelineStep<Candidate, Candidate> validationPipeline;
     private double minQED;
     private EnumColor color;
     private double minBBB;
     private Molecule[] reactants;
     private Map<MolAtom, AtomIdentifier> atommap;
+    private boolean productChosenBySeed;
+    private int productDrawCount;
+    private int speciesDrawOffset;
     private boolean canBeDeleted = true;
     private final long baseSeed;
 
     /**
      * Constructor for candidate instance.
      *
-     * @param genotype The genotype that corresponds to the candidate.
+     * @param genotype The genotype that corresponds to the candidate. The array is owned by the candidate
+     *                 from here on and should not be modified afterwards.
      */
-    public Candidate(List<Integer> genotype, long identifier, long baseSeed) {
+    public Candidate(int[] genotype, long identifier, long baseSeed) {
         this.genotype = genotype;
-        this.genomeSize = this.genotype.size();
+        this.genotypeHash = Arrays.hashCode(genotype);
+        this.genomeSize = this.genotype.length;
         this.identifier = identifier;
         this.baseSeed = baseSeed;
         random.setSeed(identifier + baseSeed);
@@ -87,11 +92,50 @@ public class Candidate implements Comparable<Candidate> {
      * @param genotype The genotype that corresponds to the candidate.
      * @param species  A list of possible species to select from
      */
-    public Candidate(List<Integer> genotype, Species species, long identifier, long baseSeed) {
+    public Candidate(int[] genotype, Species species, long identifier, long baseSeed) {
         this(genotype, identifier, baseSeed);
         this.species = species;
     }
 
+    /**
+     * Creates a copy of a candidate, including its phenotype and its scores. The copy can be normalized and
+     * selected in another population without affecting the original candidate.
+     *
+     * @return the copy of this candidate.
+     */
+    public Candidate copy() {
+        Candidate copy = new Candidate(this.genotype, this.species, this.identifier, this.baseSeed);
+        copy.fitnessMeasure = this.fitnessMeasure;
+        copy.conformersFile = this.conformersFile;
+        copy.fixedConformersFile = this.fixedConformersFile;
+        copy.scoredConformersFile = this.scoredConformersFile;
+        copy.rawScore = this.rawScore;
+        copy.ligandLipophilicityEfficiency = this.ligandLipophilicityEfficiency;
+        copy.maxHydrogenBondDonors = this.maxHydrogenBondDonors;
+        copy.maxHydrogenBondAcceptors = this.maxHydrogenBondAcceptors;
+        copy.maxMolecularMass = this.maxMolecularMass;
+        copy.maxPartitionCoefficient = this.maxPartitionCoefficient;
+        copy.descriptors = this.descriptors;
+        copy.phenotype = this.phenotype;
+        copy.rejectionMessage = this.rejectionMessage;
+        copy.isScored = this.isScored;
+        copy.normFitness = this.normFitness;
+        copy.ligandEfficiency = this.ligandEfficiency;
+        copy.conformerScores = this.conformerScores;
+        copy.minimizationOutputFilePath = this.minimizationOutputFilePath;
+        copy.validationPipeline = this.validationPipeline;
+        copy.minQED = this.minQED;
+        copy.color = this.color;
+        copy.minBBB = this.minBBB;
+        copy.reactants = this.reactants;
+        copy.atommap = this.atommap;
+        copy.canBeDeleted = this.canBeDeleted;
+        copy.productChosenBySeed = this.productChosenBySeed;
+        copy.productDrawCount = this.productDrawCount;
+        copy.speciesDrawOffset = this.speciesDrawOffset;
+        return copy;
+    }
+
     /**
      * Method responsible for completing this constructed candidate. It uses this candidates construction to
      * determine if the candidate is valid. The reactants that where chosen might not be viable, in which case
@@ -100,12 +144,12 @@ public class Candidate implements Comparable<Candidate> {
      * This method will use the species that this candidate was initiated with. Will run a runtime exception if
      * the species field is null.
      *
-     * @param reactantLists The entire pool of reactants for every reactant in the current experiment.
+     * @param library       The library with the entire pool of reactants for every reactant in the current experiment.
      * @return true if this candidate was viable and valid, false if not.
      */
-    boolean finish(List<List<String>> reactantLists) {
+    boolean finish(ReactantLibrary library) {
         if (this.species == null) throw new RuntimeException("Species was not specified");
-        return finish(reactantLists, this.species);
+        return finish(library, this.species);
     }
 
     /**
@@ -116,14 +160,18 @@ public class Candidate implements Comparable<Candidate> {
      * Multiple species should be supplied in this method. The species are checked one by one until a working
      * scheme was encountered.
      *
-     * @param reactantLists The entire pool of reactants for every reactant in the current experiment.
+     * @param library       The library with the entire pool of reactants for every reactant in the current experiment.
      * @param species       The list of species to try.
      * @return true if this candidate was viable and valid, false if not.
      */
-    public boolean finish(List<List<String>> reactantLists, List<Species> species) {
+    public boolean finish(ReactantLibrary library, List<Species> species) {
+        this.productChosenBySeed = false;
+        this.productDrawCount = 0;
         for (Species singleSpecies : species) {
-            boolean isFinished = finish(reactantLists, singleSpecies);
+            int drawCount = this.productDrawCount;
+            boolean isFinished = finish(library, singleSpecies);
             if (isFinished) {
+                this.speciesDrawOffset = drawCount;
                 this.species = singleSpecies;
                 return true;
             }
@@ -131,90 +179,243 @@ public class Candidate implements Comparable<Candidate> {
         return false;
     }
 
+    /**
+     * Method responsible for completing this constructed candidate from an enumerated product library, without
+     * reacting anything. The species of the candidate is the species that produced the product in the library.
+     * The library does not hold the map from the product atoms to the reactant atoms, so the atom map is empty.
+     * A record of the candidate rebuilds the atom map by reacting the genotype when it is loaded. Genotypes with
+     * a product that depends on the seed of the candidate are reacted like without the library.
+     *
+     * @param products The library with the enumerated products of every genotype.
+     * @param library  The library with the entire pool of reactants for every reactant in the current experiment.
+     * @param species  The list of species that the products were enumerated with.
+     * @return true if this candidate has a valid product in the library, false if not.
+     */
+    boolean finish(ProductLibrary products, ReactantLibrary library, List<Species> species) {
+        if (products.isSeedDependent(this.genotype)) {
+            return finish(library, species);
+        }
+        ProductLibrary.Entry entry = products.get(this.genotype);
+        if (entry == null) {
+            this.rejectionMessage = "Product library does not contain a valid product";
+            return false;
+        }
+        Molecule product;
+        try {
+            product = MolImporter.importMol(entry.getSmiles());
+        } catch (MolFormatException e) {
+            this.rejectionMessage = "Product in the product library could not be read";
+            return false;
+        }
+        // The random number generator draws the same numbers as a reaction would, so that later crossovers are
+        // the same with or without the library
+        skipProductDraws(entry.getProductDrawCount());
+        // Every species that was tried drew a single number, the last of which was drawn for the species of the entry
+        this.speciesDrawOffset = Math.max(0, entry.getProductDrawCount() - 1);
+        this.species = species.get(entry.getSpeciesIndex());
+        setPhenotype(product, entry.createDescriptors(product));
+        this.atommap = new HashMap<>();
+        this.reactants = this.species.getReactantsSubset(library, this.genotype);
+        return true;
+    }
+
     /**
      * Method responsible for completing this constructed candidate. It uses this candidates construction to
      * determine if the candidate is valid. The reactants that where chosen might not be viable, in which case
      * the rejection message field will be assigned, and the method will return false.
      *
-     * @param reactantLists The entire pool of reactants for every reactant in the current experiment.
+     * @param library       The library with the entire pool of reactants for every reactant in the current experiment.
      * @param species       The species to use for this candidate.
      * @return true if this candidate was viable and valid, false if not.
      */
-    private boolean finish(List<List<String>> reactantLists, Species species) {
+    private boolean finish(ReactantLibrary library, Species species) {
         // get Reactants from the indices
-        Molecule[] reactants = species.getReactantsSubset(getReactantsFromIndices(reactantLists));
-        try {
-            // Not sure of the exact cause, but this is needed to prevent random, otherwise unexplainable errors
-            Reactor reaction = SerializationUtils.clone(species.getReaction());
-            reaction.restart();
-            // Setup for multithreading, which in case is used for a timeout
-
+        Molecule[] reactants = species.getReactantsSubset(library, this.genotype);
+        ProductCache cache = library.getProductCache();
+        ProductCache.Outcome outcome = cache.get(this.genotype, species);
+        if (outcome != null && outcome.getRejectionMessage() != null) {
+            // This genotype failed to react with this species before
+            cache.recordHit();
+            this.rejectionMessage = outcome.getRejectionMessage();
+            return false;
+        }
+        // The product is chosen with the seeded random number generator, with or without a cached outcome
+        int productIndex = outcome != null ? drawProductIndex(outcome.getProductCount()) : -1;
+        ProductCache.Product product = outcome != null ? outcome.getProduct(productIndex) : null;
+        if (product != null) {
+            cache.recordHit();
+            setPhenotype(product.cloneProduct(), product.getDescriptors());
+            this.atommap = product.getAtommap(this.phenotype);
+        } else {
+            cache.recordMiss();
             List<Molecule> phenotypes;
-            phenotypes = react(reaction, reactants);
-            if (phenotypes != null && phenotypes.size() != 0) {
-                this.phenotype = phenotypes.get((int) (this.random.nextDouble() * phenotypes.size()));
-                if (this.isValid()) {
-                    this.reactants = reactants;
-                    return true;
-                } else {
-                    return false;
+            try {
+                Reactor reaction = species.getReactorPool().borrow();
+                // Setup for multithreading, which in case is used for a timeout
+                phenotypes = react(reaction, reactants);
+                // A reactor that timed out or failed is not reused, since it might be in an inconsistent state
+                if (phenotypes != null) {
+                    species.getReactorPool().release(reaction);
                 }
+            } catch (ReactionException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                this.rejectionMessage = "Reactor produced an error";
+                e.printStackTrace();
+                cache.put(this.genotype, species, new ProductCache.Outcome(this.rejectionMessage));
+                return false;
+            } catch (TimeoutException e) {
+                // A reaction that timed out might finish when the reaction pool is less busy, so it is not memoized
+                this.rejectionMessage = e.getMessage() != null ? e.getMessage() : "Reaction timed out";
+                System.out.println("Reactor produced the following error: " + this.rejectionMessage);
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.rejectionMessage = "Reaction was interrupted";
+                return false;
             }
-        } catch (ReactionException | IllegalArgumentException | IndexOutOfBoundsException e) {
-            this.rejectionMessage = "Reactor produced an error";
-            e.printStackTrace();
-            return false;
+            if (phenotypes == null || phenotypes.size() == 0) {
+                System.out.println("Reaction with the following reactants failed: " +
+                        Arrays.stream(reactants).map(molecule -> molecule.toFormat("smiles"))
+                                .collect(Collectors.joining("; ")));
+                this.rejectionMessage = "Reactor could not produce a reactions product";
+                cache.put(this.genotype, species, new ProductCache.Outcome(this.rejectionMessage));
+                return false;
+            }
+            if (outcome == null || outcome.getProductCount() != phenotypes.size()) {
+                outcome = new ProductCache.Outcome(phenotypes.size());
+                productIndex = drawProductIndex(phenotypes.size());
+                cache.put(this.genotype, species, outcome);
+            }
+            product = new ProductCache.Product(phenotypes.get(productIndex), this.atommap);
+            cache.putProduct(outcome, productIndex, product);
+            setPhenotype(phenotypes.get(productIndex), product.getDescriptors());
         }
-        System.out.println("Reaction with the following reactants failed: " +
-                Arrays.stream(reactants).map(molecule -> molecule.toFormat("smiles"))
-                        .collect(Collectors.joining("; ")));
-        this.rejectionMessage = "Reactor could not produce a reactions product";
-        return false;
+        // The seed of this candidate chose the product when the reaction yielded more than one
+        if (outcome.getProductCount() > 1) {
+            this.productChosenBySeed = true;
+        }
+        // The filters of this candidate determine whether a cached verdict can be used
+        List<Object> filterSignature = Arrays.asList(maxHydrogenBondDonors, maxHydrogenBondAcceptors,
+                maxMolecularMass, maxPartitionCoefficient, minQED, minBBB);
+        ProductCache.Verdict verdict = product.getVerdict(filterSignature);
+        if (verdict == null) {
+            this.rejectionMessage = null;
+            boolean valid = this.isValid();
+            // Not every filter describes why it rejected the product
+            String rejectionMessage = valid ? null : this.rejectionMessage != null ? this.rejectionMessage : "";
+            verdict = new ProductCache.Verdict(filterSignature, valid, rejectionMessage);
+            product.setVerdict(verdict);
+        }
+        if (verdict.isValid()) {
+            this.reactants = reactants;
+        } else {
+            this.rejectionMessage = verdict.getRejectionMessage();
+        }
+        return verdict.isValid();
     }
 
-    @SuppressWarnings("deprecation")
-    private List<Molecule> react(Reactor reaction, Molecule[] reactants) throws ReactionException {
-        reaction.setReactants(reactants);
-        Callable<List<Molecule>> task = () -> {
-            try {
-                List<Molecule> temp = new ArrayList<>();
-                Molecule[] product;
-                while ((product = reaction.react()) != null) {
-                    temp.add(product[0]);
-                }
-                return temp;
-            } catch (Exception e) {
-                System.out.println("e.getMessage() = " + e.getMessage());
-                return null;
-            }
-        };
-        FutureTask<List<Molecule>> future = new FutureTask<>(task);
-        Thread t = new Thread(future);
-        t.start();
-        // Try to get the result, unless it takes more than 5 seconds, in which case we stop the thread and return false
-        try {
-            List<Molecule> products = future.get(10, TimeUnit.SECONDS);
-            this.atommap = reaction.getReactionMap();
-            return products;
-        } catch (TimeoutException | ExecutionException | InterruptedException ex) {
-            this.rejectionMessage = ex.getMessage() != null ? ex.getMessage() : Arrays.toString(ex.getStackTrace());
-            System.out.println("Reactor produced the following error: " + this.rejectionMessage);
-            future.cancel(true);
-            t.stop();
-            return null;
+    /**
+     * Setter for the phenotype, which replaces the descriptors that were calculated for a previous phenotype.
+     *
+     * @param phenotype   The product of the reaction.
+     * @param descriptors The descriptors of the product, which are shared with other candidates with the same product.
+     */
+    private void setPhenotype(Molecule phenotype, DescriptorBundle descriptors) {
+        this.phenotype = phenotype;
+        this.descriptors = descriptors;
+    }
+
+    /**
+     * Getter for whether the product of this candidate was chosen with its seed, because a reaction that was tried
+     * when this candidate was finished yielded more than one product.
+     *
+     * @return true if the seed of this candidate chose a product, false if not.
+     */
+    boolean isProductChosenBySeed() {
+        return productChosenBySeed;
+    }
+
+    /**
+     * Getter for the amount of numbers that the random number generator of this candidate drew to choose products
+     * when this candidate was finished.
+     *
+     * @return the amount of drawn numbers.
+     */
+    int getProductDrawCount() {
+        return productDrawCount;
+    }
+
+    /**
+     * Getter for the amount of numbers that the random number generator of this candidate drew for other species,
+     * before the species of this candidate was tried.
+     *
+     * @return the amount of numbers drawn before the species of this candidate was tried.
+     */
+    int getSpeciesDrawOffset() {
+        return speciesDrawOffset;
+    }
+
+    /**
+     * Draws numbers from the random number generator of this candidate as if products were chosen for other species
+     * first, so that the next reaction chooses the same product as when the candidate was finished before.
+     *
+     * @param drawCount The amount of numbers to draw.
+     */
+    void skipProductDraws(int drawCount) {
+        for (int i = 0; i < drawCount; i++) {
+            drawProductIndex(1);
         }
     }
 
     /**
-     * A method selecting reactants from the reactant lists with the given list of indices.
+     * Chooses one of the products of a reaction with the random number generator of this candidate.
+     *
+     * @param productCount The amount of products of the reaction.
+     * @return the index of the chosen product.
+     */
+    private int drawProductIndex(int productCount) {
+        productDrawCount++;
+        return (int) (this.random.nextDouble() * productCount);
+    }
+
+    /**
+     * Sets the scores and the scored conformers of a record of this candidate.
      *
-     * @param reactantLists, a list of lists of reactants
-     * @return an array of reactants from the reactant lists.
+     * @param record The record of this candidate.
      */
-    private List<String> getReactantsFromIndices(List<List<String>> reactantLists) {
-        return IntStream.range(0, reactantLists.size())
-                .mapToObj(i -> reactantLists.get(i).get(this.genotype.get(i)))
-                .collect(Collectors.toList());
+    void restoreScores(CandidateRecord record) {
+        if (record.getRawScore() != null) {
+            setRawScore(record.getRawScore());
+        }
+        this.ligandEfficiency = record.getLigandEfficiency() != null ? record.getLigandEfficiency() : 0;
+        this.ligandLipophilicityEfficiency = record.getLigandLipophilicityEfficiency();
+        this.normFitness = record.getNormFitness();
+        this.scoredConformersFile = record.getScoredConformersFile();
+    }
+
+    /**
+     * Reacts the reactants on the reaction service, which cancels the reaction when it takes too long.
+     *
+     * @param reaction  The reactor to react with.
+     * @param reactants The reactants to react.
+     * @return the products of the reaction, or null if the reaction failed.
+     * @throws ReactionException    if the reactants could not be set.
+     * @throws TimeoutException     if the reaction did not finish in time.
+     * @throws InterruptedException if the thread was interrupted while waiting for the reaction.
+     */
+    private List<Molecule> react(Reactor reaction, Molecule[] reactants)
+            throws ReactionException, TimeoutException, InterruptedException {
+        try {
+            List<Molecule> products = ReactionService.getInstance().react(reaction, reactants);
+            // Copy the map, because the reactor is reused for other candidates
+            Map<MolAtom, AtomIdentifier> reactionMap = reaction.getReactionMap();
+            this.atommap = reactionMap != null ? new HashMap<>(reactionMap) : null;
+            return products;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            this.rejectionMessage = cause.getMessage() != null ? cause.getMessage() : Arrays.toString(cause.getStackTrace());
+            System.out.println("Reactor produced the following error: " + this.rejectionMessage);
+            return null;
+        }
     }
 
     /**
@@ -418,7 +619,7 @@ public class Candidate implements Comparable<Candidate> {
      * @throws PluginException if the heavy atom count could not be determined.
      */
     public void calculateLigandEfficiency() throws PluginException {
-        this.ligandEfficiency = this.getRawScore() / this.getHeavyAtomCount();
+        this.ligandEfficiency = this.getRawScore() / this.descriptors.getHeavyAtomCount();
     }
 
     /**
@@ -434,7 +635,7 @@ public class Candidate implements Comparable<Candidate> {
      * Method responsible for calculating and setting the ligand lipophilicity efficiency.
      */
     public void calculateLigandLipophilicityEfficiency() {
-        this.ligandLipophilicityEfficiency = Math.log(-this.getRawScore()) - logPPlugin.getlogPTrue();
+        this.ligandLipophilicityEfficiency = Math.log(-this.getRawScore()) - getPartitionCoefficient();
     }
 
     /**
@@ -443,9 +644,38 @@ public class Candidate implements Comparable<Candidate> {
      * @return a list of alleles
      */
     public List<Integer> getGenotype() {
+        return Collections.unmodifiableList(Arrays.stream(genotype).boxed().collect(Collectors.toList()));
+    }
+
+    /**
+     * Getter for the genotype as primitive alleles. The returned array is shared with this candidate,
+     * and should be copied before it is modified.
+     *
+     * @return an array of alleles
+     */
+    public int[] getGenome() {
         return genotype;
     }
 
+    /**
+     * Getter for a single allele in the genotype.
+     *
+     * @param index The index of the gene.
+     * @return the allele at the given index.
+     */
+    public int getAllele(int index) {
+        return genotype[index];
+    }
+
+    /**
+     * Getter for the amount of genes in the genotype.
+     *
+     * @return the size of the genome.
+     */
+    public int getGenomeSize() {
+        return genomeSize;
+    }
+
     public Map<MolAtom, AtomIdentifier> getAtommap() {
         return atommap;
     }
@@ -459,6 +689,15 @@ public class Candidate implements Comparable<Candidate> {
         return phenotype;
     }
 
+    /**
+     * Getter for the descriptors of the phenotype, which are calculated when they are first requested.
+     *
+     * @return the descriptor bundle of the phenotype.
+     */
+    public DescriptorBundle getDescriptors() {
+        return descriptors;
+    }
+
     /**
      * Getter for the name of the phenotype
      *
@@ -490,7 +729,7 @@ public class Candidate implements Comparable<Candidate> {
      * @param interspeciesCrossoverMethod Specifies how to use crossover when different species are encountered.
      * @return the recombined genome.
      */
-    ImmutablePair<Species, List<Integer>> crossover(
+    ImmutablePair<Species, int[]> crossover(
             Candidate other,
             Population.InterspeciesCrossoverMethod interspeciesCrossoverMethod) {
 
@@ -502,26 +741,29 @@ public class Candidate implements Comparable<Candidate> {
         int candidateChoice = random.nextInt(2);
         Species randomSpecies = (candidateChoice == 0 ? this.species : other.species);
         // Get the indices of the reactant pool that are in both this species and the other species
-        List<Integer> intersectionOfIndices = this.species.reactantIndexIntersection(other.species);
+        boolean[] sharedIndices = new boolean[genomeSize];
+        for (int index : this.species.reactantIndexIntersection(other.species)) {
+            sharedIndices[index] = true;
+        }
 
         // Get crossover points to do uniform crossing over
         boolean[] crossoverPoints = generateCrossoverPoints();
 
-        List<Integer> reactantGenome = new ArrayList<>();
+        int[] reactantGenome = new int[genomeSize];
         for (int i = 0; i < genomeSize; i++) {
             // For each gene in the genome decide if crossover should be applied by checking if
             // the current method for interspecies crossover is set to complete or if the
             // reactant is used by both the candidate species
             if (interspeciesCrossoverMethod == Population.InterspeciesCrossoverMethod.COMPLETE ||
-                    intersectionOfIndices.contains(i)) {
+                    sharedIndices[i]) {
                 // Select the allele from this candidates genotype if true,
                 // otherwise select the allele from the other candidate
-                reactantGenome.add(crossoverPoints[i] ? this.getGenotype().get(i) : other.getGenotype().get(i));
+                reactantGenome[i] = crossoverPoints[i] ? this.genotype[i] : other.genotype[i];
 
             } else { // Reactant not used by both of the candidates species
                 // Select the allele from this candidate if this candidates species was chosen,
                 // otherwise select the allele from the other candidate
-                reactantGenome.add(candidateChoice == 0 ? this.getGenotype().get(i) : other.getGenotype().get(i));
+                reactantGenome[i] = candidateChoice == 0 ? this.genotype[i] : other.genotype[i];
                 // candidate choice is either 0 (this) or 1 (other)
             }
         }
@@ -557,7 +799,7 @@ public class Candidate implements Comparable<Candidate> {
      * @return true if valid, false if not.
      */
     private boolean isValid() {
-        calculateLipinskiValues();
+        // Descriptors are only calculated for the filters that are set
         if (maxHydrogenBondDonors != null) {
             System.out.println("Rejecting candidate " + this.getIdentifier() + "for a hydrogen bond donor count over the maximum.");
             if (!isHydrogenBondDonorCountValid()) return false;
@@ -576,39 +818,23 @@ public class Candidate implements Comparable<Candidate> {
         }
         if (minQED != 0) {
             System.out.println("Rejecting candidate " + this.getIdentifier() + "for a QED under the minimum.");
-            if ((QuantitativeDrugEstimateCalculator.getQED(this.phenotype) < minQED)) return false;
+            if ((QuantitativeDrugEstimateCalculator.getQED(this.descriptors) < minQED)) return false;
         }
         if (minBBB != 0) {
             System.out.println("Rejecting candidate " + this.getIdentifier() + "for a BBB score under the minimum.");
-            return !(BBBScoreCalculator.getBBB(this.phenotype) < minBBB);
+            return !(BBBScoreCalculator.getBBB(this.descriptors) < minBBB);
         }
         return true;
     }
 
     /**
-     * Method that calculates hydrogen bond values.
-     */
-    private void calculateLipinskiValues() {
-        if (maxHydrogenBondAcceptors != null || maxHydrogenBondDonors != null) {
-            try {
-                hydrogenBondPlugin.setMolecule(this.phenotype);
-                hydrogenBondPlugin.setExcludeSulfur(true);
-                hydrogenBondPlugin.setExcludeHalogens(true);
-                hydrogenBondPlugin.run();
-            } catch (PluginException e) {
-                throw new RuntimeException("Could not set molecule in plugin: " + e.toString());
-            }
-        }
-        this.runLogPPluginIfNotRan();
-    }
-
-    /**
-     * Method that calculates the partition coefficient.
+     * Getter for the partition coefficient of the phenotype.
+     *
+     * @return the logP value of the phenotype.
      */
-    private void runLogPPluginIfNotRan() {
+    private double getPartitionCoefficient() {
         try {
-            logPPlugin.setMolecule(this.phenotype);
-            logPPlugin.run();
+            return this.descriptors.getLogP();
         } catch (PluginException e) {
             throw new RuntimeException("Could not set molecule in plugin: " + e.toString());
         }
@@ -622,7 +848,7 @@ public class Candidate implements Comparable<Candidate> {
      * @return true if the partition coefficient is valid, false if not.
      */
     private boolean isPartitionCoefficientValid() {
-        double logPTrue = logPPlugin.getlogPTrue();
+        double logPTrue = getPartitionCoefficient();
         boolean valid = logPTrue <= maxPartitionCoefficient;
         // Write why this molecule was invalid to create a descriptive error
         if (!valid) this.rejectionMessage = String.format("PartitionCoefficient was %s, should be <= %s",
@@ -639,7 +865,7 @@ public class Candidate implements Comparable<Candidate> {
      * @return true if the molecular mass is valid, false if not.
      */
     private boolean isMolecularMassValid() {
-        double mass = this.phenotype.getExactMass();
+        double mass = this.descriptors.getExactMass();
         boolean valid = mass <= maxMolecularMass;
         // Write why this molecule was invalid to create a descriptive error
         if (!valid) this.rejectionMessage = String.format("Molecular mass was %s, should be <= %s",
@@ -656,7 +882,12 @@ public class Candidate implements Comparable<Candidate> {
      * @return true if the hydrogen bond acceptor count is valid, false if not.
      */
     private boolean isHydrogenBondAcceptorCountValid() {
-        int acceptorAtomCount = hydrogenBondPlugin.getAcceptorAtomCount();
+        int acceptorAtomCount;
+        try {
+            acceptorAtomCount = this.descriptors.getHydrogenBondAcceptorCount();
+        } catch (PluginException e) {
+            throw new RuntimeException("Could not set molecule in plugin: " + e.toString());
+        }
         boolean valid = acceptorAtomCount <= maxHydrogenBondAcceptors;
         // Write why this molecule was invalid to create a descriptive error
         if (!valid) this.rejectionMessage = String.format("Hydrogen bond acceptor count was %s, should be <= %s",
@@ -673,7 +904,12 @@ public class Candidate implements Comparable<Candidate> {
      * @return true if the hydrogen bond donor count is valid, false if not.
      */
     private boolean isHydrogenBondDonorCountValid() {
-        int donorAtomCount = hydrogenBondPlugin.getDonorAtomCount();
+        int donorAtomCount;
+        try {
+            donorAtomCount = this.descriptors.getHydrogenBondDonorCount();
+        } catch (PluginException e) {
+            throw new RuntimeException("Could not set molecule in plugin: " + e.toString());
+        }
         boolean valid = donorAtomCount <= maxHydrogenBondDonors;
         // Write why this molecule was invalid to create a descriptive error
         if (!valid) this.rejectionMessage = String.format("Hydrogen bond donor count was %s, should be <= %s",
@@ -682,25 +918,6 @@ public class Candidate implements Comparable<Candidate> {
         return valid;
     }
 
-    /**
-     * Calculates the heavy atom count for the phenotype
-     *
-     * @return the number of heavy atoms in the phenotype
-     * @throws PluginException if the number of heavy atoms could not be determined
-     */
-    private int getHeavyAtomCount() throws PluginException {
-        ElementalAnalyserPlugin plugin = new ElementalAnalyserPlugin();
-        plugin.setMolecule(this.phenotype);
-
-        plugin.run();
-
-        // Get the amount of atoms and substract the amount of hydrogen atoms because heavy atom count is
-        // not implemented in the Chemaxon API
-        int allAtomCount = plugin.getAllAtomCount();
-        int hydrogenAtomCount = plugin.getAtomCount(1);
-        return allAtomCount - hydrogenAtomCount;
-    }
-
     /**
      * Setter for the fitness measure.
      *
@@ -836,17 +1053,35 @@ public class Candidate implements Comparable<Candidate> {
         this.minimizationOutputFilePath = minimizationOutputFilePath;
     }
 
+    /**
+     * Getter for the validation pipeline that produced the current conformer files of this candidate.
+     *
+     * @return the validation pipeline, or null if the conformer files were not produced by a validation pipeline.
+     */
+    public PipelineStep<Candidate, Candidate> getValidationPipeline() {
+        return validationPipeline;
+    }
+
+    /**
+     * Setter for the validation pipeline that produced the current conformer files of this candidate.
+     *
+     * @param validationPipeline The validation pipeline, or null if the conformer files are reset.
+     */
+    public void setValidationPipeline(PipelineStep<Candidate, Candidate> validationPipeline) {
+        this.validationPipeline = validationPipeline;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Candidate candidate = (Candidate) o;
-        return genotype.equals(candidate.getGenotype());
+        return genotypeHash == candidate.genotypeHash && Arrays.equals(genotype, candidate.genotype);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getGenotype());
+        return genotypeHash;
     }
 
     @Override
@@ -857,7 +1092,7 @@ public class Candidate implements Comparable<Candidate> {
     @Override
     public String toString() {
         return "Candidate{" +
-                "genotype=" + genotype +
+                "genotype=" + Arrays.toString(genotype) +
                 ", normFitness=" + normFitness +
                 ", id=" + identifier +
                 '}';
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model;
+
+import chemaxon.struc.Molecule;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable record of a scored candidate, which is kept in the history of the evolution instead of the candidate
+ * itself. A record holds the genome, the species, the scores and the canonical smiles of the product, but not the
+ * molecule graphs of the product and its reactants, nor the atom map between them. These are rebuilt from the
+ * reactant library when they are needed again.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public final class CandidateRecord implements Comparable<CandidateRecord> {
+    private final long identifier;
+    private final long baseSeed;
+    private final int[] genome;
+    private final int speciesIndex;
+    private final int speciesDrawOffset;
+    private final String speciesName;
+    private final Double rawScore;
+    private final Double ligandEfficiency;
+    private final Double ligandLipophilicityEfficiency;
+    private final double normFitness;
+    private final String smiles;
+    private final String[] reactantSmiles;
+    private final Path scoredConformersFile;
+
+    /**
+     * Constructor for a candidate record.
+     *
+     * @param candidate The candidate to record.
+     * @param species   The species of the population that the candidate is a part of.
+     * @param library   The library with the reactants that the genome of the candidate indexes.
+     */
+    CandidateRecord(Candidate candidate, List<Species> species, ReactantLibrary library) {
+        this.identifier = candidate.getIdentifier();
+        this.baseSeed = candidate.getBaseSeed();
+        this.genome = candidate.getGenome();
+        this.speciesIndex = getSpeciesIndex(candidate.getSpecies(), species);
+        this.speciesDrawOffset = candidate.getSpeciesDrawOffset();
+        this.speciesName = String.valueOf(candidate.getSpecies()).intern();
+        this.rawScore = candidate.getRawScore();
+        this.ligandEfficiency = candidate.getLigandEfficiency();
+        this.ligandLipophilicityEfficiency = candidate.getLigandLipophilicityEfficiency();
+        this.normFitness = candidate.getNormFitness();
+        this.smiles = getCanonicalSmiles(candidate.getPhenotype());
+        this.scoredConformersFile = candidate.getScoredConformersFile();
+        if (candidate.getSpecies() != null) {
+            // The smiles are shared with the reactant library
+            List<Integer> reactantIndices = candidate.getSpecies().getReactantIndices();
+            this.reactantSmiles = new String[reactantIndices.size()];
+            for (int i = 0; i < reactantSmiles.length; i++) {
+                int listIndex = reactantIndices.get(i);
+                reactantSmiles[i] = library.getReactantSmiles(listIndex, genome[listIndex]);
+            }
+        } else {
+            this.reactantSmiles = new String[0];
+        }
+    }
+
+    /**
+     * Rebuilds the candidate of this record, with its product, reactants and atom map. The genome is reacted again
+     * with the species of the record, which is answered from the product cache when the product is still cached,
+     * and chooses its product with the same seed as the recorded candidate. The atom map only links the recorded product to the reactants when the reaction yields the recorded product
+     * again, so the candidate is not rebuilt when the reaction fails or yields another product.
+     *
+     * @param library The library with the reactants that the genome of this record indexes.
+     * @param species The species of the population that the candidate was a part of.
+     * @return the rebuilt candidate, or null if the recorded product could not be rebuilt.
+     */
+    Candidate load(ReactantLibrary library, List<Species> species) {
+        if (speciesIndex < 0 || speciesIndex >= species.size()) {
+            return null;
+        }
+        Candidate candidate = new Candidate(genome, species.get(speciesIndex), identifier, baseSeed);
+        // The species that were tried before the species of the record chose products with the same seed
+        candidate.skipProductDraws(speciesDrawOffset);
+        if (!candidate.finish(library) || !smiles.equals(getCanonicalSmiles(candidate.getPhenotype()))) {
+            System.err.println("Candidate " + identifier + " could not be rebuilt with the recorded product");
+            return null;
+        }
+        candidate.restoreScores(this);
+        return candidate;
+    }
+
+    /**
+     * Getter for the identifier of the candidate.
+     *
+     * @return the identifier.
+     */
+    public long getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * Getter for the genome of the candidate. The returned array is shared with this record, and should not be
+     * modified.
+     *
+     * @return an array of alleles.
+     */
+    public int[] getGenome() {
+        return genome;
+    }
+
+    /**
+     * Getter for a single allele in the genome.
+     *
+     * @param index The index of the gene.
+     * @return the allele at the given index.
+     */
+    public int getAllele(int index) {
+        return genome[index];
+    }
+
+    /**
+     * Getter for the index of the species of the candidate in the species of its population.
+     *
+     * @return the species index, or -1 if the species is not known.
+     */
+    public int getSpeciesIndex() {
+        return speciesIndex;
+    }
+
+    /**
+     * Getter for the name of the species of the candidate.
+     *
+     * @return the species name.
+     */
+    public String getSpeciesName() {
+        return speciesName;
+    }
+
+    /**
+     * Getter for the raw score of the candidate.
+     *
+     * @return the raw score.
+     */
+    public Double getRawScore() {
+        return rawScore;
+    }
+
+    /**
+     * Getter for the ligand efficiency of the candidate.
+     *
+     * @return the ligand efficiency.
+     */
+    public Double getLigandEfficiency() {
+        return ligandEfficiency;
+    }
+
+    /**
+     * Getter for the ligand lipophilicity efficiency of the candidate.
+     *
+     * @return the ligand lipophilicity efficiency.
+     */
+    public Double getLigandLipophilicityEfficiency() {
+        return ligandLipophilicityEfficiency;
+    }
+
+    /**
+     * Getter for the normalized fitness of the candidate in its generation.
+     * Higher is better.
+     *
+     * @return the normalized fitness.
+     */
+    public double getNormFitness() {
+        return normFitness;
+    }
+
+    /**
+     * Getter for the canonical smiles of the product.
+     *
+     * @return the canonical smiles, or an empty string if the candidate had no product.
+     */
+    public String getSmiles() {
+        return smiles;
+    }
+
+    /**
+     * Getter for the smiles of the reactants of the product.
+     *
+     * @return the reactant smiles, in the order of the reactants in the reaction of the species.
+     */
+    public List<String> getReactantSmiles() {
+        return Collections.unmodifiableList(Arrays.asList(reactantSmiles));
+    }
+
+    /**
+     * Getter for the file with the scored conformers of the candidate.
+     *
+     * @return the path of the scored conformers file, or null if the candidate has none.
+     */
+    public Path getScoredConformersFile() {
+        return scoredConformersFile;
+    }
+
+    @Override
+    public int compareTo(CandidateRecord o) {
+        return Double.compare(this.normFitness, o.normFitness);
+    }
+
+    @Override
+    public String toString() {
+        return "CandidateRecord{" +
+                "genotype=" + Arrays.toString(genome) +
+                ", normFitness=" + normFitness +
+                ", id=" + identifier +
+                '}';
+    }
+
+    /**
+     * Gets the index of a species in a list of species.
+     *
+     * @param species     The species to get the index of.
+     * @param speciesList The list of species.
+     * @return the index of the species, or -1 if it is not in the list.
+     */
+    private static int getSpeciesIndex(Species species, List<Species> speciesList) {
+        for (int i = 0; i < speciesList.size(); i++) {
+            if (speciesList.get(i) == species) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the canonical smiles of a product, so that the same product always gets the same smiles.
+     *
+     * @param phenotype The product to get the smiles of.
+     * @return the canonical smiles, or an empty string if there is no product.
+     */
+    private static String getCanonicalSmiles(Molecule phenotype) {
+        return phenotype != null ? phenotype.toFormat("smiles:u") : "";
+    }
+}
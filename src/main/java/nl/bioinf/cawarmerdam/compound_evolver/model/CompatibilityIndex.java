@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model;
+
+import chemaxon.sss.search.MolSearch;
+import chemaxon.sss.search.SearchException;
+import chemaxon.struc.Molecule;
+import nl.bioinf.cawarmerdam.compound_evolver.util.ExecutionService;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Index of the reactants that can take part in the reactions of a list of species. For every species and every
+ * reactant position in its reaction, the index holds a bitmap of the reactants that match the reactant query of the
+ * reaction at that position. A reactant without a matching functional group can never react, so alleles that are
+ * not compatible can be skipped before they are reacted.
+ * <p>
+ * A genome holds a reactant for every list of reactants, and can be reacted with any species that uses the lists.
+ * A reactant is therefore compatible with a list of species if it matches every position that it is used at in at
+ * least one of the species.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class CompatibilityIndex {
+    private static final int MATCHING_CHUNK_SIZE = 256;
+    private final List<Species> species;
+    private final int[] reactantCounts;
+    // For every species and reactant position, the reactants in the list at that position that match the query
+    private final BitSet[][] matches;
+    private final Map<List<Species>, int[][]> compatibleReactants = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for a compatibility index. The reactants are matched against the reactant queries of the
+     * reactions in parallel on the shared CPU pool.
+     *
+     * @param library The library with the parsed reactants.
+     * @param species The species with the reactions to match the reactants against.
+     */
+    CompatibilityIndex(ReactantLibrary library, List<Species> species) {
+        this.species = species;
+        this.reactantCounts = new int[library.size()];
+        for (int i = 0; i < reactantCounts.length; i++) {
+            reactantCounts[i] = library.getReactantCount(i);
+        }
+        this.matches = new BitSet[species.size()][];
+        ExecutorService executor = ExecutionService.getInstance().newTaskGroup(ExecutionService.PoolType.CPU);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int s = 0; s < species.size(); s++) {
+                List<Integer> reactantIndices = species.get(s).getReactantIndices();
+                matches[s] = new BitSet[reactantIndices.size()];
+                for (int p = 0; p < reactantIndices.size(); p++) {
+                    int listIndex = reactantIndices.get(p);
+                    Molecule query = getReactantQuery(species.get(s), p);
+                    matches[s][p] = new BitSet(reactantCounts[listIndex]);
+                    for (int from = 0; from < reactantCounts[listIndex]; from += MATCHING_CHUNK_SIZE) {
+                        int to = Math.min(from + MATCHING_CHUNK_SIZE, reactantCounts[listIndex]);
+                        futures.add(executor.submit(getMatchingTask(library, listIndex, query, matches[s][p], from, to)));
+                    }
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while matching the reactants", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Could not match the reactants", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Constructor for a compatibility index of a selection of the reactants of another index.
+     *
+     * @param species        The species of the index.
+     * @param reactantCounts The amount of reactants in every list of the selection.
+     * @param matches        The bitmaps of the matching reactants in the selection.
+     */
+    private CompatibilityIndex(List<Species> species, int[] reactantCounts, BitSet[][] matches) {
+        this.species = species;
+        this.reactantCounts = reactantCounts;
+        this.matches = matches;
+    }
+
+    /**
+     * Creates an index of a selection of the reactants in this index, without matching the reactants again.
+     *
+     * @param reactantSelection For every list of reactants, the indices of the reactants to select.
+     * @return an index of the selected reactants.
+     */
+    public CompatibilityIndex select(List<List<Integer>> reactantSelection) {
+        int[] selectedCounts = new int[reactantCounts.length];
+        for (int i = 0; i < selectedCounts.length; i++) {
+            selectedCounts[i] = reactantSelection.get(i).size();
+        }
+        BitSet[][] selectedMatches = new BitSet[matches.length][];
+        for (int s = 0; s < matches.length; s++) {
+            List<Integer> reactantIndices = species.get(s).getReactantIndices();
+            selectedMatches[s] = new BitSet[matches[s].length];
+            for (int p = 0; p < matches[s].length; p++) {
+                List<Integer> selection = reactantSelection.get(reactantIndices.get(p));
+                selectedMatches[s][p] = new BitSet(selection.size());
+                for (int j = 0; j < selection.size(); j++) {
+                    selectedMatches[s][p].set(j, matches[s][p].get(selection.get(j)));
+                }
+            }
+        }
+        return new CompatibilityIndex(species, selectedCounts, selectedMatches);
+    }
+
+    /**
+     * Checks if a reactant matches the reactant query of a species at a reactant position.
+     *
+     * @param species       The species, which should be one of the species of this index.
+     * @param position      The reactant position in the reaction of the species.
+     * @param reactantIndex The index of the reactant in the list at the reactant position.
+     * @return true if the reactant matches the reactant query.
+     */
+    public boolean isCompatible(Species species, int position, int reactantIndex) {
+        return matches[getSpeciesIndex(species)][position].get(reactantIndex);
+    }
+
+    /**
+     * Getter for the indices of the reactants in a list that are compatible with at least one of the given species.
+     * When none of the reactants in a list is compatible, every reactant in the list is returned, so that sampling
+     * behaves as it would without the index.
+     *
+     * @param species   The species to get the compatible reactants for, which should be species of this index.
+     * @param listIndex The index of the list of reactants.
+     * @return the ascending indices of the compatible reactants, which should not be modified.
+     */
+    public int[] getCompatibleReactants(List<Species> species, int listIndex) {
+        return compatibleReactants.computeIfAbsent(species, this::computeCompatibleReactants)[listIndex];
+    }
+
+    /**
+     * Computes the compatible reactants of every list for a list of species.
+     *
+     * @param species The species to compute the compatible reactants for.
+     * @return for every list, the ascending indices of the compatible reactants.
+     */
+    private int[][] computeCompatibleReactants(List<Species> species) {
+        int[][] compatible = new int[reactantCounts.length][];
+        for (int i = 0; i < reactantCounts.length; i++) {
+            BitSet union = new BitSet(reactantCounts[i]);
+            boolean used = false;
+            for (Species aSpecies : species) {
+                BitSet[] speciesMatches = matches[getSpeciesIndex(aSpecies)];
+                List<Integer> reactantIndices = aSpecies.getReactantIndices();
+                // A reactant that is used at multiple positions should match every position
+                BitSet intersection = null;
+                for (int p = 0; p < reactantIndices.size(); p++) {
+                    if (reactantIndices.get(p) != i) continue;
+                    if (intersection == null) {
+                        intersection = (BitSet) speciesMatches[p].clone();
+                    } else {
+                        intersection.and(speciesMatches[p]);
+                    }
+                }
+                if (intersection != null) {
+                    used = true;
+                    union.or(intersection);
+                }
+            }
+            if (!used || union.isEmpty()) {
+                if (used) {
+                    System.out.printf("None of the %d reactants in list %d match a reaction%n", reactantCounts[i], i);
+                }
+                union.set(0, reactantCounts[i]);
+            }
+            compatible[i] = union.stream().toArray();
+        }
+        return compatible;
+    }
+
+    /**
+     * Gets the index of a species in this index.
+     *
+     * @param species The species to get the index of.
+     * @return the index of the species.
+     */
+    private int getSpeciesIndex(Species species) {
+        for (int s = 0; s < this.species.size(); s++) {
+            if (this.species.get(s) == species) return s;
+        }
+        throw new IllegalArgumentException(String.format("%s is not part of the compatibility index", species));
+    }
+
+    /**
+     * Gets the query of a reactant position in the reaction of a species.
+     *
+     * @param species  The species with the reaction.
+     * @param position The reactant position in the reaction.
+     * @return the query of the reactant position, or null if the reaction does not have a query for it.
+     */
+    private static Molecule getReactantQuery(Species species, int position) {
+        if (species.getReaction().getReaction() == null
+                || position >= species.getReaction().getReaction().getReactantCount()) {
+            return null;
+        }
+        return species.getReaction().getReaction().getReactant(position);
+    }
+
+    /**
+     * Creates a task that matches a range of reactants against a reactant query.
+     *
+     * @param library   The library with the parsed reactants.
+     * @param listIndex The index of the list of reactants to match.
+     * @param query     The reactant query, or null if every reactant is compatible.
+     * @param matches   The bitmap to set the matching reactants in.
+     * @param from      The index of the first reactant to match, inclusive.
+     * @param to        The index of the last reactant to match, exclusive.
+     * @return the task that matches the reactants.
+     */
+    private static Runnable getMatchingTask(ReactantLibrary library, int listIndex, Molecule query,
+                                            BitSet matches, int from, int to) {
+        return () -> {
+            boolean[] matching = new boolean[to - from];
+            MolSearch search = new MolSearch();
+            if (query != null) {
+                // Every task uses its own copy of the query
+                search.setQuery(query.cloneMolecule());
+            }
+            for (int j = from; j < to; j++) {
+                Molecule reactant = library.getReactant(listIndex, j);
+                // Reactants that could not be parsed can never react
+                if (reactant == null) continue;
+                if (query == null) {
+                    matching[j - from] = true;
+                    continue;
+                }
+                search.setTarget(reactant);
+                try {
+                    matching[j - from] = search.isMatching();
+                } catch (SearchException e) {
+                    // The reactor decides for reactants that could not be matched
+                    matching[j - from] = true;
+                }
+            }
+            // Bitmaps are not thread safe, so the bits of the chunk are set at once
+            synchronized (matches) {
+                for (int j = from; j < to; j++) {
+                    matches.set(j, matching[j - from]);
+                }
+            }
+        };
+    }
+}
@@ -4,6 +4,8 @@
  */
 package nl.bioinf.cawarmerdam.compound_evolver.model;
 
+import nl.bioinf.cawarmerdam.compound_evolver.model.pipeline.PipelineStatistics;
+
 import java.util.List;
 
 /**
@@ -35,6 +37,34 @@ public interface EvolutionProgressConnector {
      */
     void handleNewGeneration(Generation generation);
 
+    /**
+     * Method that should handle a newly scored generation of a single island, when multiple
+     * populations are evolved in parallel. By default the generations of islands are ignored.
+     *
+     * @param islandIndex The index of the island that the generation belongs to.
+     * @param generation  A new, scored generation.
+     */
+    default void handleNewIslandGeneration(int islandIndex, Generation generation) {
+    }
+
+    /**
+     * Method that receives the statistics of the scores of the evolution, which are updated while
+     * the evolution progresses. By default the statistics are ignored.
+     *
+     * @param statistics The statistics of the scores of the evolution.
+     */
+    default void setStatistics(EvolutionStatistics statistics) {
+    }
+
+    /**
+     * Method that receives the latencies and outcomes of the pipeline steps, which are updated while the evolution
+     * progresses. By default the pipeline statistics are ignored.
+     *
+     * @param pipelineStatistics The statistics of the pipeline steps.
+     */
+    default void setPipelineStatistics(PipelineStatistics pipelineStatistics) {
+    }
+
     /**
      * Method that returns if termination is required according to the connector.
      *
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model;
+
+import nl.bioinf.cawarmerdam.compound_evolver.util.StreamingQuantile;
+
+import java.util.Arrays;
+
+/**
+ * Statistics of the scores of an evolution run, which are updated in constant time for every scored candidate.
+ * Scores are recorded per generation: a generation is started, the score of every candidate is added to it,
+ * after which the generation is finished. The summary of every finished generation, as well as the scores
+ * themselves, are kept in primitive arrays so that they can be read without recomputing anything.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class EvolutionStatistics {
+    private static final int INITIAL_CAPACITY = 16;
+    // Summaries of the finished generations
+    private int generationCount;
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private double[] minima = new double[INITIAL_CAPACITY];
+    private double[] maxima = new double[INITIAL_CAPACITY];
+    private double[] means = new double[INITIAL_CAPACITY];
+    private double[] variances = new double[INITIAL_CAPACITY];
+    private double[] lowerQuartiles = new double[INITIAL_CAPACITY];
+    private double[] medians = new double[INITIAL_CAPACITY];
+    private double[] upperQuartiles = new double[INITIAL_CAPACITY];
+    private double[] bestScores = new double[INITIAL_CAPACITY];
+    private int[] bestGenerations = new int[INITIAL_CAPACITY];
+    // The scores of every generation, which start at the offset of the generation
+    private int[] offsets = new int[INITIAL_CAPACITY + 1];
+    private double[] scores = new double[INITIAL_CAPACITY * INITIAL_CAPACITY];
+    private int scoreCount;
+    // Accumulators of the generation that is being recorded
+    private boolean recording;
+    private int count;
+    private double minimum;
+    private double maximum;
+    private double mean;
+    private double sumOfSquares;
+    private StreamingQuantile lowerQuartile;
+    private StreamingQuantile median;
+    private StreamingQuantile upperQuartile;
+    // The best score of the run so far
+    private double bestScore = Double.NEGATIVE_INFINITY;
+    private int bestGeneration = -1;
+
+    /**
+     * Starts recording the scores of a new generation.
+     */
+    public synchronized void startGeneration() {
+        if (recording) {
+            throw new IllegalStateException("The previous generation has not been finished");
+        }
+        recording = true;
+        count = 0;
+        minimum = Double.POSITIVE_INFINITY;
+        maximum = Double.NEGATIVE_INFINITY;
+        mean = 0;
+        sumOfSquares = 0;
+        lowerQuartile = new StreamingQuantile(0.25);
+        median = new StreamingQuantile(0.5);
+        upperQuartile = new StreamingQuantile(0.75);
+    }
+
+    /**
+     * Adds the score of a candidate to the generation that is being recorded.
+     *
+     * @param score The score of a candidate.
+     */
+    public synchronized void accept(double score) {
+        if (!recording) {
+            throw new IllegalStateException("No generation has been started");
+        }
+        count++;
+        minimum = Math.min(minimum, score);
+        maximum = Math.max(maximum, score);
+        // Welford's method for the running mean and variance
+        double delta = score - mean;
+        mean += delta / count;
+        sumOfSquares += delta * (score - mean);
+        lowerQuartile.accept(score);
+        median.accept(score);
+        upperQuartile.accept(score);
+        if (scoreCount == scores.length) {
+            scores = Arrays.copyOf(scores, scores.length * 2);
+        }
+        scores[scoreCount++] = score;
+    }
+
+    /**
+     * Finishes the generation that is being recorded.
+     *
+     * @return the summary of the finished generation.
+     */
+    public synchronized GenerationStatistics finishGeneration() {
+        if (!recording) {
+            throw new IllegalStateException("No generation has been started");
+        }
+        recording = false;
+        ensureGenerationCapacity();
+        int generation = generationCount++;
+        boolean empty = count == 0;
+        counts[generation] = count;
+        minima[generation] = empty ? Double.NaN : minimum;
+        maxima[generation] = empty ? Double.NaN : maximum;
+        means[generation] = empty ? Double.NaN : mean;
+        variances[generation] = count > 1 ? sumOfSquares / (count - 1) : empty ? Double.NaN : 0;
+        lowerQuartiles[generation] = lowerQuartile.getQuantile();
+        medians[generation] = median.getQuantile();
+        upperQuartiles[generation] = upperQuartile.getQuantile();
+        // Only a strictly higher score counts as an improvement
+        if (!empty && maximum > bestScore) {
+            bestScore = maximum;
+            bestGeneration = generation;
+        }
+        bestScores[generation] = bestScore;
+        bestGenerations[generation] = bestGeneration;
+        offsets[generation + 1] = scoreCount;
+        return getSummary(generation);
+    }
+
+    /**
+     * Getter for the amount of generations that were finished.
+     *
+     * @return the amount of finished generations.
+     */
+    public synchronized int getGenerationCount() {
+        return generationCount;
+    }
+
+    /**
+     * Getter for the highest score of the run.
+     *
+     * @return the highest score, or negative infinity if nothing was scored.
+     */
+    public synchronized double getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * Getter for the generation in which the highest score of the run was first reached.
+     *
+     * @return the index of the generation with the highest score, or -1 if nothing was scored.
+     */
+    public synchronized int getBestGeneration() {
+        return bestGeneration;
+    }
+
+    /**
+     * Getter for the amount of finished generations since the highest score of the run was first reached.
+     *
+     * @return the amount of generations without improvement.
+     */
+    public synchronized int getGenerationsSinceImprovement() {
+        return generationCount == 0 ? 0 : generationCount - 1 - Math.max(bestGeneration, 0);
+    }
+
+    /**
+     * Getter for the summary of a finished generation.
+     *
+     * @param generation The index of the generation.
+     * @return the summary of the generation.
+     */
+    public synchronized GenerationStatistics getSummary(int generation) {
+        checkGeneration(generation);
+        return new GenerationStatistics(generation, counts[generation],
+                minima[generation], maxima[generation], means[generation], variances[generation],
+                lowerQuartiles[generation], medians[generation], upperQuartiles[generation],
+                bestScores[generation], generation - Math.max(bestGenerations[generation], 0));
+    }
+
+    /**
+     * Getter for the summary of the last finished generation.
+     *
+     * @return the summary of the last finished generation, or null if no generation was finished.
+     */
+    public synchronized GenerationStatistics getLatestSummary() {
+        return generationCount == 0 ? null : getSummary(generationCount - 1);
+    }
+
+    /**
+     * Getter for the scores of a finished generation.
+     *
+     * @param generation The index of the generation.
+     * @return the scores of the generation, in the order that they were added.
+     */
+    public synchronized double[] getScores(int generation) {
+        checkGeneration(generation);
+        return Arrays.copyOfRange(scores, offsets[generation], offsets[generation + 1]);
+    }
+
+    /**
+     * Getter for the scores of every finished generation.
+     *
+     * @return an array with the scores of every generation.
+     */
+    public synchronized double[][] getScoreTable() {
+        double[][] table = new double[generationCount][];
+        for (int i = 0; i < generationCount; i++) {
+            table[i] = getScores(i);
+        }
+        return table;
+    }
+
+    /**
+     * Grows the arrays of generation summaries when they are full.
+     */
+    private void ensureGenerationCapacity() {
+        if (generationCount < counts.length) return;
+        int capacity = counts.length * 2;
+        counts = Arrays.copyOf(counts, capacity);
+        minima = Arrays.copyOf(minima, capacity);
+        maxima = Arrays.copyOf(maxima, capacity);
+        means = Arrays.copyOf(means, capacity);
+        variances = Arrays.copyOf(variances, capacity);
+        lowerQuartiles = Arrays.copyOf(lowerQuartiles, capacity);
+        medians = Arrays.copyOf(medians, capacity);
+        upperQuartiles = Arrays.copyOf(upperQuartiles, capacity);
+        bestScores = Arrays.copyOf(bestScores, capacity);
+        bestGenerations = Arrays.copyOf(bestGenerations, capacity);
+        offsets = Arrays.copyOf(offsets, capacity + 1);
+    }
+
+    /**
+     * Checks if a generation was finished.
+     *
+     * @param generation The index of the generation.
+     */
+    private void checkGeneration(int generation) {
+        if (generation < 0 || generation >= generationCount) {
+            throw new IllegalArgumentException(String.format(
+                    "Generation %d has not been finished, %d generations are available", generation, generationCount));
+        }
+    }
+}
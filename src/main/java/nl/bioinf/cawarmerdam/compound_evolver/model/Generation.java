@@ -9,45 +9,71 @@ import java.util.Collections;
 import java.util.List;
 
 /**
- * A class that holds a list of candidates and the generation number.
+ * A class that holds a list of candidate records and the generation number.
+ * <p>
+ * The generation only holds records of its candidates, so that the molecules of the candidates are released once
+ * the generation is archived. The candidates can be rebuilt from the reactant library that the generation refers to.
  *
  * @author C.A. (Robert) Warmerdam
  * @author c.a.warmerdam@st.hanze.nl
  * @version 0.0.1
  */
 public class Generation {
-    private final List<Candidate> candidateList;
+    private final List<CandidateRecord> candidateList;
     private final int number;
+    private final GenerationStatistics statistics;
+    private final ReactantLibrary reactantLibrary;
+    private final List<Species> species;
 
     /**
-     * Constructor for a generation instance
+     * Constructor for a generation instance with a summary of its scores.
      *
-     * @param candidateList The list of candidates that comprise this generation.
-     * @param number        The generation number of this generation.
+     * @param candidateList   The list of candidates that comprise this generation.
+     * @param number          The generation number of this generation.
+     * @param statistics      The summary of the scores in this generation, or null if it is not known.
+     * @param reactantLibrary The library with the reactants that the genomes of the candidates index.
+     * @param species         The species of the population that the candidates are a part of.
      */
-    Generation(List<Candidate> candidateList, int number) {
+    Generation(List<Candidate> candidateList, int number, GenerationStatistics statistics,
+               ReactantLibrary reactantLibrary, List<Species> species) {
         this.number = number;
-        this.candidateList = new ArrayList<>(candidateList);
+        this.candidateList = new ArrayList<>(candidateList.size());
+        for (Candidate candidate : candidateList) {
+            this.candidateList.add(new CandidateRecord(candidate, species, reactantLibrary));
+        }
+        this.statistics = statistics;
+        this.reactantLibrary = reactantLibrary;
+        this.species = species;
     }
 
     /**
-     * Getter for the candidates in this generation.
+     * Getter for the records of the candidates in this generation.
      *
-     * @return a list of candidates.
+     * @return a list of candidate records.
      */
-    public List<Candidate> getCandidateList() {
+    public List<CandidateRecord> getCandidateList() {
         return candidateList;
     }
 
     /**
-     * Getter for the fittest candidate in this generation.
+     * Getter for the record of the fittest candidate in this generation.
      *
-     * @return the fittest candidate in this generation
+     * @return the record of the fittest candidate in this generation
      */
-    public Candidate getFittestCandidate() {
+    public CandidateRecord getFittestCandidate() {
         return Collections.max(candidateList);
     }
 
+    /**
+     * Rebuilds the candidate of a record in this generation, with its product, reactants and atom map.
+     *
+     * @param record The record of the candidate, which should be a record of this generation.
+     * @return the rebuilt candidate, or null if it could not be rebuilt.
+     */
+    public Candidate loadCandidate(CandidateRecord record) {
+        return record.load(reactantLibrary, species);
+    }
+
     /**
      * Getter for the number of this generation, aka the iteration of evolution.
      *
@@ -56,4 +82,13 @@ public class Generation {
     public int getNumber() {
         return number;
     }
+
+    /**
+     * Getter for the summary of the scores in this generation.
+     *
+     * @return the summary of the scores, or null if it is not known.
+     */
+    public GenerationStatistics getStatistics() {
+        return statistics;
+    }
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model;
+
+/**
+ * A summary of the scores of a single generation, as recorded by the evolution statistics.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class GenerationStatistics {
+    private final int number;
+    private final int count;
+    private final double minimum;
+    private final double maximum;
+    private final double mean;
+    private final double variance;
+    private final double lowerQuartile;
+    private final double median;
+    private final double upperQuartile;
+    private final double bestScore;
+    private final int generationsSinceImprovement;
+
+    /**
+     * Constructor for generation statistics.
+     *
+     * @param number                      The index of the generation in the statistics.
+     * @param count                       The amount of scores in the generation.
+     * @param minimum                     The lowest score in the generation.
+     * @param maximum                     The highest score in the generation.
+     * @param mean                        The mean score of the generation.
+     * @param variance                    The variance of the scores in the generation.
+     * @param lowerQuartile               The estimated first quartile of the scores in the generation.
+     * @param median                      The estimated median of the scores in the generation.
+     * @param upperQuartile               The estimated third quartile of the scores in the generation.
+     * @param bestScore                   The highest score of the run up to and including this generation.
+     * @param generationsSinceImprovement The amount of generations since the best score last improved.
+     */
+    GenerationStatistics(int number, int count, double minimum, double maximum, double mean, double variance,
+                         double lowerQuartile, double median, double upperQuartile,
+                         double bestScore, int generationsSinceImprovement) {
+        this.number = number;
+        this.count = count;
+        this.minimum = minimum;
+        this.maximum = maximum;
+        this.mean = mean;
+        this.variance = variance;
+        this.lowerQuartile = lowerQuartile;
+        this.median = median;
+        this.upperQuartile = upperQuartile;
+        this.bestScore = bestScore;
+        this.generationsSinceImprovement = generationsSinceImprovement;
+    }
+
+    /**
+     * Getter for the index of the generation in the statistics.
+     *
+     * @return the index of the generation in the statistics.
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Getter for the amount of scores in the generation.
+     *
+     * @return the amount of scores in the generation.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Getter for the lowest score in the generation.
+     *
+     * @return the lowest score in the generation.
+     */
+    public double getMinimum() {
+        return minimum;
+    }
+
+    /**
+     * Getter for the highest score in the generation.
+     *
+     * @return the highest score in the generation.
+     */
+    public double getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * Getter for the mean score of the generation.
+     *
+     * @return the mean score of the generation.
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Getter for the variance of the scores in the generation.
+     *
+     * @return the variance of the scores in the generation.
+     */
+    public double getVariance() {
+        return variance;
+    }
+
+    /**
+     * Getter for the standard deviation of the scores in the generation.
+     *
+     * @return the standard deviation of the scores in the generation.
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(variance);
+    }
+
+    /**
+     * Getter for the estimated first quartile of the scores in the generation.
+     *
+     * @return the estimated first quartile of the scores in the generation.
+     */
+    public double getLowerQuartile() {
+        return lowerQuartile;
+    }
+
+    /**
+     * Getter for the estimated median of the scores in the generation.
+     *
+     * @return the estimated median of the scores in the generation.
+     */
+    public double getMedian() {
+        return median;
+    }
+
+    /**
+     * Getter for the estimated third quartile of the scores in the generation.
+     *
+     * @return the estimated third quartile of the scores in the generation.
+     */
+    public double getUpperQuartile() {
+        return upperQuartile;
+    }
+
+    /**
+     * Getter for the highest score of the run up to and including this generation.
+     *
+     * @return the highest score of the run up to and including this generation.
+     */
+    public double getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * Getter for the amount of generations since the best score last improved.
+     *
+     * @return the amount of generations since the best score last improved.
+     */
+    public int getGenerationsSinceImprovement() {
+        return generationsSinceImprovement;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "Generation %d, individual count = %d %n" +
+                        " agv | min | median | max | best %n %3.2f | %3.2f | %3.2f | %3.2f | %3.2f ",
+                number, count, mean, minimum, median, maximum, bestScore);
+    }
+}
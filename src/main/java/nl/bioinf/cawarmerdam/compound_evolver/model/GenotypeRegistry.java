@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Registry of every genotype that was encountered during a run. Genotypes are packed into a single long key
+ * so that checking and registering a genotype takes constant time and does not depend on the amount of candidates
+ * that were produced before.
+ * <p>
+ * When the reactant indices of a genotype fit in 64 bits the key is exact. For larger reactant spaces the key is
+ * a 64 bit hash of the genotype.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class GenotypeRegistry {
+    private static final long EMPTY = 0L;
+    private static final double MAX_LOAD_FACTOR = 0.5;
+    private final int[] bitsPerGene;
+    private final boolean exact;
+    private long[] keys;
+    private boolean containsEmptyKey;
+    private int size;
+
+    /**
+     * Constructor for a genotype registry.
+     *
+     * @param reactantLists The lists of reactants that the genotypes index.
+     */
+    public GenotypeRegistry(List<List<String>> reactantLists) {
+        this.bitsPerGene = new int[reactantLists.size()];
+        int totalBits = 0;
+        for (int i = 0; i < reactantLists.size(); i++) {
+            // The amount of bits that is needed to store the largest index in this reactant list
+            bitsPerGene[i] = Math.max(1, 32 - Integer.numberOfLeadingZeros(reactantLists.get(i).size() - 1));
+            totalBits += bitsPerGene[i];
+        }
+        this.exact = totalBits <= Long.SIZE;
+        this.keys = new long[64];
+    }
+
+    /**
+     * Registers the genotype.
+     *
+     * @param genotype The genotype to register.
+     * @return true if the genotype was not registered before, false if it was.
+     */
+    public synchronized boolean register(int[] genotype) {
+        long key = getKey(genotype);
+        if (key == EMPTY) {
+            if (containsEmptyKey) return false;
+            containsEmptyKey = true;
+            size++;
+            return true;
+        }
+        int slot = findSlot(keys, key);
+        if (keys[slot] == key) return false;
+        keys[slot] = key;
+        size++;
+        if (size > keys.length * MAX_LOAD_FACTOR) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Removes the registration of a genotype, so that it can be registered again. This is used for genotypes
+     * that were registered, but of which the candidate was never completed.
+     *
+     * @param genotype The genotype to remove.
+     * @return true if the genotype was registered, false if it was not.
+     */
+    public synchronized boolean unregister(int[] genotype) {
+        long key = getKey(genotype);
+        if (key == EMPTY) {
+            if (!containsEmptyKey) return false;
+            containsEmptyKey = false;
+            size--;
+            return true;
+        }
+        int hole = findSlot(keys, key);
+        if (keys[hole] != key) return false;
+        keys[hole] = EMPTY;
+        size--;
+        // Shift the keys that follow back, so that every key can still be found from its home slot
+        int mask = keys.length - 1;
+        for (int slot = (hole + 1) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int home = (int) mix(keys[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                keys[hole] = keys[slot];
+                keys[slot] = EMPTY;
+                hole = slot;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the genotype was registered before.
+     *
+     * @param genotype The genotype to check.
+     * @return true if the genotype was registered before.
+     */
+    public synchronized boolean contains(int[] genotype) {
+        long key = getKey(genotype);
+        if (key == EMPTY) return containsEmptyKey;
+        return keys[findSlot(keys, key)] == key;
+    }
+
+    /**
+     * Getter for the amount of registered genotypes.
+     *
+     * @return the amount of registered genotypes.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Packs a genotype into a single key.
+     *
+     * @param genotype The genotype to pack.
+     * @return the key of the genotype.
+     */
+    long getKey(int[] genotype) {
+        long key = 0;
+        if (exact) {
+            for (int i = 0; i < genotype.length; i++) {
+                key = (key << bitsPerGene[i]) | genotype[i];
+            }
+            return key;
+        }
+        for (int gene : genotype) {
+            key = key * 0x9E3779B97F4A7C15L + gene + 1;
+        }
+        return mix(key);
+    }
+
+    /**
+     * Finalizes a hash so that every bit of the key depends on every bit of the input (splitmix64).
+     *
+     * @param key The key to mix.
+     * @return the mixed key.
+     */
+    private static long mix(long key) {
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return key ^ (key >>> 31);
+    }
+
+    /**
+     * Finds the slot that holds the key, or the empty slot where the key should be inserted.
+     *
+     * @param table The table to search in.
+     * @param key   The key to search for.
+     * @return the slot index.
+     */
+    private static int findSlot(long[] table, long key) {
+        int mask = table.length - 1;
+        int slot = (int) mix(key) & mask;
+        while (table[slot] != EMPTY && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the capacity of the table and reinserts the keys.
+     */
+    private void grow() {
+        long[] grown = new long[keys.length * 2];
+        Arrays.stream(keys).filter(key -> key != EMPTY).forEach(key -> grown[findSlot(grown, key)] = key);
+        keys = grown;
+    }
+}
@@ -6,9 +6,11 @@ package nl.bioinf.cawarmerdam.compound_evolver.model;
 
 import nl.bioinf.cawarmerdam.compound_evolver.model.pipeline.CallableValidationPipelineContainer;
 import nl.bioinf.cawarmerdam.compound_evolver.model.pipeline.PipelineStep;
+import nl.bioinf.cawarmerdam.compound_evolver.util.ExecutionService;
 import nl.bioinf.cawarmerdam.compound_evolver.util.MultiReceptorHelper;
 import nl.bioinf.cawarmerdam.compound_evolver.util.NumberCheckUtilities;
 import nl.bioinf.cawarmerdam.compound_evolver.util.SimilarityHelper;
+import nl.bioinf.cawarmerdam.compound_evolver.util.WeightedSampler;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.jetbrains.annotations.NotNull;
@@ -22,6 +24,7 @@ import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -43,6 +46,9 @@ public class Population implements Iterable<Candidate> {
     private List<List<Candidate>> candidateList;
     private double[][][] alleleSimilarities;
     private final Map<Integer, HashMap<Integer, List<Double>>> allelemap = new ConcurrentHashMap<>();
+    private final Map<Long, WeightedSampler> mutationSamplers = new ConcurrentHashMap<>();
+    private ReproductionMethod[] reproductionMethods;
+    private WeightedSampler reproductionMethodSampler;
     private double mutationRate;
     private double selectionFraction;
     private double crossoverRate;
@@ -50,7 +56,11 @@ public class Population implements Iterable<Candidate> {
     private double elitismRate;
     private int populationSize;
     private int generationNumber;
-    private final int tournamentSize;
+    private int tournamentSize;
+    private ReplacementPolicy replacementPolicy;
+    private int poolSize;
+    private EvolutionStatistics statistics;
+    private int steadyStateBreedingIndex;
     private Double maxHydrogenBondAcceptors = null;
     private Double maxHydrogenBondDonors = null;
     private Double maxMolecularMass = null;
@@ -70,6 +80,10 @@ public class Population implements Iterable<Candidate> {
     private boolean skipcheck;
     private boolean debugPrint;
     private final long baseSeed;
+    private final GenotypeRegistry genotypeRegistry;
+    private final ReactantLibrary reactantLibrary;
+    private final CompatibilityIndex compatibilityIndex;
+    private ProductLibrary productLibrary;
 
     /**
      * Constructor for population.
@@ -86,6 +100,38 @@ public class Population implements Iterable<Candidate> {
             SpeciesDeterminationMethod speciesDeterminationMethod,
             int initialGenerationSize, int receptorAmount, AtomicLong currentValue, long baseSeed,
             List<List<Integer>> reactantSelection) {
+        this(reactantLists, species, speciesDeterminationMethod, initialGenerationSize, receptorAmount, currentValue,
+                baseSeed, reactantSelection, new GenotypeRegistry(reactantLists), new ReactantLibrary(reactantLists), null,
+                true);
+    }
+
+    /**
+     * Constructor for population that shares the genotype registry and the reactant library with other
+     * populations in the same run.
+     *
+     * @param reactantLists              Lists of reactants in a list.
+     * @param species                    List of possible species.
+     * @param speciesDeterminationMethod The method that determines which species to use.
+     * @param initialGenerationSize      The generation or population size.
+     * @param receptorAmount             The amount of receptors, used for polypharmacology
+     * @param genotypeRegistry           The registry of genotypes that were encountered in this run.
+     * @param reactantLibrary            The library with the parsed reactants of the reactant lists.
+     * @param productLibrary             The library with the enumerated products of the reactant lists, or null if
+     *                                   products should be reacted on demand.
+     * @param initialize                 If the population should be filled with random candidates.
+     */
+    private Population(
+            List<List<String>> reactantLists,
+            List<Species> species,
+            SpeciesDeterminationMethod speciesDeterminationMethod,
+            int initialGenerationSize, int receptorAmount, AtomicLong currentValue, long baseSeed,
+            List<List<Integer>> reactantSelection, GenotypeRegistry genotypeRegistry, ReactantLibrary reactantLibrary,
+            ProductLibrary productLibrary, boolean initialize) {
+        this.genotypeRegistry = genotypeRegistry;
+        this.reactantLibrary = reactantLibrary;
+        // Match the reactants against the reactions once, so that incompatible alleles are never sampled
+        this.compatibilityIndex = reactantLibrary.getCompatibilityIndex(species);
+        this.productLibrary = productLibrary;
         this.receptorAmount = receptorAmount;
         this.reactantSelection = reactantSelection;
         this.random = new Random(currentValue.get() + baseSeed);
@@ -99,6 +145,7 @@ public class Population implements Iterable<Candidate> {
         this.elitismRate = 0.1;
         this.setRandomImmigrantRate(0.1);
         this.tournamentSize = 2;
+        this.replacementPolicy = ReplacementPolicy.WORST;
         this.speciesDeterminationMethod = speciesDeterminationMethod;
         this.interspeciesCrossoverMethod = InterspeciesCrossoverMethod.COMPLETE;
         this.selectionMethod = SelectionMethod.FITNESS_PROPORTIONATE_SELECTION;
@@ -107,7 +154,9 @@ public class Population implements Iterable<Candidate> {
         this.adaptive = true;
         this.selective = false;
         this.currentValue = currentValue;
-        initializePopulation();
+        if (initialize) {
+            initializePopulation();
+        }
     }
 
     /**
@@ -270,6 +319,33 @@ public class Population implements Iterable<Candidate> {
         return baseSeed;
     }
 
+    /**
+     * Getter for the library with the parsed reactants of the reactant lists.
+     *
+     * @return the reactant library.
+     */
+    public ReactantLibrary getReactantLibrary() {
+        return reactantLibrary;
+    }
+
+    /**
+     * Getter for the index of reactants that are compatible with the reactions of the species in this population.
+     *
+     * @return the compatibility index.
+     */
+    public CompatibilityIndex getCompatibilityIndex() {
+        return compatibilityIndex;
+    }
+
+    /**
+     * Getter for the registry of genotypes that were encountered in this run.
+     *
+     * @return the genotype registry.
+     */
+    public GenotypeRegistry getGenotypeRegistry() {
+        return genotypeRegistry;
+    }
+
     /**
      * Initializes a population from the reactant lists and the reactions.
      */
@@ -277,27 +353,27 @@ public class Population implements Iterable<Candidate> {
         int individualsPerSpecies = this.populationSize / this.species.size();
         this.candidateList = new ArrayList<>();
         List<Candidate> tempList = new ArrayList<>();
-        List<List<String>> filteredReactants = new ArrayList<>();
-        for (int i = 0; i < reactantLists.size(); i++) {
-            int finalI = i;
-            filteredReactants.add(
-                    this.reactantSelection.get(i).stream()
-                            .map(selection -> reactantLists.get(finalI).get(selection))
-                            .collect(Collectors.toList())
-            );
-        }
+        // The selected reactants share the parsed molecules of the library
+        ReactantLibrary filteredReactants = this.reactantLibrary.select(this.reactantSelection);
+        CompatibilityIndex filteredCompatibility = this.compatibilityIndex.select(this.reactantSelection);
         // initialize population according to the species determination method
         if (this.speciesDeterminationMethod == SpeciesDeterminationMethod.FIXED) {
             // Set
             for (Species species : this.species) {
                 // Create a fixed set of candidates per species.
                 tempList = new RandomCompoundReactor(individualsPerSpecies)
-                        .randReact(filteredReactants, Collections.singletonList(species), this.currentValue, this.baseSeed);
+                        .randReact(filteredReactants, filteredCompatibility, Collections.singletonList(species), this.currentValue, this.baseSeed, getRandomSamplingRegistry());
             }
         } else if (this.speciesDeterminationMethod == SpeciesDeterminationMethod.DYNAMIC) {
             // Create a set of candidates with the species that works best.
-            tempList = new RandomCompoundReactor(this.populationSize)
-                    .randReact(filteredReactants, this.species, this.currentValue, this.baseSeed);
+            if (this.productLibrary != null && isCompleteSelection()) {
+                // The enumerated products index the complete reactant lists
+                tempList = new RandomCompoundReactor(this.populationSize)
+                        .randReact(this.productLibrary, this.reactantLibrary, this.species, this.currentValue, this.baseSeed, getRandomSamplingRegistry());
+            } else {
+                tempList = new RandomCompoundReactor(this.populationSize)
+                        .randReact(filteredReactants, filteredCompatibility, this.species, this.currentValue, this.baseSeed, getRandomSamplingRegistry());
+            }
         } else {
             // Throw exception when another determination method is selected.
             throw new RuntimeException("Species determination method '" + speciesDeterminationMethod.toString() +
@@ -316,13 +392,52 @@ public class Population implements Iterable<Candidate> {
         fitnessCandidateList.addAll(tempList);
     }
 
+    /**
+     * Checks if the reactant selection of this population selects every reactant in its original position.
+     *
+     * @return true if the reactant selection selects every reactant, false if not.
+     */
+    private boolean isCompleteSelection() {
+        for (int i = 0; i < reactantLists.size(); i++) {
+            List<Integer> selection = reactantSelection.get(i);
+            if (selection.size() != reactantLists.get(i).size()) return false;
+            for (int j = 0; j < selection.size(); j++) {
+                if (selection.get(j) != j) return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Getter for the current generation.
      *
      * @return the current generation
      */
     public Generation getCurrentGeneration() {
-        return new Generation(fitnessCandidateList, generationNumber);
+        if (statistics != null && statistics.getGenerationCount() > 0) {
+            return new Generation(fitnessCandidateList, generationNumber, statistics.getLatestSummary(),
+                    reactantLibrary, species);
+        }
+        return new Generation(fitnessCandidateList, generationNumber, null, reactantLibrary, species);
+    }
+
+    /**
+     * Getter for the statistics of the scores of the run that this population is a part of.
+     *
+     * @return the statistics of the run, or null if they are not recorded.
+     */
+    public EvolutionStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Setter for the statistics of the scores of the run that this population is a part of.
+     * The latest summary of these statistics is used to describe the current generation.
+     *
+     * @param statistics The statistics of the run.
+     */
+    public void setStatistics(EvolutionStatistics statistics) {
+        this.statistics = statistics;
     }
 
     /**
@@ -353,8 +468,13 @@ public class Population implements Iterable<Candidate> {
      * @param randomImmigrantRate The weight of selecting a random immigrant as offspring.
      */
     public void setRandomImmigrantRate(double randomImmigrantRate) {
+        if (this.randomImmigrantRate == randomImmigrantRate &&
+                reproductionMethodWeighting.containsKey(ReproductionMethod.RANDOM_IMMIGRANT)) {
+            return;
+        }
         this.randomImmigrantRate = randomImmigrantRate;
         this.reproductionMethodWeighting.put(ReproductionMethod.RANDOM_IMMIGRANT, this.randomImmigrantRate);
+        this.reproductionMethodSampler = null;
     }
 
     /**
@@ -398,6 +518,66 @@ public class Population implements Iterable<Candidate> {
         this.selectionFraction = selectionFraction;
     }
 
+    /**
+     * Getter for the tournament size.
+     *
+     * @return the amount of candidates that compete in a single tournament.
+     */
+    public int getTournamentSize() {
+        return tournamentSize;
+    }
+
+    /**
+     * Setter for the tournament size. A larger tournament increases the selective pressure of tournament selection.
+     *
+     * @param tournamentSize The amount of candidates that compete in a single tournament.
+     */
+    public void setTournamentSize(int tournamentSize) {
+        if (tournamentSize < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "The tournament size should be at least 1, got %d", tournamentSize));
+        }
+        this.tournamentSize = tournamentSize;
+    }
+
+    /**
+     * Getter for the amount of offspring validations that run at the same time. When it is not set, the size of
+     * the shared CPU pool is used.
+     *
+     * @return the amount of threads that validate offspring.
+     */
+    public int getPoolSize() {
+        return poolSize > 0 ? poolSize : ExecutionService.getInstance().getPoolSize(ExecutionService.PoolType.CPU);
+    }
+
+    /**
+     * Setter for the amount of offspring validations that run at the same time.
+     *
+     * @param poolSize The amount of offspring validations that run at the same time, or 0 to use the size of the
+     *                 shared CPU pool.
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Getter for the replacement policy.
+     *
+     * @return the policy that determines which candidate is replaced in a steady state evolution.
+     */
+    public ReplacementPolicy getReplacementPolicy() {
+        return replacementPolicy;
+    }
+
+    /**
+     * Setter for the replacement policy.
+     *
+     * @param replacementPolicy The policy that determines which candidate is replaced in a steady state evolution.
+     */
+    public void setReplacementPolicy(ReplacementPolicy replacementPolicy) {
+        this.replacementPolicy = replacementPolicy;
+    }
+
     /**
      * Getter for the selection method.
      *
@@ -487,8 +667,14 @@ public class Population implements Iterable<Candidate> {
      * @param crossoverRate The probability that crossover will be performed
      */
     public void setCrossoverRate(double crossoverRate) {
+        // The sampler is only rebuilt when the rate changes
+        if (this.crossoverRate == crossoverRate &&
+                reproductionMethodWeighting.containsKey(ReproductionMethod.CROSSOVER)) {
+            return;
+        }
         this.crossoverRate = crossoverRate;
         this.reproductionMethodWeighting.put(ReproductionMethod.CROSSOVER, this.crossoverRate);
+        this.reproductionMethodSampler = null;
     }
 
     /**
@@ -524,10 +710,15 @@ public class Population implements Iterable<Candidate> {
         this.fitnessCandidateList = candidateList;
     }
 
+    /**
+     * Copies a candidate, including its product. The product is not reacted again, since the reaction might produce
+     * another product or species than the one that was validated.
+     *
+     * @param c The candidate to copy.
+     * @return the copy.
+     */
     private Candidate copyCandidate(Candidate c) {
-        Candidate out = new Candidate(c.getGenotype(), c.getSpecies(), c.getIdentifier(), this.baseSeed);
-        out.finish(this.reactantLists, this.species);
-        return out;
+        return c.copy();
     }
 
     /**
@@ -645,8 +836,9 @@ public class Population implements Iterable<Candidate> {
      * @param offspringSize the amount of candidates the offspring will consist off.
      */
     private void produceOffspring(int offspringSize) throws OffspringFailureOverflow, TooFewScoredCandidates, ForcedTerminationException {
-        int pool_size = getIntegerEnvironmentVariable("POOL_SIZE");
-        ExecutorService executor = Executors.newFixedThreadPool(pool_size);
+        ExecutorService executor = ExecutionService.getInstance().newTaskGroup(ExecutionService.PoolType.CPU);
+        // The mutation similarity threshold changes every generation, so the samplers are rebuilt
+        mutationSamplers.clear();
         // Create list of offspring
         List<Candidate> offspring = elitism();
 
@@ -655,6 +847,239 @@ public class Population implements Iterable<Candidate> {
         // Select parents
         selectParents();
 
+        breedOffspring(offspring, offspringSize, 0, executor);
+
+        // Every receptor gets its own copies, so that scoring a candidate for one receptor leaves the others intact
+        candidateList = new ArrayList<>();
+        candidateList.add(offspring);
+        for (int i = 1; i < this.receptorAmount; i++) {
+            List<Candidate> receptorCandidates = new ArrayList<>();
+            for (Candidate c : offspring) {
+                receptorCandidates.add(copyCandidate(c));
+            }
+            candidateList.add(receptorCandidates);
+        }
+        generationNumber++;
+        shutdownExecutor(executor);
+    }
+
+    /**
+     * Produces offspring for a steady state evolution. In contrast to generational offspring production, the
+     * current candidates of the population are not replaced. The offspring is returned so that it can be scored
+     * and inserted into the population one at a time.
+     *
+     * @param offspringSize The amount of candidates to produce.
+     * @return a list with, for every new candidate, the candidate for every receptor.
+     */
+    public List<List<Candidate>> produceSteadyStateOffspring(int offspringSize) throws OffspringFailureOverflow, TooFewScoredCandidates, ForcedTerminationException {
+        ExecutorService executor = ExecutionService.getInstance().newTaskGroup(ExecutionService.PoolType.CPU);
+        // Select parents from a copy, so that the candidates that survive in the population are left untouched
+        List<Candidate> survivors = MultiReceptorHelper.getCandidatesWithFitness(candidateList, this.selective);
+        fitnessCandidateList = new ArrayList<>(survivors);
+        Collections.shuffle(fitnessCandidateList, this.random);
+        List<Candidate> offspring = new ArrayList<>();
+        try {
+            selectParents();
+            steadyStateBreedingIndex = breedOffspring(offspring, offspringSize, steadyStateBreedingIndex, executor);
+        } finally {
+            fitnessCandidateList = survivors;
+            shutdownExecutor(executor);
+        }
+        List<List<Candidate>> matchingOffspring = new ArrayList<>();
+        for (Candidate candidate : offspring) {
+            // Every receptor gets its own copy, since the pipeline of every receptor sets its own files and scores
+            List<Candidate> receptorCandidates = new ArrayList<>();
+            receptorCandidates.add(candidate);
+            for (int i = 1; i < this.receptorAmount; i++) {
+                receptorCandidates.add(copyCandidate(candidate));
+            }
+            matchingOffspring.add(receptorCandidates);
+        }
+        return matchingOffspring;
+    }
+
+    /**
+     * Adds a scored candidate to the population in a steady state evolution.
+     * The population is not truncated, see {@link #replaceSurplusCandidates()}.
+     *
+     * @param candidates The candidate for every receptor.
+     * @return true if the candidate was scored for every receptor and was added, false if not.
+     */
+    public boolean addScoredCandidate(List<Candidate> candidates) {
+        if (!candidates.stream().allMatch(Population::hasScore)) {
+            return false;
+        }
+        for (int i = 0; i < this.receptorAmount; i++) {
+            candidateList.get(i).add(candidates.get(i));
+        }
+        return true;
+    }
+
+    /**
+     * Removes candidates according to the replacement policy until the population has the set population size.
+     * The normalized fitness of the candidates should be up to date before calling this method.
+     */
+    public void replaceSurplusCandidates() {
+        while (this.size() > this.populationSize) {
+            int index = selectReplacementIndex();
+            for (List<Candidate> candidates : candidateList) {
+                candidates.remove(index);
+            }
+        }
+        setFitnessCandidateList();
+    }
+
+    /**
+     * Selects the candidate that should be replaced according to the set replacement policy.
+     *
+     * @return the index of the candidate that should be removed.
+     */
+    private int selectReplacementIndex() {
+        List<Candidate> candidates = MultiReceptorHelper.getCandidatesWithFitness(candidateList, this.selective);
+        if (this.replacementPolicy == ReplacementPolicy.AGE) {
+            // Candidates are appended when they are inserted, the oldest candidate is the first
+            return 0;
+        }
+        if (this.replacementPolicy == ReplacementPolicy.INVERSE_TOURNAMENT) {
+            // Draw the contestants from the population and replace the worst candidate in the tournament
+            int worstIndex = this.random.nextInt(candidates.size());
+            for (int k = 1; k < this.tournamentSize; k++) {
+                int index = this.random.nextInt(candidates.size());
+                if (candidates.get(index).compareTo(candidates.get(worstIndex)) < 0) {
+                    worstIndex = index;
+                }
+            }
+            return worstIndex;
+        }
+        // Replace the worst candidate in the population
+        return getWorstCandidateIndex(candidates);
+    }
+
+    /**
+     * Gets the index of the candidate with the lowest normalized fitness.
+     *
+     * @param candidates The candidates to search in.
+     * @return the index of the worst candidate.
+     */
+    private static int getWorstCandidateIndex(List<Candidate> candidates) {
+        int worstIndex = 0;
+        for (int index = 1; index < candidates.size(); index++) {
+            if (candidates.get(index).compareTo(candidates.get(worstIndex)) < 0) {
+                worstIndex = index;
+            }
+        }
+        return worstIndex;
+    }
+
+    /**
+     * Divides the candidates of this population over a number of islands. This population becomes the first island,
+     * the other islands are new populations with the same parameters that share the genotype registry. The population
+     * size is divided over the islands as well.
+     *
+     * @param islandCount The amount of islands to divide the candidates over.
+     * @return the islands, of which the first is this population.
+     */
+    public List<Population> divideIntoIslands(int islandCount) {
+        List<Population> islands = new ArrayList<>();
+        islands.add(this);
+        for (int k = 1; k < islandCount; k++) {
+            Population island = this.newPopulation(this.reactantLists, this.reactantSelection, false);
+            // Every island should breed with a different sequence of random numbers
+            island.random.setSeed(this.currentValue.get() + this.baseSeed + k);
+            island.generationNumber = this.generationNumber;
+            // The statistics of the run describe all islands together
+            island.statistics = null;
+            islands.add(island);
+        }
+        // Deal the candidates out over the islands
+        List<List<List<Candidate>>> islandCandidates = new ArrayList<>();
+        for (Population island : islands) {
+            List<List<Candidate>> candidates = new ArrayList<>();
+            for (int r = 0; r < this.receptorAmount; r++) {
+                candidates.add(new ArrayList<>());
+            }
+            islandCandidates.add(candidates);
+        }
+        for (int i = 0; i < this.size(); i++) {
+            for (int r = 0; r < this.receptorAmount; r++) {
+                islandCandidates.get(i % islandCount).get(r).add(this.candidateList.get(r).get(i));
+            }
+        }
+        // The islands together breed as many candidates per generation as this population did
+        int populationSize = this.populationSize;
+        for (int k = 0; k < islandCount; k++) {
+            islands.get(k).populationSize = populationSize / islandCount + (k < populationSize % islandCount ? 1 : 0);
+            islands.get(k).candidateList = islandCandidates.get(k);
+            islands.get(k).setFitnessCandidateList();
+        }
+        return islands;
+    }
+
+    /**
+     * Gets copies of the fittest candidates in this population, which can migrate to another population.
+     *
+     * @param count The amount of candidates that should migrate.
+     * @return a list with, for every migrant, the candidate for every receptor.
+     */
+    public List<List<Candidate>> getEmigrants(int count) {
+        List<Candidate> candidates = MultiReceptorHelper.getCandidatesWithFitness(candidateList, this.selective);
+        List<Integer> indices = IntStream.range(0, candidates.size()).boxed()
+                .sorted((left, right) -> candidates.get(right).compareTo(candidates.get(left)))
+                .limit(count)
+                .collect(Collectors.toList());
+        List<List<Candidate>> emigrants = new ArrayList<>();
+        for (int index : indices) {
+            List<Candidate> emigrant = new ArrayList<>();
+            for (List<Candidate> receptorCandidates : candidateList) {
+                emigrant.add(receptorCandidates.get(index).copy());
+            }
+            emigrants.add(emigrant);
+        }
+        return emigrants;
+    }
+
+    /**
+     * Replaces the worst candidates in this population with candidates from another population. Immigrants with
+     * a genotype that is already present in this population are ignored. The normalized fitness of the candidates
+     * should be recalculated afterwards.
+     *
+     * @param immigrants A list with, for every immigrant, the candidate for every receptor.
+     */
+    public void receiveImmigrants(List<List<Candidate>> immigrants) {
+        for (List<Candidate> immigrant : immigrants) {
+            if (candidateList.get(0).contains(immigrant.get(0))) continue;
+            int worstIndex = getWorstCandidateIndex(
+                    MultiReceptorHelper.getCandidatesWithFitness(candidateList, this.selective));
+            for (int r = 0; r < this.receptorAmount; r++) {
+                candidateList.get(r).set(worstIndex, immigrant.get(r));
+            }
+        }
+        setFitnessCandidateList();
+    }
+
+    /**
+     * Marks that a steady state evolution has inserted as many candidates as the population size.
+     */
+    public void completeSteadyStateGeneration() {
+        generationNumber++;
+        mutationSamplers.clear();
+    }
+
+    /**
+     * Breeds offspring in batches and validates each batch concurrently, until the offspring list has
+     * the given size.
+     *
+     * @param offspring     The list to add the offspring to.
+     * @param offspringSize The size that the offspring list should have.
+     * @param i             The index of the first individual that is bred.
+     * @param executor      The executor to validate the offspring with.
+     * @return the index of the next individual that should be bred.
+     */
+    private int breedOffspring(List<Candidate> offspring, int offspringSize, int i, ExecutorService executor) throws OffspringFailureOverflow, ForcedTerminationException {
+        // The amount of candidates that are bred in a single round before they are validated concurrently
+        int batchSize = getPoolSize() * getIntegerEnvironmentVariable("OFFSPRING_BATCH_FACTOR", 1);
+        // Small steady state batches are allowed as many failures as a complete generation
+        int failureLimitSize = Math.max(offspringSize, this.populationSize);
         // Set the offspring choice to clear. For every new individual (offspring) to create a new offspring choice
         // is selected according to the set crossover, random immigrant, and elitist parameters.
         // (A random weighted choice is performed each time. )
@@ -662,123 +1087,128 @@ public class Population implements Iterable<Candidate> {
         // Count the number of times one offspring could not be created. (Reset when an offspring could be created)
         int failureCounter = 0;
         // Loop to fill offspring list to offspring size
-        int i = 0;
         double[] fitnesslist = fitnessCandidateList.stream().mapToDouble(Candidate::getNormFitness).toArray();
         while (offspring.size() < offspringSize) {
             System.out.println("Creating new candidates, current offspring size: " + offspring.size());
+            // Breed a batch of candidates, never more than the amount that is still missing from the offspring.
+            // Breeding happens sequentially so that the random number generator is consumed in a fixed order.
+            int currentBatchSize = Math.min(batchSize, offspringSize - offspring.size());
             List<Candidate> newOffspring = new ArrayList<>();
-            // Try to produce offspring
-            double mutation_similarity = 0;
-            // Get some genomes by crossing over according to crossover probability
-            if (this.adaptive) {
-                ImmutablePair<Candidate, Candidate> parents = getParents(i);
-
-                double f_high = Math.max(parents.left.getNormFitness(), parents.right.getNormFitness());
-                double f_avg = Arrays.stream(fitnesslist).sum() / fitnessCandidateList.size();
-                this.setCrossoverRate(Math.min((1 - f_high) / (1 - f_avg), 1));
-                double f = fitnesslist[i % fitnesslist.length];
-                this.setMutationRate(Math.min(0.5 * (1 - f) / (1 - f_avg), 0.5));
-            }
-            if (this.adaptiveMutation) {
-                mutation_similarity = 0.9f * (float) generationNumber / totalGenerations;
+            while (newOffspring.size() < currentBatchSize) {
+                // Try to produce offspring
+                double mutation_similarity = 0;
+                // Get some genomes by crossing over according to crossover probability
+                if (this.adaptive) {
+                    ImmutablePair<Candidate, Candidate> parents = getParents(i);
+
+                    double f_high = Math.max(parents.left.getNormFitness(), parents.right.getNormFitness());
+                    double f_avg = Arrays.stream(fitnesslist).sum() / fitnessCandidateList.size();
+                    this.setCrossoverRate(Math.min((1 - f_high) / (1 - f_avg), 1));
+                    double f = fitnesslist[i % fitnesslist.length];
+                    this.setMutationRate(Math.min(0.5 * (1 - f) / (1 - f_avg), 0.5));
+                }
+                if (this.adaptiveMutation) {
+                    mutation_similarity = 0.9f * (float) generationNumber / totalGenerations;
+                }
+                offspringChoice = makeWeightedReproductionChoice();
+                newOffspring.add(ProduceOffspringIndividual(offspringChoice, i, mutation_similarity));
+                i++;
             }
-            offspringChoice = makeWeightedReproductionChoice();
-            Candidate offspringIndividual = ProduceOffspringIndividual(offspringChoice, i, mutation_similarity);
-
-            i++;
             // Loop through futures to handle thrown exceptions
             if (this.outputLocation.resolve("terminate").toFile().exists())
                 throw new ForcedTerminationException("The program was terminated forcefully.");
-            newOffspring.add(offspringIndividual);
 
+            // These counters are reset for every batch, only the failure counter spans the whole offspring
             int invalidCounter = 0;
             int duplicatecounter = 0;
             int nullcounter = 0;
             boolean skipcheck = this.skipcheck;
 
             System.out.println("newOffspring = " + newOffspring);
-            // Iterate in blocks of pool_size, so we can do the processing with multiple threads
-            for (int j = 0; j < newOffspring.size(); j += pool_size) {
-                // If we are at the last part, only increment by the remainder
-                int increment = j + pool_size > newOffspring.size() ? newOffspring.size() - j : pool_size;
-                List<Future<List<Candidate>>> futures2 = new ArrayList<>();
-                for (int k = j; k < j + increment; k++) {
-                    Candidate c = newOffspring.get(k);
-                    if (offspring.size() < offspringSize) {
-                        if (c != null && (this.duplicatesAllowed || !offspring.contains(c))) {
-                            if (this.outputLocation.resolve("terminate").toFile().exists())
-                                throw new ForcedTerminationException("The program was terminated forcefully.");
-                            if (skipcheck) {
-                                offspring.add(c);
-                                failureCounter = 0;
-                                duplicatecounter = 0;
-                                nullcounter = 0;
-                            } else {
-                                List<Candidate> candidateAsList = new ArrayList<>();
-                                candidateAsList.add(c);
-                                Callable<List<Candidate>> PipelineContainer = new CallableValidationPipelineContainer(validatepipe, outputLocation, candidateAsList);
-                                // Add future, so we can check the candidate for validity before using it as offspring
-                                futures2.add(executor.submit(PipelineContainer));
-                            }
-                        } else {
-                            // Count this failure
-                            failureCounter++;
-                            if (c == null) {
-                                System.err.println("Candidate production failed because the candidate was null.");
-                                nullcounter++;
-                            } else if (offspring.contains(c)) {
-                                System.err.println("Candidate production failed because the candidate was a duplicate. Duplicate genotype: " + c.getGenotype());
-                                this.offspringRejectionMessages.add("Candidate production failed because the candidate was a duplicate. Duplicate genotype: " + c.getGenotype());
-                                try {
-                                    if (c.canBeDeleted()) {
-                                        FileUtils.deleteDirectory(Paths.get(outputLocation.toString(),
-                                                String.valueOf(c.getIdentifier())).toAbsolutePath().toFile());
-                                    }
-                                } catch (IOException exception) {
-                                    System.err.println(exception.getMessage());
-                                }
-                                duplicatecounter++;
-                            }
-                            if (failureCounter >= offspringSize * 24) {
-                                System.err.println("Offspring rejection messages: " + this.offspringRejectionMessages);
-                                throw new OffspringFailureOverflow(
-                                        String.format("Tried to create a new candidate %s times without a viable result, %s times of which were because of null candidates and %s times of which were due to duplicate candidates",
-                                                failureCounter, nullcounter, duplicatecounter),
-                                        this.offspringRejectionMessages);
-                            }
+            // Submit the validation of every candidate in this batch at once, so that the batch is validated
+            // with as many threads as there are in the pool.
+            // The futures are kept in the order of breeding, which makes the accepted offspring deterministic.
+            List<Future<List<Candidate>>> futures = new ArrayList<>();
+            for (Candidate c : newOffspring) {
+                boolean duplicate = false;
+                // Offspring from crossover or elitism has no phenotype yet. Its genotype is checked against every
+                // genotype that was encountered in this run before any work is spent on the reaction.
+                // Random immigrants are registered by the random compound reactor.
+                if (c != null && c.getPhenotype() == null) {
+                    if (!this.duplicatesAllowed && !this.genotypeRegistry.register(c.getGenome())) {
+                        duplicate = true;
+                    } else {
+                        int[] genome = c.getGenome();
+                        c = finishOffspring(c);
+                        // A candidate that could not be finished, for instance because its reaction timed out,
+                        // should not block its genotype for the rest of the run
+                        if (c == null && !this.duplicatesAllowed) {
+                            this.genotypeRegistry.unregister(genome);
                         }
                     }
                 }
-                if (!skipcheck) {
-                    for (Future<List<Candidate>> future : futures2) {
-                        try {
-                            Candidate c = future.get().get(0);
-                            if (c != null) {
-                                // Add this new offspring and reset accumulated messages, the failure counter and reproduction method.
-                                offspring.add(c);
-                                this.offspringRejectionMessages.clear();
-                                failureCounter = 0;
-                                duplicatecounter = 0;
-                                nullcounter = 0;
-                                invalidCounter = 0;
-                            }
-                        } catch (InterruptedException | ExecutionException e) {
-                            System.out.println("Error occured while trying to get offspring: " + e.getMessage());
-                            invalidCounter++;
-                            // Make sure we don't try to get candidates from this list forever. Shouldn't be called in most cases.
-                            if (invalidCounter > offspringSize * 4) {
-                                skipcheck = true;
-                            }
-                        }
+                if (c != null && !duplicate) {
+                    if (skipcheck) {
+                        futures.add(CompletableFuture.completedFuture(Collections.singletonList(c)));
+                    } else {
+                        List<Candidate> candidateAsList = new ArrayList<>();
+                        candidateAsList.add(c);
+                        Callable<List<Candidate>> PipelineContainer = new CallableValidationPipelineContainer(validatepipe, outputLocation, candidateAsList);
+                        // Add future, so we can check the candidate for validity before using it as offspring
+                        futures.add(executor.submit(PipelineContainer));
+                    }
+                } else {
+                    // Count this failure
+                    failureCounter++;
+                    if (c == null) {
+                        System.err.println("Candidate production failed because the candidate was null.");
+                        nullcounter++;
+                    } else {
+                        System.err.println("Candidate production failed because the candidate was a duplicate. Duplicate genotype: " + c.getGenotype());
+                        this.offspringRejectionMessages.add("Candidate production failed because the candidate was a duplicate. Duplicate genotype: " + c.getGenotype());
+                        duplicatecounter++;
+                    }
+                    if (failureCounter >= failureLimitSize * 24) {
+                        executor.shutdownNow();
+                        System.err.println("Offspring rejection messages: " + this.offspringRejectionMessages);
+                        throw new OffspringFailureOverflow(
+                                String.format("Tried to create a new candidate %s times without a viable result, %s times of which were because of null candidates and %s times of which were due to duplicate candidates",
+                                        failureCounter, nullcounter, duplicatecounter),
+                                this.offspringRejectionMessages);
+                    }
+                }
+            }
+            for (Future<List<Candidate>> future : futures) {
+                try {
+                    Candidate c = future.get().get(0);
+                    if (c != null) {
+                        // Add this new offspring and reset accumulated messages, the failure counter and reproduction method.
+                        offspring.add(c);
+                        this.offspringRejectionMessages.clear();
+                        failureCounter = 0;
+                        duplicatecounter = 0;
+                        nullcounter = 0;
+                        invalidCounter = 0;
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    System.out.println("Error occured while trying to get offspring: " + e.getMessage());
+                    invalidCounter++;
+                    // Make sure we don't try to get candidates from this list forever. Shouldn't be called in most cases.
+                    if (invalidCounter > failureLimitSize * 4) {
+                        skipcheck = true;
                     }
                 }
             }
         }
-        candidateList = new ArrayList<>();
-        for (i = 0; i < this.receptorAmount; i++) {
-            candidateList.add(offspring);
-        }
-        generationNumber++;
+        return i;
+    }
+
+    /**
+     * Shuts down the executor that validated offspring.
+     *
+     * @param executor The executor to shut down.
+     */
+    private void shutdownExecutor(ExecutorService executor) {
         executor.shutdown();
         try {
             if (!executor.awaitTermination(800, TimeUnit.MILLISECONDS)) {
@@ -804,6 +1234,20 @@ public class Population implements Iterable<Candidate> {
         throw new RuntimeException(String.format("Environment variable '%s' was not an integer value", variableName));
     }
 
+    /**
+     * Gets an optional environment variable as an integer.
+     *
+     * @param variableName the name of the environment variable that should be parsed to an integer.
+     * @param defaultValue the value to return when the environment variable is not set.
+     * @return An integer.
+     */
+    private int getIntegerEnvironmentVariable(String variableName, int defaultValue) {
+        if (System.getenv(variableName) == null) {
+            return defaultValue;
+        }
+        return getIntegerEnvironmentVariable(variableName);
+    }
+
     public void setMinQED(double minQED) {
         this.minQED = minQED;
     }
@@ -832,12 +1276,30 @@ public class Population implements Iterable<Candidate> {
      * @return a new population
      */
     public Population newPopulation(List<List<String>> reactantLists, List<List<Integer>> reactantSelection) {
+        return newPopulation(reactantLists, reactantSelection, true);
+    }
+
+    /**
+     * Creates a new population with the same parameters
+     *
+     * @param initialize If the new population should be filled with random candidates.
+     * @return a new population
+     */
+    private Population newPopulation(List<List<String>> reactantLists, List<List<Integer>> reactantSelection,
+                                     boolean initialize) {
         Population population;
         SelectionMethod method = this.getSelectionMethod();
         // Any new populations should be allowed to use all reactants
+        // Genotypes index the reactant lists, so the registry and library can only be shared when the reactant
+        // lists are the same
+        boolean sameReactants = reactantLists == this.reactantLists;
         population = new Population(reactantLists, this.species, this.getSpeciesDeterminationMethod(),
                 this.getPopulationSize(), this.getReceptorAmount(), this.currentValue, this.baseSeed,
-                reactantSelection);
+                reactantSelection,
+                sameReactants ? this.genotypeRegistry : new GenotypeRegistry(reactantLists),
+                sameReactants ? this.reactantLibrary : new ReactantLibrary(reactantLists),
+                sameReactants ? this.productLibrary : null,
+                initialize);
         population.setSelective(this.selective);
         population.setDebugPrint(debugPrint);
 
@@ -854,6 +1316,10 @@ public class Population implements Iterable<Candidate> {
         population.setElitismRate(this.elitismRate);
         population.setMutationRate(this.mutationRate);
         population.setSelectionFraction(this.selectionFraction);
+        population.setTournamentSize(this.tournamentSize);
+        population.setReplacementPolicy(this.replacementPolicy);
+        population.setPoolSize(this.poolSize);
+        population.setStatistics(this.statistics);
         population.setRandomImmigrantRate(this.randomImmigrantRate);
 
         population.setMaxHydrogenBondAcceptors(this.maxHydrogenBondAcceptors);
@@ -898,9 +1364,43 @@ public class Population implements Iterable<Candidate> {
      * @return A reproduction method.
      */
     private ReproductionMethod makeWeightedReproductionChoice() {
-        ArrayList<Map.Entry<ReproductionMethod, Double>> entries = new ArrayList<>(this.reproductionMethodWeighting.entrySet());
-        return entries.get(makeWeightedChoice(
-                entries.stream().map(Map.Entry::getValue).mapToDouble(Double::doubleValue).toArray())).getKey();
+        if (this.adaptive) {
+            // The adaptive crossover rate changes for every offspring, which would rebuild the sampler every draw
+            return drawReproductionMethod();
+        }
+        if (reproductionMethodSampler == null) {
+            // Build the sampler once, it only has to be rebuilt when one of the rates changes
+            ArrayList<Map.Entry<ReproductionMethod, Double>> entries = new ArrayList<>(this.reproductionMethodWeighting.entrySet());
+            reproductionMethods = entries.stream().map(Map.Entry::getKey).toArray(ReproductionMethod[]::new);
+            reproductionMethodSampler = new WeightedSampler(
+                    entries.stream().map(Map.Entry::getValue).mapToDouble(Double::doubleValue).toArray());
+        }
+        return reproductionMethods[reproductionMethodSampler.sample(this.random)];
+    }
+
+    /**
+     * Chooses between the reproduction methods by walking through their cumulative weights, without building a
+     * sampler. This takes linear time in the few reproduction methods.
+     *
+     * @return A reproduction method.
+     */
+    private ReproductionMethod drawReproductionMethod() {
+        double weightsSum = 0;
+        for (double weight : this.reproductionMethodWeighting.values()) {
+            weightsSum += weight;
+        }
+        ReproductionMethod last = null;
+        // Without a positive and finite sum of weights the last method is always chosen, like the sampler does
+        double remaining = weightsSum > 0 && !Double.isInfinite(weightsSum) ?
+                this.random.nextDouble() * weightsSum : Double.POSITIVE_INFINITY;
+        for (Map.Entry<ReproductionMethod, Double> entry : this.reproductionMethodWeighting.entrySet()) {
+            last = entry.getKey();
+            remaining -= entry.getValue();
+            if (remaining < 0) {
+                return last;
+            }
+        }
+        return last;
     }
 
     /**
@@ -920,29 +1420,31 @@ public class Population implements Iterable<Candidate> {
      *
      * @param offspringChoice, The choice of reproducing method; use crossover, elitism, or random immigrant.
      * @param i                an index of the current list of candidates at which to pick parents for new offspring.
-     * @return the produced candidate.
+     * @return the produced candidate. Candidates produced by crossover or elitism are not finished yet,
+     * so that their genotype can be checked before the reaction is performed.
      */
     private Candidate ProduceOffspringIndividual(ReproductionMethod offspringChoice, int i, double mutation_similarity) {
 //        System.out.println("offspringChoice = " + offspringChoice);
         if (offspringChoice == ReproductionMethod.CROSSOVER) {
             // Get the recombined genome by crossing over
-            ImmutablePair<Species, List<Integer>> newGenome = getRecombinedGenome(getParents(i));
+            ImmutablePair<Species, int[]> newGenome = getRecombinedGenome(getParents(i));
             if (newGenome == null) {
                 System.err.println("Crossover failed, returning null.");
                 System.err.println("Attempt made with parents: " + getParents(i));
                 return null;
             }
             // Mutate the recombined genome
-            List<Integer> reactantGenome = newGenome.right;
+            int[] reactantGenome = newGenome.right;
             mutate(reactantGenome, mutation_similarity, i);
-            return finalizeOffspring(reactantGenome, newGenome.left);
+            return createOffspring(reactantGenome, newGenome.left);
         } else if (offspringChoice == ReproductionMethod.ELITISM) {
             // Get the recombined genome by crossing over
             Candidate elitist = this.fitnessCandidateList.get(i % this.fitnessCandidateList.size());
-            List<Integer> newGenome = elitist.getGenotype();
+            // Copy the genome so that the elitist itself is not mutated
+            int[] newGenome = elitist.getGenome().clone();
             // Mutate the recombined genome
             mutate(newGenome, mutation_similarity, i);
-            return finalizeOffspring(newGenome, elitist.getSpecies());
+            return createOffspring(newGenome, elitist.getSpecies());
         } else if (offspringChoice == ReproductionMethod.RANDOM_IMMIGRANT) {
             // Introduce a random immigrant
             Candidate immigrant = introduceRandomImmigrant(i);
@@ -957,32 +1459,85 @@ public class Population implements Iterable<Candidate> {
     }
 
     /**
-     * Finalize a candidate by converting the given new genome, which is a list of indices representing reactants,
-     * to a full candidate with Chemaxon's Reactor API.
+     * Creates a candidate from the given new genome, which is a list of indices representing reactants.
+     * The candidate still has to be finished before it has a phenotype.
      *
      * @param newGenome, a list of indices representing reactants
      * @param species    The species that the new offspring should belong to
+     * @return the new candidate.
+     */
+    private Candidate createOffspring(int[] newGenome, Species species) {
+        Candidate newCandidate = new Candidate(newGenome, species, this.currentValue.incrementAndGet(), this.baseSeed);
+        applyFilters(newCandidate);
+        return newCandidate;
+    }
+
+    /**
+     * Sets the filters of this population on a candidate.
+     *
+     * @param candidate The candidate to set the filters on.
+     */
+    private void applyFilters(Candidate candidate) {
+        candidate.setMaxHydrogenBondAcceptors(this.maxHydrogenBondAcceptors);
+        candidate.setMaxHydrogenBondDonors(this.maxHydrogenBondDonors);
+        candidate.setMaxMolecularMass(this.maxMolecularMass);
+        candidate.setMaxPartitionCoefficient(this.maxPartitionCoefficient);
+        candidate.setMinQED(this.minQED);
+        candidate.setMinBBB(this.minBBB);
+    }
+
+    /**
+     * Opens the library with the enumerated products of the reactant lists, which enumerates the products when
+     * they were not enumerated before with the same reactants, reactions and filters. From then on offspring and
+     * random immigrants are looked up in the library instead of reacted. The library is only used with dynamic
+     * species determination, since the library holds a single species for every genotype.
+     *
+     * @param directory The directory that holds the product library files.
+     * @throws IOException if the product library could not be read or written.
+     */
+    public void openProductLibrary(Path directory) throws IOException {
+        if (this.speciesDeterminationMethod != SpeciesDeterminationMethod.DYNAMIC) {
+            System.out.println("The product library is only used with dynamic species determination");
+            return;
+        }
+        this.productLibrary = ProductLibrary.open(directory, this.reactantLibrary, this.species,
+                Arrays.asList(maxHydrogenBondDonors, maxHydrogenBondAcceptors,
+                        maxMolecularMass, maxPartitionCoefficient, minQED, minBBB),
+                this::applyFilters);
+    }
+
+    /**
+     * Getter for the library with the enumerated products of the reactant lists.
+     *
+     * @return the product library, or null if products are reacted on demand.
+     */
+    public ProductLibrary getProductLibrary() {
+        return productLibrary;
+    }
+
+    /**
+     * Finalize a candidate by converting its genome, which is a list of indices representing reactants,
+     * to a full candidate with Chemaxon's Reactor API.
+     *
+     * @param newCandidate The candidate to finish.
      * @return the new, finalized candidate when this was created successfully. If either Reactor did not produce a
      * product or if the produced candidate was not valid null is returned. Why the offspring was rejected is added
      * to the offSpringRejectionMessages field.
      */
-    private Candidate finalizeOffspring(List<Integer> newGenome, Species species) {
-        Candidate newCandidate = new Candidate(newGenome, species, this.currentValue.incrementAndGet(), this.baseSeed);
-        newCandidate.setMaxHydrogenBondAcceptors(this.maxHydrogenBondAcceptors);
-        newCandidate.setMaxHydrogenBondDonors(this.maxHydrogenBondDonors);
-        newCandidate.setMaxMolecularMass(this.maxMolecularMass);
-        newCandidate.setMaxPartitionCoefficient(this.maxPartitionCoefficient);
-        newCandidate.setMinQED(this.minQED);
-        newCandidate.setMinBBB(this.minBBB);
-
+    private Candidate finishOffspring(Candidate newCandidate) {
         if (speciesDeterminationMethod == SpeciesDeterminationMethod.FIXED &&
-                newCandidate.finish(this.reactantLists)) {
+                newCandidate.finish(this.reactantLibrary)) {
             return newCandidate;
+        } else if (speciesDeterminationMethod == SpeciesDeterminationMethod.DYNAMIC && this.productLibrary != null) {
+            if (newCandidate.finish(this.productLibrary, this.reactantLibrary, this.species)) {
+                return newCandidate;
+            }
         } else if (speciesDeterminationMethod == SpeciesDeterminationMethod.DYNAMIC &&
-                newCandidate.finish(this.reactantLists, this.species)) {
+                newCandidate.finish(this.reactantLibrary, this.species)) {
             return newCandidate;
         }
-        this.offspringRejectionMessages.add(newCandidate.getRejectionMessage().equals("") ? "Finalizing failed" : newCandidate.getRejectionMessage());
+        String rejectionMessage = newCandidate.getRejectionMessage();
+        this.offspringRejectionMessages.add(rejectionMessage == null || rejectionMessage.equals("") ? "Finalizing failed" : rejectionMessage);
         return null;
     }
 
@@ -992,21 +1547,36 @@ public class Population implements Iterable<Candidate> {
      * @return a new individual (random immigrant).
      */
     private Candidate introduceRandomImmigrant(int i) {
+        List<Candidate> immigrants;
         if (this.speciesDeterminationMethod == SpeciesDeterminationMethod.FIXED) {
             // Get one of the species to create an individual from
             Species randomSpecies = this.species.get(new Random(i + baseSeed).nextInt(this.species.size()));
 
             // Try to generate a new individual or candidate with these species
-            return new RandomCompoundReactor(1)
-                    .randReact(this.reactantLists, Collections.singletonList(randomSpecies), this.currentValue, this.baseSeed).get(0); // 1 new individual at index 0
+            immigrants = new RandomCompoundReactor(1)
+                    .randReact(this.reactantLibrary, this.compatibilityIndex, Collections.singletonList(randomSpecies), this.currentValue, this.baseSeed, getRandomSamplingRegistry());
+        } else if (this.speciesDeterminationMethod == SpeciesDeterminationMethod.DYNAMIC && this.productLibrary != null) {
+            immigrants = new RandomCompoundReactor(1)
+                    .randReact(this.productLibrary, this.reactantLibrary, this.species, this.currentValue, this.baseSeed, getRandomSamplingRegistry());
         } else if (this.speciesDeterminationMethod == SpeciesDeterminationMethod.DYNAMIC) {
-            return new RandomCompoundReactor(1)
-                    .randReact(this.reactantLists, this.species, this.currentValue, this.baseSeed).get(0);
+            immigrants = new RandomCompoundReactor(1)
+                    .randReact(this.reactantLibrary, this.compatibilityIndex, this.species, this.currentValue, this.baseSeed, getRandomSamplingRegistry());
         } else {
             // Throw exception when another determination method is selected.
             throw new RuntimeException("Species determination method '" + speciesDeterminationMethod.toString() +
                     "' is not yet implemented!");
         }
+        // Every genome was tried already, which is counted as a failed offspring
+        return immigrants.isEmpty() ? null : immigrants.get(0); // 1 new individual at index 0
+    }
+
+    /**
+     * Getter for the registry that random sampling skips encountered genotypes with.
+     *
+     * @return the genotype registry, or null if duplicates are allowed.
+     */
+    private GenotypeRegistry getRandomSamplingRegistry() {
+        return this.duplicatesAllowed ? null : this.genotypeRegistry;
     }
 
     /**
@@ -1057,7 +1627,7 @@ public class Population implements Iterable<Candidate> {
         // When the candidate is scored, keep it.
         for (List<Candidate> candidates : candidateList) {
             templist = candidates.stream()
-                    .map(c -> c.isScored() && c.getScoredConformersFile().toFile().exists())
+                    .map(Population::hasScore)
                     .collect(Collectors.toList());
             if (booleans.size() == 0) {
                 booleans = templist;
@@ -1072,6 +1642,16 @@ public class Population implements Iterable<Candidate> {
         }
     }
 
+    /**
+     * Checks if the candidate was scored and the scored conformers are still present.
+     *
+     * @param candidate The candidate to check.
+     * @return true if the candidate has a score.
+     */
+    private static boolean hasScore(Candidate candidate) {
+        return candidate.isScored() && candidate.getScoredConformersFile().toFile().exists();
+    }
+
     private List<Candidate> filterList(List<Candidate> list, List<Boolean> booleans) {
         List<Candidate> out = new ArrayList<>();
         for (int i = 0; i < list.size(); i++) {
@@ -1089,10 +1669,16 @@ public class Population implements Iterable<Candidate> {
      * @return the selected individuals
      */
     private List<Candidate> fitnessProportionateSelection(int selectionSize) {
-        List<Candidate> selectedParents = new ArrayList<>();
+        List<Candidate> selectedParents = new ArrayList<>(selectionSize);
+        // Build the sampler from the fitness scores once for the entire selection
+        double[] fitnessScores = new double[fitnessCandidateList.size()];
+        for (int i = 0; i < fitnessScores.length; i++) {
+            fitnessScores[i] = fitnessCandidateList.get(i).getNormFitness();
+        }
+        WeightedSampler sampler = new WeightedSampler(fitnessScores);
         // Select the amount of parents corresponding to the total parents multiplied by the selection rate
         while (selectedParents.size() < selectionSize) {
-            selectedParents.add(fitnessCandidateList.get(rouletteSelect()));
+            selectedParents.add(fitnessCandidateList.get(sampler.sample(this.random)));
         }
         return selectedParents;
     }
@@ -1116,81 +1702,31 @@ public class Population implements Iterable<Candidate> {
      * @return the selected individuals
      */
     private List<Candidate> tournamentSelection(int selectionSize) {
-        List<Candidate> selectedParents = new ArrayList<>();
-
-        // Check if the tournament size is less than the size of the candidate list
-        int localTournamentSize = Math.min(this.tournamentSize, fitnessCandidateList.size());
+        List<Candidate> selectedParents = new ArrayList<>(selectionSize);
+        int candidateCount = fitnessCandidateList.size();
 
         // Select the amount of parents corresponding to the total parents multiplied by the selection rate
         while (selectedParents.size() < selectionSize) {
-            // Get the best candidate in the tournament
-            selectedParents.add(Collections.max(fitnessCandidateList.subList(0, localTournamentSize)));
-            Collections.shuffle(fitnessCandidateList, new Random(this.baseSeed));
+            // Draw the contestants from the population and keep the best candidate in the tournament
+            Candidate winner = fitnessCandidateList.get(this.random.nextInt(candidateCount));
+            for (int k = 1; k < this.tournamentSize; k++) {
+                Candidate contestant = fitnessCandidateList.get(this.random.nextInt(candidateCount));
+                if (contestant.compareTo(winner) > 0) {
+                    winner = contestant;
+                }
+            }
+            selectedParents.add(winner);
         }
         return selectedParents;
     }
 
-    /**
-     * Method that selects an individual probabilistically based on the fitness score.
-     *
-     * @return the index of the individual selected.
-     */
-    private int rouletteSelect() {
-        // Create a stream to get the score of every candidate and convert this to a double
-        return makeWeightedChoice(fitnessCandidateList.stream()
-                .map(Candidate::getNormFitness)
-                .mapToDouble(v -> v)
-                .toArray());
-    }
-
-    /**
-     * Chooses an item in a array of weights.
-     *
-     * @param weights the weights to choose from.
-     * @return the index of the item in the array that was chosen.
-     */
-    private int makeWeightedChoice(double[] weights) {
-        // Get sum of fitness scores.
-        double weightsSum = DoubleStream.of(weights).sum();
-        // get a random value.
-        double value = this.random.nextDouble() * weightsSum;
-        // locate the random value based on the weights
-        for (int i = 0; i < weights.length; i++) {
-            value -= weights[i];
-            if (value < 0) return i;
-        }
-        // when rounding errors occur, we return the last item's index
-        return weights.length - 1;
-    }
-
-    /**
-     * Chooses an item in a array of weights.
-     *
-     * @param weights the weights to choose from.
-     * @param j       a mutation seed
-     * @return the index of the item in the array that was chosen.
-     */
-    private int makeWeightedChoice(double[] weights, int j) {
-        // Get sum of fitness scores.
-        double weightsSum = DoubleStream.of(weights).sum();
-        // get a random value.
-        double value = new Random(this.baseSeed + j).nextDouble() * weightsSum;
-        // locate the random value based on the weights
-        for (int i = 0; i < weights.length; i++) {
-            value -= weights[i];
-            if (value < 0) return i;
-        }
-        // when rounding errors occur, we return the last item's index
-        return weights.length - 1;
-    }
-
     /**
      * Recombines genomes of two individuals.
      *
      * @param parents the parents to recombine the genomes of
      * @return the recombined genome as a list
      */
-    private ImmutablePair<Species, List<Integer>> getRecombinedGenome(ImmutablePair<Candidate, Candidate> parents) {
+    private ImmutablePair<Species, int[]> getRecombinedGenome(ImmutablePair<Candidate, Candidate> parents) {
 
 //        System.out.printf("%s (%s) * %s (%s)%n",
 //                firstParent.getGenotype(), firstParent.getSpecies(),
@@ -1201,16 +1737,18 @@ public class Population implements Iterable<Candidate> {
 
     @Override
     public String toString() {
-        List<Double> scores = fitnessCandidateList.stream()
-                .map(Candidate::getNormFitness)
-                .collect(Collectors.toList());
-        OptionalDouble average = scores.stream().mapToDouble(v -> v).average();
+        if (statistics != null && statistics.getGenerationCount() > 0) {
+            return statistics.getLatestSummary().toString();
+        }
+        DoubleSummaryStatistics scores = fitnessCandidateList.stream()
+                .mapToDouble(Candidate::getNormFitness)
+                .summaryStatistics();
         return String.format(
                 "Generation %d, individual count = %d %n" +
                         " agv | min | max %n %3.2f | %3.2f | %3.2f ",
                 generationNumber, fitnessCandidateList.size(),
-                average.isPresent() ? average.getAsDouble() : Double.NaN,
-                Collections.min(scores), Collections.max(scores));
+                scores.getCount() > 0 ? scores.getAverage() : Double.NaN,
+                scores.getMin(), scores.getMax());
     }
 
     /**
@@ -1218,14 +1756,14 @@ public class Population implements Iterable<Candidate> {
      *
      * @param genome to introduce mutations in.
      */
-    private void mutate(List<Integer> genome, double mutation_similarity, int j) {
+    private void mutate(int[] genome, double mutation_similarity, int j) {
         // Loop through each gene and get a mutation substitute
         // This can be either the current one (i) or a new one
         // The change that i is chosen is equal to 1 - mutation rate
-        for (int i = 0; i < genome.size(); i++) {
-            int allele = genome.get(i);
+        for (int i = 0; i < genome.length; i++) {
+            int allele = genome[i];
             int reactantIndex = getMutationSubstitute(i, allele, mutation_similarity, j);
-            genome.set(i, reactantIndex);
+            genome[i] = reactantIndex;
         }
     }
 
@@ -1263,32 +1801,54 @@ public class Population implements Iterable<Candidate> {
 //            System.out.println("this.alleleSimilarities = " + Arrays.deepToString(this.alleleSimilarities));
 
             // If the similarities for this allele with other alleles has not yet been calculated, calculate these now
-            double[] weighted_list = computeSpecificAlleleSimilarities(reactantsListIndex, allele, mutation_similarity);
+            WeightedSampler sampler = mutationSamplers.computeIfAbsent(
+                    ((long) reactantsListIndex << 32) | allele,
+                    key -> new WeightedSampler(getCompatibleWeights(reactantsListIndex, allele,
+                            computeSpecificAlleleSimilarities(reactantsListIndex, allele, mutation_similarity))));
             // Return allele substitute index
-            return makeWeightedChoice(weighted_list, j);
+            return sampler.sample(new Random(this.baseSeed + j));
         } else if (this.mutationMethod == MutationMethod.DISTANCE_INDEPENDENT) {
-            return makeChoice(reactantLists.get(reactantsListIndex).size(), allele);
+            return makeChoice(compatibilityIndex.getCompatibleReactants(this.species, reactantsListIndex), allele);
         } else {
             throw new RuntimeException("Mutation method not set!");
         }
     }
 
+    /**
+     * Sets the weights of alleles that are not compatible with the reactions of the species to zero.
+     * The weight of the current allele is kept, so that it can still be chosen.
+     *
+     * @param reactantsListIndex the index of the reactants list.
+     * @param allele             the current allele index.
+     * @param weights            the weights of the alleles in the reactants list.
+     * @return the weights of the alleles.
+     */
+    private double[] getCompatibleWeights(int reactantsListIndex, int allele, double[] weights) {
+        int[] compatible = compatibilityIndex.getCompatibleReactants(this.species, reactantsListIndex);
+        if (compatible.length == weights.length) return weights;
+        double[] compatibleWeights = new double[weights.length];
+        for (int index : compatible) {
+            compatibleWeights[index] = weights[index];
+        }
+        compatibleWeights[allele] = weights[allele];
+        return compatibleWeights;
+    }
+
     /**
      * Method that chooses either the allele index that is given
-     * or another index that can range from 0 to size - 1, excluding the given allele index.
+     * or another index out of the compatible allele indices.
      *
-     * @param size,  the size of the array or list to choose from.
-     * @param allele the current allele index.
+     * @param compatible the ascending indices of the compatible alleles to choose from.
+     * @param allele     the current allele index.
      * @return the index of choice.
      */
-    private int makeChoice(int size, int allele) {
+    private int makeChoice(int[] compatible, int allele) {
         // Only choose for mutation when the random double is below the mutation rate so when the mutation rate
         // is 0 the condition is always true and when the mutation rate is 1 the condition is always false.
         if (this.random.nextDouble() < this.mutationRate) {
 
-            int index = this.random.nextInt(size + 1);
-            if (index == size) index = allele;
-            return index;
+            int index = this.random.nextInt(compatible.length + 1);
+            return index == compatible.length ? allele : compatible[index];
         } else
             return allele;
     }
@@ -1381,6 +1941,30 @@ public class Population implements Iterable<Candidate> {
         }
     }
 
+    /**
+     * Replacement policies that can be chosen for a steady state evolution.
+     */
+    public enum ReplacementPolicy {
+        WORST("Worst"),
+        INVERSE_TOURNAMENT("Inverse tournament"),
+        AGE("Age");
+
+        private final String text;
+
+        ReplacementPolicy(String text) {
+            this.text = text;
+        }
+
+        public static ReplacementPolicy fromString(String text) {
+            for (ReplacementPolicy policy : ReplacementPolicy.values()) {
+                if (policy.text.equalsIgnoreCase(text)) {
+                    return policy;
+                }
+            }
+            throw new IllegalArgumentException("No constant with text " + text + " found");
+        }
+    }
+
     /**
      * Mutation methods that can be chosen.
      */
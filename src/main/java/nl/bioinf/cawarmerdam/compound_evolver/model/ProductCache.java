@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model;
+
+import chemaxon.reaction.AtomIdentifier;
+import chemaxon.struc.MolAtom;
+import chemaxon.struc.Molecule;
+import nl.bioinf.cawarmerdam.compound_evolver.util.DescriptorBundle;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Least recently used cache of reaction outcomes, keyed by genotype and species. The outcome of a reaction is
+ * either the reason that it failed, or the amount of products with, for every product that was chosen, the product,
+ * the map from its atoms to the reactant atoms and whether it passed the candidate filters, with the reason if it
+ * did not.
+ * <p>
+ * Only the chosen products are stored. A candidate that chooses a product that was not chosen before still has to
+ * react, so the products that are chosen with the seeded random number generator of a candidate are the same as
+ * without the cache. Stored products are cloned when they are used.
+ * <p>
+ * Every stored product holds molecule graphs, so the cache is bounded by an estimate of its memory besides the
+ * amount of outcomes. The least recently used outcomes are evicted when either bound is exceeded.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class ProductCache {
+    private final int capacity;
+    private final long maxBytes;
+    private final Map<Key, Outcome> outcomes;
+    private long estimatedBytes;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructor for a product cache.
+     *
+     * @param capacity The maximum amount of genotype and species combinations to keep outcomes for.
+     * @param maxBytes The maximum estimated amount of memory of the stored outcomes in bytes.
+     */
+    public ProductCache(int capacity, long maxBytes) {
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.outcomes = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets the outcome of a reaction.
+     *
+     * @param genotype The genotype of the candidate.
+     * @param species  The species that the candidate was reacted with.
+     * @return the outcome of the reaction, or null if it is not in the cache.
+     */
+    synchronized Outcome get(int[] genotype, Species species) {
+        return outcomes.get(new Key(genotype, species));
+    }
+
+    /**
+     * Stores the outcome of a reaction.
+     *
+     * @param genotype The genotype of the candidate.
+     * @param species  The species that the candidate was reacted with.
+     * @param outcome  The outcome of the reaction.
+     */
+    synchronized void put(int[] genotype, Species species, Outcome outcome) {
+        Outcome previous = outcomes.put(new Key(genotype, species), outcome);
+        if (previous != null) {
+            previous.cached = false;
+            estimatedBytes -= previous.estimatedBytes;
+        }
+        outcome.cached = true;
+        estimatedBytes += outcome.estimatedBytes;
+        evict();
+    }
+
+    /**
+     * Stores a chosen product in the outcome of a reaction, and counts its memory if the outcome is cached.
+     *
+     * @param outcome The outcome of the reaction that produced the product.
+     * @param index   The index of the product.
+     * @param product The product.
+     */
+    synchronized void putProduct(Outcome outcome, int index, Product product) {
+        long before = outcome.estimatedBytes;
+        outcome.putProduct(index, product);
+        if (outcome.cached) {
+            estimatedBytes += outcome.estimatedBytes - before;
+            evict();
+        }
+    }
+
+    /**
+     * Evicts the least recently used outcomes until the cache is within its bounds. The most recently used
+     * outcome is kept, even when it exceeds the memory bound on its own.
+     */
+    private void evict() {
+        Iterator<Outcome> iterator = outcomes.values().iterator();
+        while (outcomes.size() > 1 && (outcomes.size() > capacity || estimatedBytes > maxBytes)) {
+            Outcome eldest = iterator.next();
+            iterator.remove();
+            eldest.cached = false;
+            estimatedBytes -= eldest.estimatedBytes;
+        }
+    }
+
+    /**
+     * Registers that a finished candidate could be completed from the cache.
+     */
+    void recordHit() {
+        hitCount.incrementAndGet();
+    }
+
+    /**
+     * Registers that a finished candidate had to be reacted.
+     */
+    void recordMiss() {
+        missCount.incrementAndGet();
+    }
+
+    /**
+     * Getter for the amount of candidates that were completed from the cache.
+     *
+     * @return the amount of hits.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Getter for the amount of candidates that had to be reacted.
+     *
+     * @return the amount of misses.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Getter for the amount of genotype and species combinations with a stored outcome.
+     *
+     * @return the size of the cache.
+     */
+    public synchronized int size() {
+        return outcomes.size();
+    }
+
+    /**
+     * Getter for the estimated amount of memory of the stored outcomes.
+     *
+     * @return the estimated memory in bytes.
+     */
+    public synchronized long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("hits = %d, misses = %d, size = %d, estimated memory = %d kB",
+                getHitCount(), getMissCount(), size(), getEstimatedBytes() / 1024);
+    }
+
+    /**
+     * The outcome of reacting a genotype with a species.
+     */
+    static class Outcome {
+        private static final int OUTCOME_BYTES = 64;
+        private final String rejectionMessage;
+        private final Product[] products;
+        // Both are guarded by the lock of the cache
+        private long estimatedBytes;
+        private boolean cached;
+
+        /**
+         * Constructor for the outcome of a reaction that did not produce any products.
+         *
+         * @param rejectionMessage The reason that the reaction did not produce any products.
+         */
+        Outcome(String rejectionMessage) {
+            this.rejectionMessage = rejectionMessage;
+            this.products = new Product[0];
+            this.estimatedBytes = OUTCOME_BYTES + 2L * rejectionMessage.length();
+        }
+
+        /**
+         * Constructor for the outcome of a reaction that produced products.
+         *
+         * @param productCount The amount of products that the reaction produced.
+         */
+        Outcome(int productCount) {
+            this.rejectionMessage = null;
+            this.products = new Product[productCount];
+            this.estimatedBytes = OUTCOME_BYTES + 8L * productCount;
+        }
+
+        /**
+         * Getter for the reason that the reaction did not produce any products.
+         *
+         * @return the rejection message, or null if the reaction produced products.
+         */
+        String getRejectionMessage() {
+            return rejectionMessage;
+        }
+
+        /**
+         * Getter for the amount of products that the reaction produced.
+         *
+         * @return the amount of products.
+         */
+        int getProductCount() {
+            return products.length;
+        }
+
+        /**
+         * Getter for a product that was chosen before.
+         *
+         * @param index The index of the product.
+         * @return the product, or null if the product was not chosen before.
+         */
+        synchronized Product getProduct(int index) {
+            return products[index];
+        }
+
+        /**
+         * Stores a chosen product. Products are stored through the cache, which keeps track of their memory.
+         *
+         * @param index   The index of the product.
+         * @param product The product.
+         */
+        private synchronized void putProduct(int index, Product product) {
+            if (products[index] != null) {
+                estimatedBytes -= products[index].getEstimatedBytes();
+            }
+            products[index] = product;
+            estimatedBytes += product.getEstimatedBytes();
+        }
+
+        /**
+         * Getter for the estimated amount of memory of this outcome and its products.
+         *
+         * @return the estimated memory in bytes.
+         */
+        long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+    }
+
+    /**
+     * A product that was chosen for a candidate, with the map from its atoms to the reactant atoms,
+     * the descriptors of the product and the verdict of the candidate filters.
+     */
+    static class Product {
+        // Rough sizes of the objects of a molecule graph
+        private static final int MOLECULE_BYTES = 1024;
+        private static final int ATOM_BYTES = 256;
+        private static final int BOND_BYTES = 96;
+        private static final int ATOM_IDENTIFIER_BYTES = 40;
+        private final Molecule template;
+        private final AtomIdentifier[] atomIdentifiers;
+        private final DescriptorBundle descriptors;
+        private Verdict verdict;
+
+        /**
+         * Constructor for a chosen product.
+         *
+         * @param product The product molecule, which should not be modified afterwards.
+         * @param atommap The map from atoms of the reaction products to the reactant atoms.
+         */
+        Product(Molecule product, Map<MolAtom, AtomIdentifier> atommap) {
+            this.template = product.cloneMolecule();
+            // The descriptors are calculated on a copy of their own, so that plugins never touch the template
+            this.descriptors = new DescriptorBundle(product.cloneMolecule());
+            // The map is stored by atom index, so that it can be applied to clones of the product
+            this.atomIdentifiers = new AtomIdentifier[product.getAtomCount()];
+            if (atommap != null) {
+                for (int i = 0; i < atomIdentifiers.length; i++) {
+                    atomIdentifiers[i] = atommap.get(product.getAtom(i));
+                }
+            }
+        }
+
+        /**
+         * Estimates the memory of this product, which holds the template and the molecule of the descriptors.
+         *
+         * @return the estimated memory in bytes.
+         */
+        long getEstimatedBytes() {
+            long moleculeBytes = MOLECULE_BYTES + (long) ATOM_BYTES * template.getAtomCount() +
+                    (long) BOND_BYTES * template.getBondCount();
+            return 2 * moleculeBytes + (long) ATOM_IDENTIFIER_BYTES * atomIdentifiers.length;
+        }
+
+        /**
+         * Creates a clone of the product.
+         *
+         * @return a clone of the product.
+         */
+        Molecule cloneProduct() {
+            return template.cloneMolecule();
+        }
+
+        /**
+         * Getter for the descriptors of the product, which are shared by every candidate with this product.
+         *
+         * @return the descriptor bundle of the product.
+         */
+        DescriptorBundle getDescriptors() {
+            return descriptors;
+        }
+
+        /**
+         * Creates a map from the atoms of a clone of the product to the reactant atoms.
+         *
+         * @param clone A clone of the product.
+         * @return the map from the atoms of the clone to the reactant atoms.
+         */
+        Map<MolAtom, AtomIdentifier> getAtommap(Molecule clone) {
+            Map<MolAtom, AtomIdentifier> atommap = new HashMap<>();
+            for (int i = 0; i < atomIdentifiers.length; i++) {
+                if (atomIdentifiers[i] != null) {
+                    atommap.put(clone.getAtom(i), atomIdentifiers[i]);
+                }
+            }
+            return atommap;
+        }
+
+        /**
+         * Gets the verdict of the candidate filters.
+         *
+         * @param filterSignature The signature of the filters that the verdict should apply to.
+         * @return the verdict, or null if the product was not filtered with these filters.
+         */
+        synchronized Verdict getVerdict(Object filterSignature) {
+            return verdict != null && Objects.equals(verdict.filterSignature, filterSignature) ? verdict : null;
+        }
+
+        /**
+         * Stores the verdict of the candidate filters.
+         *
+         * @param verdict The verdict.
+         */
+        synchronized void setVerdict(Verdict verdict) {
+            this.verdict = verdict;
+        }
+    }
+
+    /**
+     * The verdict of the candidate filters for a product, with the reason that the product did not pass them.
+     */
+    static class Verdict {
+        private final Object filterSignature;
+        private final boolean valid;
+        private final String rejectionMessage;
+
+        /**
+         * Constructor for a verdict.
+         *
+         * @param filterSignature  The signature of the filters.
+         * @param valid            If the product passed the filters.
+         * @param rejectionMessage The reason that the product did not pass the filters, or null if it did.
+         */
+        Verdict(Object filterSignature, boolean valid, String rejectionMessage) {
+            this.filterSignature = filterSignature;
+            this.valid = valid;
+            this.rejectionMessage = rejectionMessage;
+        }
+
+        /**
+         * Getter for if the product passed the filters.
+         *
+         * @return true if the product passed the filters, false if not.
+         */
+        boolean isValid() {
+            return valid;
+        }
+
+        /**
+         * Getter for the reason that the product did not pass the filters.
+         *
+         * @return the rejection message, or null if the product passed the filters.
+         */
+        String getRejectionMessage() {
+            return rejectionMessage;
+        }
+    }
+
+    /**
+     * Key of a genotype and species combination.
+     */
+    private static class Key {
+        private final int[] genotype;
+        private final Species species;
+        private final int hash;
+
+        Key(int[] genotype, Species species) {
+            this.genotype = genotype;
+            this.species = species;
+            this.hash = 31 * Arrays.hashCode(genotype) + System.identityHashCode(species);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return species == key.species && Arrays.equals(genotype, key.genotype);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
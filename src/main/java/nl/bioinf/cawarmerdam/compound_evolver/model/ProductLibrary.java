@@ -0,0 +1,534 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model;
+
+import chemaxon.formats.MolExporter;
+import chemaxon.marvin.plugin.PluginException;
+import chemaxon.struc.Molecule;
+import nl.bioinf.cawarmerdam.compound_evolver.util.DescriptorBundle;
+import nl.bioinf.cawarmerdam.compound_evolver.util.ExecutionService;
+import nl.bioinf.cawarmerdam.compound_evolver.util.NumberCheckUtilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Library of the products of every genotype in a small combinatorial space, which is enumerated once and stored in
+ * a file that is shared by every run with the same reactants, reactions and candidate filters.
+ * <p>
+ * Every genotype is finished like a candidate with dynamic species, so the entry of a genotype holds the species
+ * of the first reaction that produced a valid product. A valid entry also holds the unique smiles of the product and
+ * the descriptors that the filters use. A genotype whose reactions yield more than one product is not stored with
+ * a product, because the product is chosen with the seed of a candidate. Such a genotype is reacted by every
+ * candidate itself, so that a run chooses the same products with or without the library. The entries are stored in a table of fixed size records, indexed by the
+ * genotype, followed by the smiles of the products. The file is memory-mapped, so looking up a genotype does not
+ * react anything.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class ProductLibrary {
+    private static final Map<Path, ProductLibrary> openLibraries = new HashMap<>();
+    private static final int MAGIC = 0x50524f44;
+    private static final int VERSION = 2;
+    private static final byte SEED_DEPENDENT = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 40;
+    private static final int ENUMERATION_CHUNK_SIZE = 256;
+    private static final int DEFAULT_MAX_SIZE = 5000000;
+    private final int[] reactantCounts;
+    private final int entryCount;
+    private final MappedByteBuffer records;
+    private final MappedByteBuffer smiles;
+    private final int[] validIndices;
+
+    /**
+     * Constructor of a product library.
+     *
+     * @param file           The file that holds the enumerated products.
+     * @param reactantCounts The amount of reactants in every list of reactants.
+     * @throws IOException if the file could not be read or was not valid.
+     */
+    private ProductLibrary(Path file, int[] reactantCounts) throws IOException {
+        this.reactantCounts = reactantCounts;
+        this.entryCount = (int) getSpaceSize(reactantCounts);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new EOFException(String.format("'%s' ended unexpectedly", file));
+                }
+            }
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != entryCount) {
+                throw new IOException(String.format("'%s' is not a valid product library", file));
+            }
+            long smilesSize = header.getLong(16);
+            if (smilesSize > Integer.MAX_VALUE) {
+                throw new IOException(String.format("The smiles in '%s' do not fit in a single mapping", file));
+            }
+            // The mappings stay valid after the channel is closed
+            records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) entryCount * RECORD_SIZE);
+            smiles = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + (long) entryCount * RECORD_SIZE, smilesSize);
+            validIndices = new int[header.getInt(12)];
+        }
+        int validCount = 0;
+        for (int i = 0; i < entryCount; i++) {
+            if (records.get(i * RECORD_SIZE + 1) != 0) {
+                validIndices[validCount++] = i;
+            }
+        }
+    }
+
+    /**
+     * Opens the product library of the given reactants, reactions and filters, or returns the library if it was
+     * opened before. The products are enumerated in parallel on the shared CPU pool when the library file does not
+     * exist yet.
+     *
+     * @param directory       The directory that holds the product library files.
+     * @param library         The library with the reactants to enumerate.
+     * @param species         The species to react the reactants with, in the order that they are tried.
+     * @param filterSignature The settings of the filters that the candidates are validated with.
+     * @param filters         The function that applies the filters to a candidate.
+     * @return the product library, or null if the combinatorial space is larger than the maximum size.
+     * @throws IOException if the library file could not be read or written.
+     */
+    public static synchronized ProductLibrary open(Path directory, ReactantLibrary library, List<Species> species,
+                                                   List<Object> filterSignature, Consumer<Candidate> filters)
+            throws IOException {
+        int[] reactantCounts = new int[library.size()];
+        for (int i = 0; i < reactantCounts.length; i++) {
+            reactantCounts[i] = library.getReactantCount(i);
+        }
+        long spaceSize = getSpaceSize(reactantCounts);
+        int maxSize = getMaxSize();
+        if (spaceSize > maxSize) {
+            System.out.printf("The space of %d genotypes is too large to enumerate (maximum is %d)%n",
+                    spaceSize, maxSize);
+            return null;
+        }
+        Files.createDirectories(directory);
+        Path file = directory.resolve(String.format("products-%s.bin",
+                createSignature(library, species, filterSignature))).toAbsolutePath().normalize();
+        ProductLibrary productLibrary = openLibraries.get(file);
+        if (productLibrary == null) {
+            if (!Files.exists(file)) {
+                enumerate(file, library, species, filters, (int) spaceSize);
+            }
+            productLibrary = new ProductLibrary(file, reactantCounts);
+            openLibraries.put(file, productLibrary);
+        }
+        return productLibrary;
+    }
+
+    /**
+     * Getter for the amount of genotypes in the library.
+     *
+     * @return the amount of genotypes.
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Getter for the amount of genotypes in the library with a valid product, or with a product that depends on
+     * the seed of the candidate.
+     *
+     * @return the amount of valid genotypes.
+     */
+    public int getValidCount() {
+        return validIndices.length;
+    }
+
+    /**
+     * Getter for the genotype of a valid entry.
+     *
+     * @param validIndex The index of the entry among the valid entries.
+     * @return the genotype of the entry.
+     */
+    public int[] getValidGenome(int validIndex) {
+        return getGenome(validIndices[validIndex]);
+    }
+
+    /**
+     * Checks if the product of a genotype depends on the seed of the candidate, because its reactions yield
+     * more than one product. Such a genotype does not have an entry, and should be reacted instead.
+     *
+     * @param genome The genotype to check.
+     * @return true if the product depends on the seed of the candidate, false if not.
+     */
+    boolean isSeedDependent(int[] genome) {
+        return records.get(getIndex(genome) * RECORD_SIZE + 1) == SEED_DEPENDENT;
+    }
+
+    /**
+     * Gets the entry of a genotype.
+     *
+     * @param genome The genotype to get the entry for.
+     * @return the entry, or null if the genotype does not have a valid product or if its product depends on the
+     * seed of the candidate.
+     */
+    Entry get(int[] genome) {
+        int position = getIndex(genome) * RECORD_SIZE;
+        if (records.get(position + 1) != 1) {
+            return null;
+        }
+        byte[] bytes = new byte[records.getInt(position + 32)];
+        // The mapping is shared between threads, so the position of a duplicate is moved instead
+        ByteBuffer buffer = smiles.duplicate();
+        buffer.position((int) records.getLong(position + 24));
+        buffer.get(bytes);
+        return new Entry(records.get(position), records.getShort(position + 2), records.getShort(position + 4),
+                records.getShort(position + 6), records.getDouble(position + 8), records.getDouble(position + 16),
+                new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("genotypes = %d, valid = %d", getEntryCount(), getValidCount());
+    }
+
+    /**
+     * Gets the index of a genotype in the table of records.
+     *
+     * @param genome The genotype.
+     * @return the index of the genotype.
+     */
+    private int getIndex(int[] genome) {
+        int index = 0;
+        for (int i = 0; i < genome.length; i++) {
+            index = index * reactantCounts[i] + genome[i];
+        }
+        return index;
+    }
+
+    /**
+     * Gets the genotype at an index in the table of records.
+     *
+     * @param index The index of the genotype.
+     * @return the genotype.
+     */
+    private int[] getGenome(int index) {
+        return getGenome(index, reactantCounts);
+    }
+
+    /**
+     * Gets the genotype at an index in the combinatorial space of the given lists of reactants.
+     *
+     * @param index          The index of the genotype.
+     * @param reactantCounts The amount of reactants in every list of reactants.
+     * @return the genotype.
+     */
+    private static int[] getGenome(int index, int[] reactantCounts) {
+        int[] genome = new int[reactantCounts.length];
+        for (int i = genome.length - 1; i >= 0; i--) {
+            genome[i] = index % reactantCounts[i];
+            index /= reactantCounts[i];
+        }
+        return genome;
+    }
+
+    /**
+     * Enumerates the products of every genotype into a library file. The file is written under a temporary name
+     * and moved in place when it is complete, so that other runs never open an incomplete file.
+     *
+     * @param file       The library file to write.
+     * @param library    The library with the reactants to enumerate.
+     * @param species    The species to react the reactants with.
+     * @param filters    The function that applies the filters to a candidate.
+     * @param entryCount The amount of genotypes to enumerate.
+     * @throws IOException if the library file could not be written.
+     */
+    private static void enumerate(Path file, ReactantLibrary library, List<Species> species,
+                                  Consumer<Candidate> filters, int entryCount) throws IOException {
+        System.out.printf("Enumerating the products of %d genotypes into '%s'%n", entryCount, file);
+        int[] reactantCounts = new int[library.size()];
+        for (int i = 0; i < reactantCounts.length; i++) {
+            reactantCounts[i] = library.getReactantCount(i);
+        }
+        Path temporaryFile = Files.createTempFile(file.getParent(), "products-", ".tmp");
+        ExecutorService executor = ExecutionService.getInstance().newTaskGroup(ExecutionService.PoolType.CPU);
+        // Only a few chunks per thread are enumerated at the same time, so that the results stay small
+        int window = ExecutionService.getInstance().getPoolSize(ExecutionService.PoolType.CPU) * 4;
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+            long smilesPosition = HEADER_SIZE + (long) entryCount * RECORD_SIZE;
+            long smilesSize = 0;
+            int validCount = 0;
+            for (int windowStart = 0; windowStart < entryCount; windowStart += window * ENUMERATION_CHUNK_SIZE) {
+                List<Future<Chunk>> futures = new ArrayList<>();
+                for (int i = 0; i < window; i++) {
+                    int from = windowStart + i * ENUMERATION_CHUNK_SIZE;
+                    if (from >= entryCount) break;
+                    int to = Math.min(from + ENUMERATION_CHUNK_SIZE, entryCount);
+                    futures.add(executor.submit(() -> enumerateChunk(library, species, filters, reactantCounts, from, to)));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    Chunk chunk = futures.get(i).get();
+                    // The offsets of the smiles are relative to the chunk until the chunk is written
+                    for (int position = 0; position < chunk.records.limit(); position += RECORD_SIZE) {
+                        chunk.records.putLong(position + 24, chunk.records.getLong(position + 24) + smilesSize);
+                    }
+                    int from = windowStart + i * ENUMERATION_CHUNK_SIZE;
+                    writeFully(channel, chunk.records, HEADER_SIZE + (long) from * RECORD_SIZE);
+                    writeFully(channel, ByteBuffer.wrap(chunk.smiles), smilesPosition + smilesSize);
+                    smilesSize += chunk.smiles.length;
+                    validCount += chunk.validCount;
+                }
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, entryCount).putInt(12, validCount)
+                    .putLong(16, smilesSize);
+            writeFully(channel, header, 0);
+            channel.force(true);
+            System.out.printf("Enumerated %d valid products%n", validCount);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while enumerating the products", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not enumerate the products", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        try {
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryFile);
+            // Another run might have enumerated the same library in the meantime
+            if (!Files.exists(file)) throw e;
+        }
+    }
+
+    /**
+     * Enumerates the products of a range of genotypes.
+     *
+     * @param library        The library with the reactants to enumerate.
+     * @param species        The species to react the reactants with.
+     * @param filters        The function that applies the filters to a candidate.
+     * @param reactantCounts The amount of reactants in every list of reactants.
+     * @param from           The index of the first genotype to enumerate, inclusive.
+     * @param to             The index of the last genotype to enumerate, exclusive.
+     * @return the records and smiles of the genotypes.
+     * @throws IOException if a product could not be exported.
+     */
+    private static Chunk enumerateChunk(ReactantLibrary library, List<Species> species, Consumer<Candidate> filters,
+                                        int[] reactantCounts, int from, int to) throws IOException {
+        ByteBuffer records = ByteBuffer.allocate((to - from) * RECORD_SIZE);
+        ByteArrayOutputStream smiles = new ByteArrayOutputStream();
+        int validCount = 0;
+        for (int index = from; index < to; index++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IOException("Enumeration was cancelled");
+            }
+            int position = (index - from) * RECORD_SIZE;
+            Candidate candidate = new Candidate(getGenome(index, reactantCounts), index, 0);
+            filters.accept(candidate);
+            boolean valid = candidate.finish(library, species);
+            // The product of a candidate with another seed might differ, so the genotype is not stored with a product
+            if (candidate.isProductChosenBySeed()) {
+                records.put(position + 1, SEED_DEPENDENT);
+                validCount++;
+                continue;
+            }
+            if (!valid) {
+                continue;
+            }
+            byte[] productSmiles = MolExporter.exportToFormat(candidate.getPhenotype(), "smiles:u")
+                    .getBytes(StandardCharsets.UTF_8);
+            DescriptorBundle descriptors = candidate.getDescriptors();
+            records.put(position, (byte) species.indexOf(candidate.getSpecies()));
+            records.put(position + 1, (byte) 1);
+            records.putShort(position + 6, (short) candidate.getProductDrawCount());
+            records.putDouble(position + 8, descriptors.getExactMass());
+            try {
+                records.putShort(position + 2, (short) descriptors.getHydrogenBondDonorCount());
+                records.putShort(position + 4, (short) descriptors.getHydrogenBondAcceptorCount());
+                records.putDouble(position + 16, descriptors.getLogP());
+            } catch (PluginException e) {
+                // Descriptors that could not be calculated are calculated again when they are needed
+                records.putShort(position + 2, (short) -1);
+                records.putShort(position + 4, (short) -1);
+                records.putDouble(position + 16, Double.NaN);
+            }
+            records.putLong(position + 24, smiles.size());
+            records.putInt(position + 32, productSmiles.length);
+            smiles.write(productSmiles);
+            validCount++;
+        }
+        return new Chunk(records, smiles.toByteArray(), validCount);
+    }
+
+    /**
+     * Writes a buffer to a channel at the given position.
+     *
+     * @param channel  The channel to write to.
+     * @param buffer   The buffer to write.
+     * @param position The position in the channel to write at.
+     * @throws IOException if the channel could not be written.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.rewind();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Creates a signature for the reactants, reactions and filters of a library.
+     *
+     * @param library         The library with the reactants.
+     * @param species         The species with the reactions.
+     * @param filterSignature The settings of the filters.
+     * @return the signature as a hexadecimal string.
+     */
+    private static String createSignature(ReactantLibrary library, List<Species> species, List<Object> filterSignature) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new RuntimeException(e);
+        }
+        // Libraries of an older format are enumerated again
+        digest.update(ByteBuffer.allocate(4).putInt(VERSION).array());
+        digest.update(library.getReactantLists().toString().getBytes(StandardCharsets.UTF_8));
+        for (Species aSpecies : species) {
+            Molecule reaction = aSpecies.getReaction().getReaction();
+            digest.update(aSpecies.getReactantIndices().toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(String.valueOf(reaction != null ? reaction.toFormat("smarts") : null)
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update(filterSignature.toString().getBytes(StandardCharsets.UTF_8));
+        StringBuilder signature = new StringBuilder();
+        for (byte b : digest.digest()) {
+            signature.append(String.format("%02x", b));
+        }
+        return signature.toString();
+    }
+
+    /**
+     * Gets the amount of genotypes in the combinatorial space of the given lists of reactants.
+     *
+     * @param reactantCounts The amount of reactants in every list of reactants.
+     * @return the amount of genotypes, or Long.MAX_VALUE if it does not fit in a long.
+     */
+    private static long getSpaceSize(int[] reactantCounts) {
+        long size = 1;
+        for (int reactantCount : reactantCounts) {
+            if (reactantCount != 0 && size > Long.MAX_VALUE / reactantCount) return Long.MAX_VALUE;
+            size *= reactantCount;
+        }
+        return size;
+    }
+
+    /**
+     * Reads the maximum amount of genotypes to enumerate from the PRODUCT_LIBRARY_MAX_SIZE environment variable.
+     *
+     * @return the maximum amount of genotypes.
+     */
+    private static int getMaxSize() {
+        String value = System.getenv("PRODUCT_LIBRARY_MAX_SIZE");
+        if (value == null) {
+            return DEFAULT_MAX_SIZE;
+        }
+        if (NumberCheckUtilities.isInteger(value, 10)) {
+            return Integer.parseInt(value);
+        }
+        throw new RuntimeException("Environment variable 'PRODUCT_LIBRARY_MAX_SIZE' was not an integer value");
+    }
+
+    /**
+     * The enumerated records and smiles of a range of genotypes.
+     */
+    private static class Chunk {
+        private final ByteBuffer records;
+        private final byte[] smiles;
+        private final int validCount;
+
+        Chunk(ByteBuffer records, byte[] smiles, int validCount) {
+            this.records = records;
+            this.smiles = smiles;
+            this.validCount = validCount;
+        }
+    }
+
+    /**
+     * The valid product of a genotype.
+     */
+    static class Entry {
+        private final int speciesIndex;
+        private final int hydrogenBondDonorCount;
+        private final int hydrogenBondAcceptorCount;
+        private final int productDrawCount;
+        private final double exactMass;
+        private final double logP;
+        private final String smiles;
+
+        Entry(int speciesIndex, int hydrogenBondDonorCount, int hydrogenBondAcceptorCount, int productDrawCount,
+              double exactMass, double logP, String smiles) {
+            this.speciesIndex = speciesIndex;
+            this.hydrogenBondDonorCount = hydrogenBondDonorCount;
+            this.hydrogenBondAcceptorCount = hydrogenBondAcceptorCount;
+            this.productDrawCount = productDrawCount;
+            this.exactMass = exactMass;
+            this.logP = logP;
+            this.smiles = smiles;
+        }
+
+        /**
+         * Getter for the index of the species that produced the product.
+         *
+         * @return the index of the species.
+         */
+        int getSpeciesIndex() {
+            return speciesIndex;
+        }
+
+        /**
+         * Getter for the amount of numbers that a candidate draws to choose the products of the species that are
+         * tried when the genotype is reacted.
+         *
+         * @return the amount of drawn numbers.
+         */
+        int getProductDrawCount() {
+            return productDrawCount;
+        }
+
+        /**
+         * Getter for the unique smiles of the product.
+         *
+         * @return the smiles of the product.
+         */
+        String getSmiles() {
+            return smiles;
+        }
+
+        /**
+         * Creates a descriptor bundle for the product that holds the stored descriptors.
+         *
+         * @param product The product molecule that was imported from the smiles.
+         * @return the descriptor bundle of the product.
+         */
+        DescriptorBundle createDescriptors(Molecule product) {
+            return new DescriptorBundle(product, exactMass, logP, hydrogenBondDonorCount, hydrogenBondAcceptorCount);
+        }
+    }
+}
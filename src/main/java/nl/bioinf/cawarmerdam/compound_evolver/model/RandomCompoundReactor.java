@@ -4,21 +4,38 @@
  */
 package nl.bioinf.cawarmerdam.compound_evolver.model;
 
+import nl.bioinf.cawarmerdam.compound_evolver.util.ExecutionService;
+
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
- * Class that creates a random set of candidates from the given reactions and reactants
+ * Class that creates a random set of candidates from the given reactions and reactants.
+ * Random genomes are reacted concurrently in batches. The genomes are drawn in order from a seeded random number
+ * generator, and every candidate chooses its product with a seed that is derived from its identifier and the
+ * base seed. Successful candidates are collected in the order that their genomes were drawn, which makes
+ * the sampled candidates independent of the order in which the reactions finish. Genomes are only drawn from
+ * reactants that are compatible with the reactions of the species. When duplicates are not allowed, genomes that
+ * were encountered before in the run are skipped, and fewer candidates are sampled if no untried genome is left.
  *
  * @author C.A. (Robert) Warmerdam
  * @author c.a.warmerdam@st.hanze.nl
  * @version 0.0.1
  */
 class RandomCompoundReactor {
+    private static final int SAMPLING_BATCH_FACTOR = 4;
+    // The amount of consecutive drawn genomes that were all tried before, after which no untried genome is assumed
+    private static final int EXHAUSTION_DRAW_COUNT = 10000;
     private final int maxSamples;
+    private int attemptCount;
+    private int successCount;
 
     /**
      * Constructor of the random compound reactor.
@@ -32,66 +49,185 @@ class RandomCompoundReactor {
     /**
      * Method that generates random candidates.
      *
-     * @param reactantLists a list of lists of reactants.
+     * @param library       the library with the lists of reactants.
+     * @param compatibility the index of the reactants in the library that are compatible with the species.
      * @param species       a list with species that contain reactions and how reactants map to the reaction.
-     * @return the list of generated candidates.
+     * @param registry      the registry of genotypes that were encountered in this run. Genotypes that are
+     *                      registered already are skipped before they are reacted. Null if duplicates are allowed.
+     * @return the list of generated candidates, which is shorter than requested if no untried genome is left.
      */
-    List<Candidate> randReact(List<List<String>> reactantLists, List<Species> species, AtomicLong currentValue, long baseSeed) {
+    List<Candidate> randReact(ReactantLibrary library, CompatibilityIndex compatibility, List<Species> species,
+                              AtomicLong currentValue, long baseSeed, GenotypeRegistry registry) {
+        // Reactants without a functional group that matches the reactions are never drawn
+        int[][] compatibleReactants = new int[library.size()][];
+        for (int i = 0; i < compatibleReactants.length; i++) {
+            compatibleReactants[i] = compatibility.getCompatibleReactants(species, i);
+        }
+        return sample(random -> selectRandomIndexGenome(random, compatibleReactants),
+                candidate -> candidate.finish(library, species), currentValue, baseSeed, registry);
+    }
+
+    /**
+     * Method that generates random candidates from the valid products in an enumerated product library.
+     *
+     * @param products     the library with the enumerated products of every genotype.
+     * @param library      the library with the lists of reactants.
+     * @param species      the list of species that the products were enumerated with.
+     * @param registry     the registry of genotypes that were encountered in this run. Genotypes that are
+     *                     registered already are skipped. Null if duplicates are allowed.
+     * @return the list of generated candidates, which is shorter than requested if no untried genome is left.
+     */
+    List<Candidate> randReact(ProductLibrary products, ReactantLibrary library, List<Species> species,
+                              AtomicLong currentValue, long baseSeed, GenotypeRegistry registry) {
+        if (products.getValidCount() == 0) {
+            throw new RuntimeException("The product library does not contain any valid products");
+        }
+        return sample(random -> products.getValidGenome(random.nextInt(products.getValidCount())),
+                candidate -> candidate.finish(products, library, species), currentValue, baseSeed, registry);
+    }
+
+    /**
+     * Method that samples random genomes and finishes them concurrently until enough candidates are generated.
+     *
+     * @param genomeSampler the function that draws a random genome.
+     * @param finisher      the function that finishes a candidate, which returns if the candidate is viable and valid.
+     * @param registry      the registry of genotypes that were encountered in this run, or null if duplicates
+     *                      are allowed.
+     * @return the list of generated candidates, which is shorter than requested if no untried genome is left.
+     */
+    List<Candidate> sample(Function<Random, int[]> genomeSampler, Predicate<Candidate> finisher,
+                           AtomicLong currentValue, long baseSeed, GenotypeRegistry registry) {
 
-        // Amount of products generated
-        int nSampled = 0;
         Random random = new Random();
         random.setSeed(currentValue.get() + baseSeed);
         List<Candidate> candidates = new ArrayList<>();
+        int poolSize = ExecutionService.getInstance().getPoolSize(ExecutionService.PoolType.CPU);
+        ExecutorService executor = ExecutionService.getInstance().newTaskGroup(ExecutionService.PoolType.CPU);
 
         // Set startTime
         long startTime = System.currentTimeMillis();
+        // Count the genomes in a row that were tried before
+        int triedDrawCount = 0;
 
-        // Try to generate products while the number of products generated is
-        // lower than the maximum number of products wanted
-        while (nSampled < maxSamples) {
-            // Get a list of randomly selected reactants that can be a genome
-            List<Integer> indexGenome = selectRandomIndexGenome(random, reactantLists);
-
-            // Set the reactants
-            Candidate candidate = new Candidate(indexGenome, currentValue.incrementAndGet(), baseSeed);
-            // Add the product and count the product if it can be made
-            boolean finish = candidate.finish(reactantLists, species);
-            if (finish) {
-                candidates.add(candidate);
-                nSampled++;
-            }
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
-            // Throw an exception if there still is nothing sampled after 10000 milliseconds.
-            if (duration > 10000 && nSampled <= 0) {
-                throw new RuntimeException(String.format("Reactants did not react in %d ms. Are they in order?", duration));
+        try {
+            // Try to generate products while the number of products generated is
+            // lower than the maximum number of products wanted
+            while (candidates.size() < maxSamples && triedDrawCount < EXHAUSTION_DRAW_COUNT) {
+                int batchSize = getBatchSize(maxSamples - candidates.size(), poolSize);
+                List<Future<Candidate>> futures = new ArrayList<>();
+                List<int[]> genomes = new ArrayList<>();
+                while (futures.size() < batchSize && triedDrawCount < EXHAUSTION_DRAW_COUNT) {
+                    // Get a list of randomly selected reactants that can be a genome
+                    int[] indexGenome = genomeSampler.apply(random);
+
+                    // Only react genomes that were not encountered before, unless duplicates are allowed
+                    if (registry == null || registry.register(indexGenome)) {
+                        triedDrawCount = 0;
+                        // Set the reactants
+                        Candidate candidate = new Candidate(indexGenome, currentValue.incrementAndGet(), baseSeed);
+                        // Add the product if it can be made
+                        futures.add(executor.submit(() -> finisher.test(candidate) ? candidate : null));
+                        genomes.add(indexGenome);
+                    } else {
+                        triedDrawCount++;
+                    }
+                }
+                collectCandidates(futures, genomes, candidates, registry);
+                long duration = System.currentTimeMillis() - startTime;
+                // Throw an exception if there still is nothing sampled after 10000 milliseconds,
+                // unless every genome was tried already.
+                if (duration > 10000 && candidates.size() <= 0 && triedDrawCount < EXHAUSTION_DRAW_COUNT) {
+                    throw new RuntimeException(String.format("Reactants did not react in %d ms. Are they in order?", duration));
+                }
             }
+        } finally {
+            // Reactions of genomes that are not needed anymore are cancelled
+            executor.shutdownNow();
         }
+        if (candidates.size() < maxSamples) {
+            System.err.printf("Sampled %d of %d random candidates, no untried combination of reactants was found in %d draws%n",
+                    candidates.size(), maxSamples, EXHAUSTION_DRAW_COUNT);
+        }
+        System.out.printf("Reacted %d of %d sampled genomes successfully (%.1f%%)%n",
+                successCount, attemptCount, getSuccessRate() * 100);
         return candidates;
 
     }
 
     /**
-     * Method that randomly picks a reactant from every list of reactants.
+     * Collects the successful candidates of a batch in the order that they were submitted, until enough
+     * candidates are sampled. The remaining reactions are cancelled, and their genomes are removed from the
+     * registry, so that they can still be drawn later in the run.
+     *
+     * @param futures    The future candidates of a batch, which are null if they could not be made.
+     * @param genomes    The genomes of the future candidates, in the same order.
+     * @param candidates The list of candidates to add the successful candidates to.
+     * @param registry   The registry of genotypes that were encountered in this run, or null if duplicates are
+     *                   allowed.
+     */
+    private void collectCandidates(List<Future<Candidate>> futures, List<int[]> genomes, List<Candidate> candidates,
+                                   GenotypeRegistry registry) {
+        for (int i = 0; i < futures.size(); i++) {
+            Future<Candidate> future = futures.get(i);
+            if (candidates.size() >= maxSamples) {
+                future.cancel(true);
+                if (registry != null) {
+                    registry.unregister(genomes.get(i));
+                }
+                continue;
+            }
+            try {
+                Candidate candidate = future.get();
+                attemptCount++;
+                if (candidate != null) {
+                    candidates.add(candidate);
+                    successCount++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while reacting random candidates", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Could not react random candidate: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Determines how many genomes to react concurrently. Based on the success rate so far, enough genomes are
+     * reacted to complete the sample, but at least one for every thread and at most a few for every thread.
+     *
+     * @param remaining The amount of candidates that still have to be sampled.
+     * @param poolSize  The amount of threads that react genomes.
+     * @return the amount of genomes to react in the next batch.
+     */
+    private int getBatchSize(int remaining, int poolSize) {
+        double successRate = successCount > 0 ? getSuccessRate() : 1.0 / SAMPLING_BATCH_FACTOR;
+        int expected = (int) Math.ceil(remaining / successRate);
+        return Math.max(Math.min(expected, poolSize * SAMPLING_BATCH_FACTOR), Math.min(poolSize, expected));
+    }
+
+    /**
+     * Getter for the fraction of reacted genomes that produced a valid candidate.
+     *
+     * @return the reactivity success rate, or 0 if nothing was reacted.
+     */
+    double getSuccessRate() {
+        return attemptCount > 0 ? (double) successCount / attemptCount : 0;
+    }
+
+    /**
+     * Method that randomly picks a compatible reactant from every list of reactants.
      *
-     * @param random        An instance of the random class.
-     * @param reactantLists The list of lists of reactants.
+     * @param random              An instance of the random class.
+     * @param compatibleReactants For every list of reactants, the indices of the compatible reactants.
      * @return a randomly combined genome.
      */
-    private List<Integer> selectRandomIndexGenome(Random random, List<List<String>> reactantLists) {
-        // Get iterator from reactant lists
-        Iterator<List<String>> iterator = reactantLists.iterator();
-        // Define a list of indices corresponding to the reactants in the genome
-        List<Integer> indexGenome = new ArrayList<>();
-
-        while (iterator.hasNext()) {
-            // Get random reactants for a single reaction
-            List<String> map = iterator.next();
-            // Get a random int within range 0 (inclusive) - n-reactants (exclusive)
-            int index = random.nextInt(map.size());
-            // Add the new reactant in both representations to the list
-            indexGenome.add(index);
+    private int[] selectRandomIndexGenome(Random random, int[][] compatibleReactants) {
+        // Define an array of indices corresponding to the reactants in the genome
+        int[] indexGenome = new int[compatibleReactants.length];
+        for (int i = 0; i < indexGenome.length; i++) {
+            // Get a random compatible reactant within range 0 (inclusive) - n-compatible reactants (exclusive)
+            indexGenome[i] = compatibleReactants[i][random.nextInt(compatibleReactants[i].length)];
         }
         return indexGenome;
     }
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model;
+
+import chemaxon.formats.MolFormatException;
+import chemaxon.formats.MolImporter;
+import chemaxon.struc.Molecule;
+import nl.bioinf.cawarmerdam.compound_evolver.util.ExecutionService;
+import nl.bioinf.cawarmerdam.compound_evolver.util.NumberCheckUtilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Library of reactant molecules that are parsed once, when the library is constructed. For every list of
+ * reactants the library holds an indexed array of parsed template molecules. The templates are never handed out
+ * themselves: every reactant that is requested is a clone of its template, so that reactions can modify it freely.
+ * <p>
+ * Since genotypes index the reactants of a library, the library also holds the cache of reaction products and
+ * the indices of reactants that are compatible with the reactions, which are shared by every population that uses
+ * the library.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class ReactantLibrary {
+    private static final int PARSING_CHUNK_SIZE = 256;
+    private static final int DEFAULT_PRODUCT_CACHE_SIZE = 10000;
+    // The default share of the maximum heap that the product cache can take up
+    private static final int DEFAULT_PRODUCT_CACHE_HEAP_DIVISOR = 8;
+    private final List<List<String>> reactantLists;
+    private final Molecule[][] templates;
+    private final ProductCache productCache = new ProductCache(getProductCacheSize(), getProductCacheMemory());
+    private final Map<List<Species>, CompatibilityIndex> compatibilityIndices = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for a reactant library. The reactants are parsed in parallel on the shared CPU pool.
+     *
+     * @param reactantLists The lists of reactants as smiles.
+     */
+    public ReactantLibrary(List<List<String>> reactantLists) {
+        this.reactantLists = reactantLists;
+        this.templates = new Molecule[reactantLists.size()][];
+        ExecutorService executor = ExecutionService.getInstance().newTaskGroup(ExecutionService.PoolType.CPU);
+        try {
+            // Every list is parsed in chunks, so that a few long lists are still parsed in parallel
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < reactantLists.size(); i++) {
+                List<String> reactants = reactantLists.get(i);
+                templates[i] = new Molecule[reactants.size()];
+                for (int from = 0; from < reactants.size(); from += PARSING_CHUNK_SIZE) {
+                    int to = Math.min(from + PARSING_CHUNK_SIZE, reactants.size());
+                    futures.add(executor.submit(getParsingTask(reactants, templates[i], from, to)));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while parsing the reactants", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Could not parse the reactants", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Constructor for a reactant library that holds a selection of the templates of another library.
+     *
+     * @param reactantLists The lists of reactants in the selection.
+     * @param templates     The templates of the reactants in the selection.
+     */
+    private ReactantLibrary(List<List<String>> reactantLists, Molecule[][] templates) {
+        this.reactantLists = reactantLists;
+        this.templates = templates;
+    }
+
+    /**
+     * Creates a library of a selection of the reactants in this library, without parsing the reactants again.
+     *
+     * @param reactantSelection For every list of reactants, the indices of the reactants to select.
+     * @return a library with the selected reactants.
+     */
+    public ReactantLibrary select(List<List<Integer>> reactantSelection) {
+        List<List<String>> selectedLists = new ArrayList<>();
+        Molecule[][] selectedTemplates = new Molecule[templates.length][];
+        for (int i = 0; i < templates.length; i++) {
+            List<Integer> selection = reactantSelection.get(i);
+            List<String> selectedReactants = new ArrayList<>();
+            selectedTemplates[i] = new Molecule[selection.size()];
+            for (int j = 0; j < selection.size(); j++) {
+                selectedReactants.add(reactantLists.get(i).get(selection.get(j)));
+                selectedTemplates[i][j] = templates[i][selection.get(j)];
+            }
+            selectedLists.add(selectedReactants);
+        }
+        return new ReactantLibrary(selectedLists, selectedTemplates);
+    }
+
+    /**
+     * Getter for a reactant.
+     *
+     * @param listIndex     The index of the list of reactants.
+     * @param reactantIndex The index of the reactant in the list.
+     * @return a clone of the parsed reactant, or null if the reactant could not be parsed.
+     */
+    public Molecule getReactant(int listIndex, int reactantIndex) {
+        Molecule template = templates[listIndex][reactantIndex];
+        return template != null ? template.cloneMolecule() : null;
+    }
+
+    /**
+     * Getter for the smiles of a reactant.
+     *
+     * @param listIndex     The index of the list of reactants.
+     * @param reactantIndex The index of the reactant in the list.
+     * @return the smiles of the reactant.
+     */
+    public String getReactantSmiles(int listIndex, int reactantIndex) {
+        return reactantLists.get(listIndex).get(reactantIndex);
+    }
+
+    /**
+     * Getter for the amount of lists of reactants.
+     *
+     * @return the amount of lists of reactants.
+     */
+    public int size() {
+        return templates.length;
+    }
+
+    /**
+     * Getter for the amount of reactants in a list.
+     *
+     * @param listIndex The index of the list of reactants.
+     * @return the amount of reactants in the list.
+     */
+    public int getReactantCount(int listIndex) {
+        return templates[listIndex].length;
+    }
+
+    /**
+     * Getter for the cache of reaction products of genotypes that index this library.
+     *
+     * @return the product cache.
+     */
+    public ProductCache getProductCache() {
+        return productCache;
+    }
+
+    /**
+     * Getter for the index of reactants in this library that are compatible with the reactions of a list of species.
+     * The index is built the first time that it is requested for the list of species.
+     *
+     * @param species The species with the reactions to match the reactants against.
+     * @return the compatibility index.
+     */
+    public CompatibilityIndex getCompatibilityIndex(List<Species> species) {
+        return compatibilityIndices.computeIfAbsent(species, key -> new CompatibilityIndex(this, key));
+    }
+
+    /**
+     * Getter for the lists of reactants as smiles.
+     *
+     * @return the lists of reactants.
+     */
+    public List<List<String>> getReactantLists() {
+        return reactantLists;
+    }
+
+    /**
+     * Reads the maximum amount of genotype and species combinations in the product cache from the
+     * PRODUCT_CACHE_SIZE environment variable.
+     *
+     * @return the size of the product cache.
+     */
+    private static int getProductCacheSize() {
+        String value = System.getenv("PRODUCT_CACHE_SIZE");
+        if (value == null) {
+            return DEFAULT_PRODUCT_CACHE_SIZE;
+        }
+        if (NumberCheckUtilities.isInteger(value, 10)) {
+            return Integer.parseInt(value);
+        }
+        throw new RuntimeException("Environment variable 'PRODUCT_CACHE_SIZE' was not an integer value");
+    }
+
+    /**
+     * Reads the maximum estimated memory of the product cache in megabytes from the PRODUCT_CACHE_MEMORY
+     * environment variable. By default, the cache can take up an eighth of the maximum heap.
+     *
+     * @return the maximum estimated memory of the product cache in bytes.
+     */
+    private static long getProductCacheMemory() {
+        String value = System.getenv("PRODUCT_CACHE_MEMORY");
+        if (value == null) {
+            return Runtime.getRuntime().maxMemory() / DEFAULT_PRODUCT_CACHE_HEAP_DIVISOR;
+        }
+        if (NumberCheckUtilities.isInteger(value, 10)) {
+            return Long.parseLong(value) * 1024 * 1024;
+        }
+        throw new RuntimeException("Environment variable 'PRODUCT_CACHE_MEMORY' was not an integer value");
+    }
+
+    /**
+     * Creates a task that parses a range of reactants.
+     *
+     * @param reactants The reactants to parse.
+     * @param molecules The array to store the parsed reactants in.
+     * @param from      The index of the first reactant to parse, inclusive.
+     * @param to        The index of the last reactant to parse, exclusive.
+     * @return the task that parses the reactants.
+     */
+    private static Runnable getParsingTask(List<String> reactants, Molecule[] molecules, int from, int to) {
+        return () -> {
+            for (int j = from; j < to; j++) {
+                try {
+                    molecules[j] = MolImporter.importMol(reactants.get(j));
+                } catch (MolFormatException e) {
+                    // Reactions with this reactant will fail, like they would have without the library
+                    e.printStackTrace();
+                }
+            }
+        };
+    }
+}
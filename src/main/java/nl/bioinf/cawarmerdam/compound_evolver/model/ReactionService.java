@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model;
+
+import chemaxon.reaction.ReactionException;
+import chemaxon.reaction.Reactor;
+import chemaxon.struc.Molecule;
+import nl.bioinf.cawarmerdam.compound_evolver.util.ExecutionService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Service that reacts candidates on the shared reaction pool with a deadline for every reaction.
+ * Reactions are cancelled cooperatively: the enumeration of products stops when the deadline passed, when the
+ * reaction is cancelled or when the maximum amount of products is reached. The deadline starts when the reaction
+ * starts, so that the time a reaction waits for a thread of the pool is not counted. The caller waits for a looser
+ * limit, which includes the time in the queue. A reactor that did not finish in time is
+ * left to the reaction thread, which stops as soon as the reactor returns control.
+ * <p>
+ * The service keeps metrics of the reactions, which are the amount of reactions per second, the amount of
+ * timeouts and failures, and the distribution of the amount of products per reaction.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class ReactionService {
+    private static final long TIMEOUT_MILLIS = 10000;
+    private static final long WAIT_MILLIS = 60000;
+    private static final int PRODUCT_LIMIT = 50;
+    private static final ReactionService instance = new ReactionService(TIMEOUT_MILLIS, WAIT_MILLIS, PRODUCT_LIMIT);
+    private final long timeoutNanos;
+    private final long waitNanos;
+    private final int productLimit;
+    private final long startTime = System.nanoTime();
+    private final AtomicLong reactionCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong truncatedCount = new AtomicLong();
+    private final AtomicLongArray productCountDistribution;
+
+    /**
+     * Constructor for a reaction service.
+     *
+     * @param timeoutMillis The maximum duration of a single reaction in milliseconds.
+     * @param waitMillis    The maximum time that a caller waits for a reaction in milliseconds, including the time
+     *                      that the reaction waits for a thread.
+     * @param productLimit  The maximum amount of products that is enumerated in a single reaction.
+     */
+    private ReactionService(long timeoutMillis, long waitMillis, int productLimit) {
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.waitNanos = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        this.productLimit = productLimit;
+        this.productCountDistribution = new AtomicLongArray(productLimit + 1);
+    }
+
+    /**
+     * Getter for the reaction service of this JVM.
+     *
+     * @return the reaction service.
+     */
+    public static ReactionService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Reacts the reactants with a reactor, and waits for the products until the reaction finished, or until the
+     * caller waited for the maximum wait time.
+     *
+     * @param reactor   The reactor to react with, which should not be used by anything else.
+     * @param reactants The reactants to react.
+     * @return the products of the reaction.
+     * @throws ReactionException    if the reactants could not be set.
+     * @throws TimeoutException     if the reaction did not finish before its deadline, or did not finish within the
+     *                              maximum wait time.
+     * @throws ExecutionException   if the reaction failed.
+     * @throws InterruptedException if the thread was interrupted while waiting for the reaction.
+     */
+    public List<Molecule> react(Reactor reactor, Molecule[] reactants)
+            throws ReactionException, TimeoutException, ExecutionException, InterruptedException {
+        reactor.setReactants(reactants);
+        // The deadline of the reaction starts when a reaction thread picks it up
+        Future<List<Molecule>> future = ExecutionService.getInstance().submit(
+                ExecutionService.PoolType.REACTION, () -> enumerateProducts(reactor, System.nanoTime() + timeoutNanos));
+        try {
+            List<Molecule> products = future.get(waitNanos, TimeUnit.NANOSECONDS);
+            reactionCount.incrementAndGet();
+            productCountDistribution.incrementAndGet(products.size());
+            return products;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeoutCount.incrementAndGet();
+            throw new TimeoutException(String.format(
+                    "Reaction did not finish within %d ms of waiting", TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                timeoutCount.incrementAndGet();
+                throw (TimeoutException) e.getCause();
+            }
+            failureCount.incrementAndGet();
+            throw e;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * Enumerates the products of a reactor until the reactor is exhausted, the product limit is reached, the
+     * deadline passed or the thread is interrupted.
+     *
+     * @param reactor  The reactor to enumerate products with.
+     * @param deadline The deadline of the reaction in terms of {@link System#nanoTime()}.
+     * @return the enumerated products.
+     * @throws ReactionException if the reactor failed.
+     * @throws TimeoutException  if the deadline passed or the reaction was cancelled.
+     */
+    private List<Molecule> enumerateProducts(Reactor reactor, long deadline) throws ReactionException, TimeoutException {
+        List<Molecule> products = new ArrayList<>();
+        Molecule[] product;
+        while ((product = reactor.react()) != null) {
+            products.add(product[0]);
+            if (System.nanoTime() > deadline || Thread.currentThread().isInterrupted()) {
+                throw new TimeoutException(String.format(
+                        "Reaction did not finish in %d ms", TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+            }
+            if (products.size() >= productLimit) {
+                // Runaway enumerations are cut off, the products so far are sufficient to choose from
+                truncatedCount.incrementAndGet();
+                break;
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Getter for the amount of reactions that finished.
+     *
+     * @return the amount of finished reactions.
+     */
+    public long getReactionCount() {
+        return reactionCount.get();
+    }
+
+    /**
+     * Getter for the amount of finished reactions per second since the service was started.
+     *
+     * @return the amount of reactions per second.
+     */
+    public double getReactionsPerSecond() {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        return seconds > 0 ? reactionCount.get() / seconds : 0;
+    }
+
+    /**
+     * Getter for the amount of reactions that did not finish before their deadline.
+     *
+     * @return the amount of timeouts.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * Getter for the amount of reactions that failed.
+     *
+     * @return the amount of failures.
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * Getter for the amount of reactions that were cut off at the product limit.
+     *
+     * @return the amount of truncated reactions.
+     */
+    public long getTruncatedCount() {
+        return truncatedCount.get();
+    }
+
+    /**
+     * Getter for the distribution of the amount of products per finished reaction.
+     *
+     * @return an array with, at every index, the amount of reactions that produced that many products.
+     */
+    public long[] getProductCountDistribution() {
+        long[] distribution = new long[productCountDistribution.length()];
+        for (int i = 0; i < distribution.length; i++) {
+            distribution[i] = productCountDistribution.get(i);
+        }
+        return distribution;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner distribution = new StringJoiner(", ", "{", "}");
+        long[] productCounts = getProductCountDistribution();
+        for (int i = 0; i < productCounts.length; i++) {
+            if (productCounts[i] > 0) {
+                distribution.add(i + ": " + productCounts[i]);
+            }
+        }
+        return String.format("reactions = %d (%.1f/s), timeouts = %d, failures = %d, truncated = %d, products = %s",
+                getReactionCount(), getReactionsPerSecond(), getTimeoutCount(), getFailureCount(),
+                getTruncatedCount(), distribution);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model;
+
+import chemaxon.reaction.Reactor;
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of ready to use reactors for a single reaction. Copying a reactor is expensive, because it is
+ * done by serializing it, so reactors are reused between reactions instead. A reactor that is borrowed from the pool
+ * is reset before it is handed out. The prototype reactor is never handed out itself.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class ReactorPool {
+    private final Reactor prototype;
+    private final BlockingQueue<Reactor> idleReactors;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructor for a reactor pool.
+     *
+     * @param prototype The reactor that is copied when the pool has no idle reactor.
+     * @param capacity  The maximum amount of idle reactors that are kept.
+     */
+    public ReactorPool(Reactor prototype, int capacity) {
+        this.prototype = prototype;
+        this.idleReactors = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Borrows a reactor from the pool. A copy of the prototype is made when the pool has no idle reactor.
+     *
+     * @return a reset reactor that is not used by anything else.
+     */
+    public Reactor borrow() {
+        Reactor reactor = idleReactors.poll();
+        if (reactor != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+            // Not sure of the exact cause, but a copy is needed to prevent random, otherwise unexplainable errors
+            reactor = SerializationUtils.clone(prototype);
+        }
+        reactor.restart();
+        return reactor;
+    }
+
+    /**
+     * Returns a reactor to the pool. The reactor should only be returned when the reaction that it was used for
+     * finished normally, as an interrupted reactor might be left in an inconsistent state. When the pool is full,
+     * the reactor is discarded.
+     *
+     * @param reactor The reactor that was borrowed from this pool.
+     */
+    public void release(Reactor reactor) {
+        idleReactors.offer(reactor);
+    }
+
+    /**
+     * Getter for the amount of times that an idle reactor could be reused.
+     *
+     * @return the amount of hits.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Getter for the amount of times that the prototype reactor had to be copied.
+     *
+     * @return the amount of misses.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits = %d, misses = %d", getHitCount(), getMissCount());
+    }
+}
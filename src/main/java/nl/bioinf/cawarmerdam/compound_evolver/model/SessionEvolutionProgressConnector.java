@@ -4,8 +4,13 @@
  */
 package nl.bioinf.cawarmerdam.compound_evolver.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import nl.bioinf.cawarmerdam.compound_evolver.model.pipeline.PipelineStatistics;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Class that is used as a connector between the evolution and a servlet.
@@ -19,7 +24,10 @@ public class SessionEvolutionProgressConnector implements EvolutionProgressConne
     private Status status;
     private final List<Generation> generationBuffer = new ArrayList<>();
     private final List<Generation> generations = new ArrayList<>();
+    private final Map<Integer, List<Generation>> islandGenerations = new TreeMap<>();
     private boolean terminationRequired = false;
+    private EvolutionStatistics statistics = new EvolutionStatistics();
+    private PipelineStatistics pipelineStatistics = new PipelineStatistics();
 
     /**
      * Constructor for the session evolution progress connector.
@@ -50,6 +58,46 @@ public class SessionEvolutionProgressConnector implements EvolutionProgressConne
         return generations;
     }
 
+    /**
+     * Getter for the generations of every island, when multiple populations are evolved in parallel.
+     *
+     * @return the generations of every island, by island index.
+     */
+    public synchronized Map<Integer, List<Generation>> getIslandGenerations() {
+        return new TreeMap<>(islandGenerations);
+    }
+
+    /**
+     * Getter for the statistics of the scores of the evolution. The statistics are not sent with progress updates,
+     * the summary of every generation is sent with the generation instead.
+     *
+     * @return the statistics of the scores of the evolution.
+     */
+    @JsonIgnore
+    public EvolutionStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public void setStatistics(EvolutionStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Getter for the latencies and outcomes of the pipeline steps of every receptor for the whole run, which are
+     * sent with progress updates.
+     *
+     * @return the statistics of the pipeline steps.
+     */
+    public PipelineStatistics getPipelineStatistics() {
+        return pipelineStatistics;
+    }
+
+    @Override
+    public void setPipelineStatistics(PipelineStatistics pipelineStatistics) {
+        this.pipelineStatistics = pipelineStatistics;
+    }
+
     /**
      * Getter for the list of exceptions that where thrown while scoring candidates.
      *
@@ -81,6 +129,11 @@ public class SessionEvolutionProgressConnector implements EvolutionProgressConne
         generationBuffer.add(generation);
     }
 
+    @Override
+    public synchronized void handleNewIslandGeneration(int islandIndex, Generation generation) {
+        islandGenerations.computeIfAbsent(islandIndex, index -> new ArrayList<>()).add(generation);
+    }
+
     @Override
     public boolean isTerminationRequired() {
         return terminationRequired;
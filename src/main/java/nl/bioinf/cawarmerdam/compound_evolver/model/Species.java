@@ -4,10 +4,9 @@
  */
 package nl.bioinf.cawarmerdam.compound_evolver.model;
 
-import chemaxon.formats.MolFormatException;
-import chemaxon.formats.MolImporter;
 import chemaxon.reaction.Reactor;
 import chemaxon.struc.Molecule;
+import nl.bioinf.cawarmerdam.compound_evolver.util.ExecutionService;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -26,6 +25,7 @@ import java.util.stream.IntStream;
 public class Species {
     private final List<Integer> reactantIndices;
     private final Reactor reaction;
+    private final ReactorPool reactorPool;
 
     /**
      * Constructor of a species instance.
@@ -42,6 +42,9 @@ public class Species {
         }
         this.reactantIndices = reactantIndices;
         this.reaction = reaction;
+        // Keep an idle reactor for every thread that can react candidates at the same time
+        this.reactorPool = new ReactorPool(reaction,
+                ExecutionService.getInstance().getPoolSize(ExecutionService.PoolType.CPU) * 2);
     }
 
     /**
@@ -72,6 +75,15 @@ public class Species {
         return reaction;
     }
 
+    /**
+     * Getter for the pool of ready to use copies of the reaction in the species.
+     *
+     * @return the pool of reactors.
+     */
+    public ReactorPool getReactorPool() {
+        return reactorPool;
+    }
+
     /**
      * Getter for the reactant indices. A list of indices that each corresponds to a list
      * of reactants out of the list of lists of reactants. this list of reactants should contain reactants that
@@ -99,22 +111,17 @@ public class Species {
     /**
      * Collects those reactants that are used in this species' reaction.
      *
-     * @param reactants the list of reactants that can form a genotype.
-     * @return those reactants that are used in this species' reaction.
+     * @param library the library with the parsed reactants.
+     * @param genome  the genome with, for every list of reactants, the index of a reactant.
+     * @return clones of those reactants that are used in this species' reaction.
      */
-    Molecule[] getReactantsSubset(List<String> reactants) {
-        return this.getReactantIndices()
-                .stream()
-                .map(reactants::get)
-                .map(s -> {
-                    try {
-                        return MolImporter.importMol(s);
-                    } catch (MolFormatException e) {
-                        e.printStackTrace();
-                        return null;
-                    }
-                })
-                .toArray(Molecule[]::new);
+    Molecule[] getReactantsSubset(ReactantLibrary library, int[] genome) {
+        Molecule[] reactants = new Molecule[reactantIndices.size()];
+        for (int i = 0; i < reactants.length; i++) {
+            int listIndex = reactantIndices.get(i);
+            reactants[i] = library.getReactant(listIndex, genome[listIndex]);
+        }
+        return reactants;
     }
 
     /**
@@ -13,8 +13,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The pipeline container implements the callable interface so it can be called in multiple threads.
@@ -27,6 +32,9 @@ public class CallableFullPipelineContainer implements Callable<Void> {
     private final List<PipelineStep<Candidate, Void>> pipeline;
     private final Path pipelineOutputFilePath;
     private final List<Candidate> candidates;
+    private ScoreCache scoreCache;
+    private List<String> pipelineSignatures;
+    private final AtomicBoolean alreadyScored = new AtomicBoolean();
 
     /**
      * Constructor of a callable pipeline container.
@@ -41,6 +49,17 @@ public class CallableFullPipelineContainer implements Callable<Void> {
         this.candidates = candidates;
     }
 
+    /**
+     * Setter for the score cache that is consulted before the pipeline is executed.
+     *
+     * @param scoreCache         The score cache.
+     * @param pipelineSignatures The signatures of the pipelines, in the same order as the pipelines.
+     */
+    public void setScoreCache(ScoreCache scoreCache, List<String> pipelineSignatures) {
+        this.scoreCache = scoreCache;
+        this.pipelineSignatures = pipelineSignatures;
+    }
+
     /**
      * Method responsible for executing the pipeline.
      *
@@ -52,36 +71,154 @@ public class CallableFullPipelineContainer implements Callable<Void> {
     public Void call() throws PipelineException, PluginException {
         // Declare logging details
         for (int i = 0; i < candidates.size(); i++) {
-            Path candidateDirectory = null;
+            if (candidates.get(i).isScored())
+                return null;
+            boolean executed = prepare(i);
+            if (executed) {
+                this.pipeline.get(i).execute(candidates.get(i));
+            }
+            complete(i, executed);
+        }
+        return null;
+    }
+
+    /**
+     * Submits the candidates to staged pipelines, in which the steps of every candidate run on the executors of
+     * their stages. The candidates of the receptors are scored at the same time, and the thread that submits the
+     * candidates does not wait for them. As in {@link #call()}, the pipelines are not executed for a candidate
+     * that is already scored.
+     *
+     * @param stagedPipeline The staged pipelines, in the same order as the pipelines of this container.
+     * @param executor       The executor that prepares the candidates and completes their scores.
+     * @return the future that completes when every candidate of this container is handled.
+     */
+    public CompletableFuture<Void> submit(List<StagedPipeline<Candidate, Void>> stagedPipeline, Executor executor) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            int index = i;
+            futures.add(CompletableFuture.supplyAsync(() -> submit(stagedPipeline.get(index), index, executor), executor)
+                    .thenCompose(future -> future));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Submits the candidate of a single receptor to its staged pipeline.
+     *
+     * @param stagedPipeline The staged pipeline of the receptor.
+     * @param index          The index of the candidate in this container.
+     * @param executor       The executor that completes the score of the candidate.
+     * @return the future that completes when the candidate is handled.
+     */
+    private CompletableFuture<Void> submit(StagedPipeline<Candidate, Void> stagedPipeline, int index,
+                                           Executor executor) {
+        boolean executed;
+        try {
+            executed = prepare(index);
+        } catch (PipelineException e) {
+            throw new CompletionException(e);
+        }
+        CompletableFuture<Void> pipelineFuture = executed ?
+                stagedPipeline.submit(candidates.get(index)) :
+                CompletableFuture.completedFuture(null);
+        return pipelineFuture.thenAcceptAsync(value -> {
             try {
-                if (candidates.get(i).isScored())
-                    return null;
-                // Create new directory
-                candidateDirectory = createCandidateDirectory(candidates.get(i));
+                complete(index, executed);
+            } catch (PluginException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
 
-                //Reset all the files in the candidate, to make sure they are properly validated
-                candidates.get(i).setScoredConformersFile(null);
-                candidates.get(i).setMinimizationOutputFilePath(null);
-                candidates.get(i).setFixedConformersFile(null);
-                candidates.get(i).setConformersFile(null);
-                candidates.get(i).setConformerScores(null);
+    /**
+     * Prepares a candidate for its pipeline, by creating its directory and resetting its files. When the score
+     * cache holds the result of an earlier run with the same pipeline, the result is restored instead. Candidates
+     * that were already scored are not prepared.
+     *
+     * @param index The index of the candidate in this container.
+     * @return true if the pipeline should be executed for the candidate, false if it should not.
+     * @throws PipelineException if the directory of the candidate could not be created.
+     */
+    private boolean prepare(int index) throws PipelineException {
+        Candidate candidate = candidates.get(index);
+        // The receptors of a candidate that was already scored are skipped, whichever receptor notices it first
+        if (alreadyScored.get() || candidate.isScored()) {
+            alreadyScored.set(true);
+            return false;
+        }
+        try {
+            // Create new directory
+            Path candidateDirectory = createCandidateDirectory(candidate);
 
-                // Execute pipeline
+            //Reset all the files in the candidate, to make sure they are properly validated
+            //The files of candidates that passed the validation pipeline are resumed from by the pipeline
+            if (candidate.getValidationPipeline() == null) {
+                candidate.setScoredConformersFile(null);
+                candidate.setMinimizationOutputFilePath(null);
+                candidate.setFixedConformersFile(null);
+                candidate.setConformersFile(null);
+                candidate.setConformerScores(null);
+            }
+
+            // The reactants are the same for every receptor, which can be prepared at the same time
+            if (index == 0) {
                 MolExporter m = new MolExporter(new FileOutputStream(candidateDirectory.resolve("reactants.smiles").toFile()), "smiles");
-                for (Molecule reactant : candidates.get(i).getReactants()) {
+                for (Molecule reactant : candidate.getReactants()) {
                     m.write(reactant);
                 }
                 m.close();
-                this.pipeline.get(i).execute(candidates.get(i));
+            }
+            // Restore the result of an earlier run with the same pipeline if possible
+            if (scoreCache != null && scoreCache.restore(
+                    ScoreCache.createKey(pipelineSignatures.get(index), candidate), candidate,
+                    createReceptorDirectory(candidateDirectory, index))) {
+                System.out.println("Restored score of candidate " + candidate.getIdentifier() + " from cache");
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Completes a candidate after its pipeline, by storing its result in the score cache and calculating its
+     * ligand efficiencies.
+     *
+     * @param index    The index of the candidate in this container.
+     * @param executed If the pipeline was executed for the candidate.
+     * @throws PluginException if a Chemaxon plugin failed.
+     */
+    private void complete(int index, boolean executed) throws PluginException {
+        Candidate candidate = candidates.get(index);
+        if (executed && scoreCache != null) {
+            try {
+                scoreCache.store(ScoreCache.createKey(pipelineSignatures.get(index), candidate), candidate);
             } catch (IOException e) {
                 e.printStackTrace();
             }
-            if (candidates.get(i).isScored()) {
-                candidates.get(i).calculateLigandEfficiency();
-                candidates.get(i).calculateLigandLipophilicityEfficiency();
-            }
         }
-        return null;
+        if (candidate.isScored()) {
+            candidate.calculateLigandEfficiency();
+            candidate.calculateLigandLipophilicityEfficiency();
+        }
+    }
+
+    /**
+     * Creates the directory for the files of a candidate that are specific to a receptor. With a single receptor
+     * these files reside in the directory of the candidate itself.
+     *
+     * @param candidateDirectory The directory of the candidate.
+     * @param index              The index of the candidate in this container, which is the index of its receptor.
+     * @return the receptor directory.
+     * @throws IOException if the directory could not be created.
+     */
+    private Path createReceptorDirectory(Path candidateDirectory, int index) throws IOException {
+        if (candidates.size() == 1) {
+            return candidateDirectory;
+        }
+        return Files.createDirectories(SharedLigandPreparation.resolveReceptorDirectory(candidateDirectory, index));
     }
 
     /**
@@ -95,7 +232,8 @@ public class CallableFullPipelineContainer implements Callable<Void> {
         // Make directory if it does not exist
         if (!directory.toFile().exists()) {
             try {
-                Files.createDirectory(directory);
+                // The receptors of the candidate can create the directory at the same time
+                Files.createDirectories(directory);
             } catch (IOException e) {
 
                 // Format exception method
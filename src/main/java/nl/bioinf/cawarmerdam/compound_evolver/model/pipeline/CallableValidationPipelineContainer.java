@@ -61,8 +61,14 @@ public class CallableValidationPipelineContainer implements Callable<List<Candid
             candidates.get(i).setFixedConformersFile(null);
             candidates.get(i).setConformersFile(null);
             candidates.get(i).setConformerScores(null);
+            candidates.get(i).setValidationPipeline(null);
             // Execute pipeline
-            out.add(this.pipeline.get(i).execute(candidates.get(i)));
+            Candidate validated = this.pipeline.get(i).execute(candidates.get(i));
+            if (validated != null) {
+                // The scoring pipeline can resume from the minimized conformers of the validated candidate
+                validated.setValidationPipeline(this.pipeline.get(i));
+            }
+            out.add(validated);
         }
         if (debug) {
             System.out.println("Validation complete, output list: " + out);
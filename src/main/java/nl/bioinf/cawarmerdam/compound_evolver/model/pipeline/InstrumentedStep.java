@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model.pipeline;
+
+import nl.bioinf.cawarmerdam.compound_evolver.model.Candidate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Step that records the latency and the outcome of every execution of another step in the pipeline statistics.
+ * An execution succeeds when the step returns, it rejects the candidate when the step throws a pipeline exception
+ * or returns no candidate while it should, and it fails when the step throws any other exception.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class InstrumentedStep<O> implements PipelineStep<Candidate, O> {
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final String SDF_RECORD_SEPARATOR = "$$$$";
+    private final String name;
+    private final int receptor;
+    private final PipelineStatistics statistics;
+    private final PipelineStep<Candidate, O> step;
+    private final boolean returnsCandidate;
+
+    /**
+     * The outcome of an execution of a step.
+     */
+    enum Outcome {SUCCESS, REJECTION, EXCEPTION}
+
+    /**
+     * Constructor for an instrumented step.
+     *
+     * @param name             The name of the step in the statistics.
+     * @param receptor         The index of the receptor that the step belongs to.
+     * @param statistics       The statistics to record executions in.
+     * @param step             The step to instrument.
+     * @param returnsCandidate If the step should return the candidate, so that returning nothing is a rejection.
+     */
+    private InstrumentedStep(String name, int receptor, PipelineStatistics statistics,
+                             PipelineStep<Candidate, O> step, boolean returnsCandidate) {
+        this.name = name;
+        this.receptor = receptor;
+        this.statistics = statistics;
+        this.step = step;
+        this.returnsCandidate = returnsCandidate;
+        statistics.register(receptor, name);
+    }
+
+    /**
+     * Instruments a step that returns the candidate that it handled, or nothing if it rejected the candidate.
+     *
+     * @param name       The name of the step in the statistics.
+     * @param receptor   The index of the receptor that the step belongs to.
+     * @param statistics The statistics to record executions in.
+     * @param step       The step to instrument.
+     * @return the instrumented step.
+     */
+    public static InstrumentedStep<Candidate> of(String name, int receptor, PipelineStatistics statistics,
+                                                 PipelineStep<Candidate, Candidate> step) {
+        return new InstrumentedStep<>(name, receptor, statistics, step, true);
+    }
+
+    /**
+     * Instruments a step that ends the pipeline.
+     *
+     * @param name       The name of the step in the statistics.
+     * @param receptor   The index of the receptor that the step belongs to.
+     * @param statistics The statistics to record executions in.
+     * @param step       The step to instrument.
+     * @return the instrumented step.
+     */
+    public static InstrumentedStep<Void> ofTerminal(String name, int receptor, PipelineStatistics statistics,
+                                                    PipelineStep<Candidate, Void> step) {
+        return new InstrumentedStep<>(name, receptor, statistics, step, false);
+    }
+
+    /**
+     * Executes the step, and records its latency and outcome.
+     *
+     * @param candidate The candidate to execute the step for.
+     * @return the output of the step.
+     * @throws PipelineException if the step failed.
+     */
+    @Override
+    public O execute(Candidate candidate) throws PipelineException {
+        int conformersIn = countConformers(candidate);
+        long cpuStart = getCurrentThreadCpuTime();
+        long wallStart = System.nanoTime();
+        Outcome outcome = Outcome.EXCEPTION;
+        try {
+            O output = step.execute(candidate);
+            outcome = output == null && returnsCandidate ? Outcome.REJECTION : Outcome.SUCCESS;
+            return output;
+        } catch (PipelineException e) {
+            outcome = Outcome.REJECTION;
+            throw e;
+        } finally {
+            long wallNanos = System.nanoTime() - wallStart;
+            long cpuNanos = cpuStart < 0 ? -1 : getCurrentThreadCpuTime() - cpuStart;
+            int conformersOut = outcome == Outcome.SUCCESS ? countConformers(candidate) : 0;
+            statistics.record(receptor, name, outcome, wallNanos, cpuNanos, conformersIn, conformersOut);
+        }
+    }
+
+    /**
+     * Gets the CPU time of the current thread.
+     *
+     * @return the CPU time in nanoseconds, or -1 if it can not be measured by this virtual machine.
+     */
+    private static long getCurrentThreadCpuTime() {
+        if (!THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() || !THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+            return -1;
+        }
+        return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+    }
+
+    /**
+     * Counts the conformers of a candidate. The scores of the conformers are counted if the conformers are scored,
+     * otherwise the records in the latest conformer file in sdf format are counted.
+     *
+     * @param candidate The candidate to count the conformers of.
+     * @return the amount of conformers, or 0 if the candidate has no conformers that can be counted.
+     */
+    private static int countConformers(Candidate candidate) {
+        if (candidate == null) {
+            return 0;
+        }
+        if (candidate.getConformerScores() != null) {
+            return candidate.getConformerScores().size();
+        }
+        Path conformersFile = candidate.getMinimizationOutputFilePath();
+        if (conformersFile == null || !conformersFile.toFile().exists()) {
+            conformersFile = candidate.getFixedConformersFile();
+        }
+        if (conformersFile == null || !conformersFile.toFile().exists()) {
+            conformersFile = candidate.getConformersFile();
+        }
+        if (conformersFile == null || !conformersFile.toString().endsWith(".sdf") || !conformersFile.toFile().exists()) {
+            return 0;
+        }
+        try (Stream<String> lines = Files.lines(conformersFile)) {
+            return (int) lines.filter(line -> line.startsWith(SDF_RECORD_SEPARATOR)).count();
+        } catch (IOException | UncheckedIOException e) {
+            return 0;
+        }
+    }
+}
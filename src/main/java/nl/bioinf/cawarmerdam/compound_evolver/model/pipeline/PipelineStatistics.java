@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model.pipeline;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistics of the executions of the instrumented pipeline steps, per receptor and per step. Executions are
+ * recorded for the whole run, as well as for the generation that is being recorded: every execution between
+ * finishing the previous generation and finishing the current generation is counted in the current generation.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class PipelineStatistics {
+    private final Map<String, StepStatistics> steps = new LinkedHashMap<>();
+    private final Map<Integer, Map<String, StepStatistics>> generations = new TreeMap<>();
+    private int generation;
+
+    /**
+     * Registers a step, so that it is reported in the order of registration even if it was not executed yet.
+     *
+     * @param receptor The index of the receptor that the step belongs to.
+     * @param name     The name of the step.
+     */
+    synchronized void register(int receptor, String name) {
+        steps.computeIfAbsent(getKey(receptor, name), key -> new StepStatistics(name, receptor));
+    }
+
+    /**
+     * Records a single execution of a step.
+     *
+     * @param receptor      The index of the receptor that the step belongs to.
+     * @param name          The name of the step.
+     * @param outcome       The outcome of the execution.
+     * @param wallNanos     The time that passed during the execution in nanoseconds.
+     * @param cpuNanos      The CPU time of the executing thread in nanoseconds, or a negative value if it could
+     *                      not be measured.
+     * @param conformersIn  The amount of conformers of the candidate before the execution.
+     * @param conformersOut The amount of conformers of the candidate after the execution.
+     */
+    synchronized void record(int receptor, String name, InstrumentedStep.Outcome outcome,
+                             long wallNanos, long cpuNanos, int conformersIn, int conformersOut) {
+        String key = getKey(receptor, name);
+        steps.computeIfAbsent(key, k -> new StepStatistics(name, receptor))
+                .record(outcome, wallNanos, cpuNanos, conformersIn, conformersOut);
+        generations.computeIfAbsent(generation, number -> new LinkedHashMap<>())
+                .computeIfAbsent(key, k -> new StepStatistics(name, receptor))
+                .record(outcome, wallNanos, cpuNanos, conformersIn, conformersOut);
+    }
+
+    /**
+     * Finishes the generation that is being recorded, after which executions are counted in the next generation.
+     */
+    public synchronized void finishGeneration() {
+        generation++;
+    }
+
+    /**
+     * Getter for the number of the generation that is being recorded.
+     *
+     * @return the generation number.
+     */
+    public synchronized int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Getter for the statistics of every step for the whole run, in the order in which the steps were registered.
+     *
+     * @return a copy of the statistics of every step.
+     */
+    public synchronized List<StepStatistics> getSteps() {
+        return copy(steps);
+    }
+
+    /**
+     * Getter for the statistics of every step per generation. These are not sent with progress updates, as they
+     * grow with every generation.
+     *
+     * @return a copy of the statistics of every step that was executed in a generation, by generation number.
+     */
+    @JsonIgnore
+    public synchronized Map<Integer, List<StepStatistics>> getGenerations() {
+        Map<Integer, List<StepStatistics>> copies = new TreeMap<>();
+        for (Map.Entry<Integer, Map<String, StepStatistics>> entry : generations.entrySet()) {
+            copies.put(entry.getKey(), copy(entry.getValue()));
+        }
+        return copies;
+    }
+
+    /**
+     * Writes the statistics of the whole run and of every generation to a file in json format. The file is replaced
+     * at once, so that it can be read while the run progresses.
+     *
+     * @param file The path of the file to write.
+     * @throws IOException if the file could not be written.
+     */
+    public void write(Path file) throws IOException {
+        Map<String, Object> dump = new LinkedHashMap<>();
+        synchronized (this) {
+            dump.put("generation", generation);
+            dump.put("steps", getSteps());
+            dump.put("generations", getGenerations());
+        }
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(temporaryFile.toFile(), dump);
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Copies the statistics of steps, so that they can be read while executions are recorded.
+     *
+     * @param steps The statistics to copy, by key.
+     * @return the copies.
+     */
+    private static List<StepStatistics> copy(Map<String, StepStatistics> steps) {
+        List<StepStatistics> copies = new ArrayList<>(steps.size());
+        for (StepStatistics statistics : steps.values()) {
+            copies.add(new StepStatistics(statistics));
+        }
+        return copies;
+    }
+
+    /**
+     * Gets the key of a step of a receptor.
+     *
+     * @param receptor The index of the receptor that the step belongs to.
+     * @param name     The name of the step.
+     * @return the key of the step.
+     */
+    private static String getKey(int receptor, String name) {
+        return receptor + ":" + name;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model.pipeline;
+
+import nl.bioinf.cawarmerdam.compound_evolver.model.Candidate;
+
+import java.nio.file.Path;
+
+/**
+ * Step that skips a part of the validation pipeline for candidates that already passed the validation pipeline.
+ * The scoring pipeline starts with the same steps as the validation pipeline, so it can resume from the minimized
+ * conformers of a validated candidate, as long as the conformers are still on disk.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class ResumeValidatedStep implements PipelineStep<Candidate, Candidate> {
+    private final PipelineStep<Candidate, Candidate> validationPipeline;
+    private final PipelineStep<Candidate, Candidate> step;
+
+    /**
+     * Constructor for a resume validated step.
+     *
+     * @param validationPipeline The validation pipeline of which the output is resumed from.
+     * @param step               The step of the validation pipeline that is skipped for validated candidates.
+     */
+    public ResumeValidatedStep(PipelineStep<Candidate, Candidate> validationPipeline,
+                               PipelineStep<Candidate, Candidate> step) {
+        this.validationPipeline = validationPipeline;
+        this.step = step;
+    }
+
+    /**
+     * Executes the step, unless the candidate was validated by the validation pipeline.
+     *
+     * @param candidate The candidate to execute the step for.
+     * @return the candidate.
+     * @throws PipelineException if the step failed.
+     */
+    @Override
+    public Candidate execute(Candidate candidate) throws PipelineException {
+        if (isValidated(candidate)) {
+            return candidate;
+        }
+        if (candidate.getValidationPipeline() != null) {
+            // The validated conformers can not be used, so the candidate is validated from the start
+            candidate.setValidationPipeline(null);
+            candidate.setScoredConformersFile(null);
+            candidate.setMinimizationOutputFilePath(null);
+            candidate.setFixedConformersFile(null);
+            candidate.setConformersFile(null);
+            candidate.setConformerScores(null);
+        }
+        return step.execute(candidate);
+    }
+
+    /**
+     * Checks if the candidate passed the validation pipeline, and if its minimized conformers are still on disk.
+     *
+     * @param candidate The candidate to check.
+     * @return true if the scoring pipeline can resume from the minimized conformers of the candidate.
+     */
+    private boolean isValidated(Candidate candidate) {
+        return candidate.getValidationPipeline() == validationPipeline
+                && candidate.getConformerScores() != null
+                && exists(candidate.getMinimizationOutputFilePath())
+                && exists(candidate.getScoredConformersFile());
+    }
+
+    /**
+     * Checks if a file exists.
+     *
+     * @param path The path of the file, which can be null.
+     * @return true if the path is set and the file exists.
+     */
+    private static boolean exists(Path path) {
+        return path != null && path.toFile().exists();
+    }
+}
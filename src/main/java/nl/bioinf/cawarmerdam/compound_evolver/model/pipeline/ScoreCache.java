@@ -0,0 +1,512 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model.pipeline;
+
+import chemaxon.formats.MolExporter;
+import chemaxon.struc.Molecule;
+import nl.bioinf.cawarmerdam.compound_evolver.model.Candidate;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Persistent cache of scoring results that is shared by every run that uses the same cache directory.
+ * <p>
+ * Results are stored in an append-only data file. A memory-mapped hash index maps a 64 bit hash of the
+ * cache key to the position of the result in the data file. Writes take an exclusive file lock and lookups a
+ * shared one, so that runs in other processes can share the cache as well. Within a single JVM every run shares
+ * the same instance per directory.
+ * <p>
+ * The index doubles its capacity and rehashes its entries when it is more than 70% full. The capacity is kept in
+ * the header of the index, so that other processes map the grown index before they use it again. Only an index
+ * that can not grow any further stops storing results.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class ScoreCache {
+    private static final Map<Path, ScoreCache> openCaches = new HashMap<>();
+    private static final int MAGIC = 0x53434348;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 1 << 20;
+    // The entries are copied to the heap while the index grows, which limits the size of the index
+    private static final int MAX_CAPACITY = 1 << 24;
+    private static final double MAX_LOAD_FACTOR = 0.7;
+    private static final String BEST_CONFORMER_FILE_NAME = "best-conformer.sdf";
+    private final FileChannel indexChannel;
+    private final FileChannel dataChannel;
+    private MappedByteBuffer index;
+    private int capacity;
+    private boolean full;
+
+    /**
+     * Constructor of the score cache.
+     *
+     * @param directory The directory that holds the cache files.
+     * @throws IOException if the cache files could not be opened or were not valid.
+     */
+    private ScoreCache(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        indexChannel = FileChannel.open(directory.resolve("index.bin"),
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        dataChannel = FileChannel.open(directory.resolve("data.bin"),
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try (FileLock ignored = indexChannel.lock()) {
+            mapIndex(Math.max(getStoredCapacity(), INITIAL_CAPACITY));
+            if (index.getInt(0) == 0) {
+                index.putInt(0, MAGIC);
+                index.putInt(4, VERSION);
+                index.putInt(12, capacity);
+            } else if (index.getInt(0) != MAGIC || index.getInt(4) != VERSION) {
+                throw new IOException(String.format("'%s' is not a valid score cache", directory));
+            } else if (index.getInt(12) == 0) {
+                // Indices that were created before the index could grow have the initial capacity
+                index.putInt(12, capacity);
+            }
+        }
+    }
+
+    /**
+     * Opens the score cache in the given directory, or returns the cache if it was opened before.
+     *
+     * @param directory The directory that holds the cache files.
+     * @return the score cache.
+     * @throws IOException if the cache files could not be opened or were not valid.
+     */
+    public static synchronized ScoreCache open(Path directory) throws IOException {
+        Path normalizedDirectory = directory.toAbsolutePath().normalize();
+        ScoreCache cache = openCaches.get(normalizedDirectory);
+        if (cache == null) {
+            cache = new ScoreCache(normalizedDirectory);
+            openCaches.put(normalizedDirectory, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Creates a signature for the pipeline that scores candidates against a receptor. The signature changes when
+     * the content of the receptor or anchor file, or any of the given pipeline settings change.
+     *
+     * @param receptorFilePath The receptor file that is used in the pipeline.
+     * @param anchorFilePath   The anchor file that is used in the pipeline.
+     * @param settings         The pipeline settings that influence scores.
+     * @return the signature as a hexadecimal string.
+     * @throws IOException if the receptor or anchor file could not be read.
+     */
+    public static String createPipelineSignature(Path receptorFilePath, Path anchorFilePath, Object... settings)
+            throws IOException {
+        MessageDigest digest = getDigest();
+        digest.update(Files.readAllBytes(receptorFilePath));
+        digest.update(Files.readAllBytes(anchorFilePath));
+        digest.update(Arrays.toString(settings).getBytes(StandardCharsets.UTF_8));
+        StringBuilder signature = new StringBuilder();
+        for (byte b : digest.digest()) {
+            signature.append(String.format("%02x", b));
+        }
+        return signature.toString();
+    }
+
+    /**
+     * Creates the key of a finished candidate for a pipeline. The key consists of the pipeline signature,
+     * the reactants, the way the reactants map to the reaction and the product of the reaction.
+     *
+     * @param pipelineSignature The signature of the pipeline that scores the candidate.
+     * @param candidate         The candidate to create a key for.
+     * @return the cache key.
+     * @throws IOException if the reactants or the product could not be exported.
+     */
+    public static String createKey(String pipelineSignature, Candidate candidate) throws IOException {
+        StringJoiner key = new StringJoiner("|");
+        key.add(pipelineSignature);
+        for (Molecule reactant : candidate.getReactants()) {
+            key.add(MolExporter.exportToFormat(reactant, "smiles:u"));
+        }
+        key.add(candidate.getSpecies().getReactantIndices().toString());
+        key.add(MolExporter.exportToFormat(candidate.getPhenotype(), "smiles:u"));
+        return key.toString();
+    }
+
+    /**
+     * Restores the scoring result for the given key to the candidate, if the cache contains it.
+     * The scored conformers and the best conformer are written to the candidate directory.
+     *
+     * @param key                The cache key of the candidate.
+     * @param candidate          The candidate to restore the result to.
+     * @param candidateDirectory The directory of the candidate.
+     * @return true if the result was restored, false if the cache did not contain the key.
+     * @throws IOException if the cache or the candidate directory could not be read or written.
+     */
+    public boolean restore(String key, Candidate candidate, Path candidateDirectory) throws IOException {
+        Entry entry = get(key);
+        if (entry == null) {
+            return false;
+        }
+        Path scoredConformersFile = candidateDirectory.resolve(entry.scoredConformersFileName);
+        Files.write(scoredConformersFile, entry.scoredConformers);
+        Files.write(candidateDirectory.resolve(BEST_CONFORMER_FILE_NAME), entry.bestConformer);
+        candidate.setMinimizationOutputFilePath(scoredConformersFile);
+        candidate.setScoredConformersFile(scoredConformersFile);
+        candidate.setConformerScores(new ArrayList<>(entry.conformerScores));
+        candidate.setRawScore(entry.rawScore);
+        return true;
+    }
+
+    /**
+     * Stores the scoring result of a scored candidate.
+     *
+     * @param key       The cache key of the candidate.
+     * @param candidate The scored candidate.
+     * @throws IOException if the scored conformers could not be read or the cache could not be written.
+     */
+    public void store(String key, Candidate candidate) throws IOException {
+        Path scoredConformersFile = candidate.getScoredConformersFile();
+        if (!candidate.isScored() || scoredConformersFile == null || candidate.getConformerScores() == null) {
+            return;
+        }
+        Path bestConformerFile = scoredConformersFile.resolveSibling(BEST_CONFORMER_FILE_NAME);
+        if (!Files.exists(scoredConformersFile) || !Files.exists(bestConformerFile)) {
+            return;
+        }
+        put(key, new Entry(
+                candidate.getRawScore(),
+                candidate.getConformerScores(),
+                scoredConformersFile.getFileName().toString(),
+                Files.readAllBytes(scoredConformersFile),
+                Files.readAllBytes(bestConformerFile)));
+    }
+
+    /**
+     * Gets the entry that is stored for the given key. The index is read under a shared lock, so that runs in
+     * other processes can not add an entry to it halfway through the lookup. Lookups within this JVM are
+     * serialized with the writes, since a JVM can not hold overlapping locks on the same file.
+     *
+     * @param key The key to look up.
+     * @return the entry, or null if the cache does not contain the key.
+     * @throws IOException if the data file could not be read.
+     */
+    private synchronized Entry get(String key) throws IOException {
+        long hash = hash(key);
+        try (FileLock ignored = indexChannel.lock(0, Long.MAX_VALUE, true)) {
+            remapIfGrown();
+            int mask = capacity - 1;
+            int slot = (int) hash & mask;
+            for (int probe = 0; probe < capacity; probe++) {
+                int position = HEADER_SIZE + slot * SLOT_SIZE;
+                long slotHash = index.getLong(position);
+                if (slotHash == 0) {
+                    return null;
+                }
+                if (slotHash == hash) {
+                    // The offset is written before the hash, and stored plus one so that zero signals an empty slot
+                    long offset = index.getLong(position + 8);
+                    if (offset != 0) {
+                        Entry entry = readEntry(offset - 1, key);
+                        if (entry != null) {
+                            return entry;
+                        }
+                    }
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Appends an entry to the data file and adds it to the index.
+     *
+     * @param key   The key of the entry.
+     * @param entry The entry to store.
+     * @throws IOException if the cache could not be written.
+     */
+    private synchronized void put(String key, Entry entry) throws IOException {
+        byte[] payload = entry.serialize(key);
+        long hash = hash(key);
+        try (FileLock ignored = indexChannel.lock()) {
+            remapIfGrown();
+            int entryCount = index.getInt(8);
+            if (entryCount >= capacity * MAX_LOAD_FACTOR) {
+                if (capacity >= MAX_CAPACITY) {
+                    if (!full) {
+                        System.err.printf("Score cache is full with %d entries, results are no longer stored%n",
+                                entryCount);
+                        full = true;
+                    }
+                    return;
+                }
+                grow();
+            }
+            int mask = capacity - 1;
+            int slot = (int) hash & mask;
+            int position = HEADER_SIZE + slot * SLOT_SIZE;
+            while (index.getLong(position) != 0) {
+                // Another run might have stored the same key in the meantime
+                if (index.getLong(position) == hash && readEntry(index.getLong(position + 8) - 1, key) != null) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+                position = HEADER_SIZE + slot * SLOT_SIZE;
+            }
+            long offset = dataChannel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + payload.length);
+            buffer.putInt(payload.length).put(payload).flip();
+            while (buffer.hasRemaining()) {
+                dataChannel.write(buffer, offset + buffer.position());
+            }
+            dataChannel.force(false);
+            index.putLong(position + 8, offset + 1);
+            index.putLong(position, hash);
+            index.putInt(8, entryCount + 1);
+        }
+    }
+
+    /**
+     * Getter for the amount of results in the cache.
+     *
+     * @return the amount of entries in the index.
+     */
+    public synchronized int getEntryCount() {
+        return index.getInt(8);
+    }
+
+    /**
+     * Getter for the amount of slots in the index.
+     *
+     * @return the capacity of the index.
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Getter for whether the index can not grow any further and results are no longer stored.
+     *
+     * @return true if the cache is full.
+     */
+    public synchronized boolean isFull() {
+        return full;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("entries = %d, capacity = %d%s", getEntryCount(), capacity, full ? ", full" : "");
+    }
+
+    /**
+     * Reads the capacity from the header of the index file, without mapping it.
+     *
+     * @return the stored capacity, or 0 if the index file does not have one.
+     * @throws IOException if the index file could not be read.
+     */
+    private int getStoredCapacity() throws IOException {
+        if (indexChannel.size() < HEADER_SIZE) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (indexChannel.read(header, header.position()) < 0) {
+                throw new EOFException("Score cache index file ended unexpectedly");
+            }
+        }
+        return header.getInt(12);
+    }
+
+    /**
+     * Maps the index file with the given capacity. The file is extended if it is smaller.
+     *
+     * @param capacity The amount of slots in the index.
+     * @throws IOException if the index file could not be mapped.
+     */
+    private void mapIndex(int capacity) throws IOException {
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Maps the index again if another process has grown it. Has to be called while holding a lock on the index.
+     *
+     * @throws IOException if the index file could not be mapped.
+     */
+    private void remapIfGrown() throws IOException {
+        int storedCapacity = index.getInt(12);
+        if (storedCapacity > capacity) {
+            mapIndex(storedCapacity);
+        }
+    }
+
+    /**
+     * Doubles the capacity of the index and rehashes its entries. Has to be called while holding the exclusive
+     * lock on the index. The capacity in the header is updated last, an interrupted rehash only loses entries,
+     * since every entry is checked against its key when it is read.
+     *
+     * @throws IOException if the index file could not be mapped.
+     */
+    private void grow() throws IOException {
+        int oldCapacity = capacity;
+        // Only the occupied slots are copied, as pairs of a hash and an offset
+        long[] slots = new long[index.getInt(8) * 2];
+        int copied = 0;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int position = HEADER_SIZE + slot * SLOT_SIZE;
+            long hash = index.getLong(position);
+            if (hash != 0 && copied < slots.length) {
+                slots[copied++] = hash;
+                slots[copied++] = index.getLong(position + 8);
+            }
+            index.putLong(position, 0);
+            index.putLong(position + 8, 0);
+        }
+        mapIndex(oldCapacity * 2);
+        int mask = capacity - 1;
+        for (int i = 0; i < copied; i += 2) {
+            long hash = slots[i];
+            int slot = (int) hash & mask;
+            while (index.getLong(HEADER_SIZE + slot * SLOT_SIZE) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            int position = HEADER_SIZE + slot * SLOT_SIZE;
+            index.putLong(position + 8, slots[i + 1]);
+            index.putLong(position, hash);
+        }
+        index.putInt(12, capacity);
+        System.out.printf("Score cache index grew to %d slots%n", capacity);
+    }
+
+    /**
+     * Reads an entry from the data file.
+     *
+     * @param offset The offset of the entry in the data file.
+     * @param key    The key that the entry should have.
+     * @return the entry, or null if the entry at the offset has another key or does not fit in the data file.
+     * @throws IOException if the data file could not be read.
+     */
+    private Entry readEntry(long offset, String key) throws IOException {
+        if (offset < 0 || offset + Integer.BYTES > dataChannel.size()) {
+            return null;
+        }
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+        readFully(lengthBuffer, offset);
+        int length = lengthBuffer.getInt(0);
+        // A damaged or partly written entry should not cause a huge allocation
+        if (length < 0 || offset + Integer.BYTES + length > dataChannel.size()) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, offset + Integer.BYTES);
+        return Entry.deserialize(payload.array(), key);
+    }
+
+    /**
+     * Reads from the data file until the buffer is full.
+     *
+     * @param buffer   The buffer to fill.
+     * @param position The position in the data file to read from.
+     * @throws IOException if the data file could not be read.
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (dataChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Score cache data file ended unexpectedly");
+            }
+        }
+    }
+
+    /**
+     * Hashes a key to a 64 bit value that is never zero.
+     *
+     * @param key The key to hash.
+     * @return the hash.
+     */
+    private static long hash(String key) {
+        long hash = ByteBuffer.wrap(getDigest().digest(key.getBytes(StandardCharsets.UTF_8))).getLong();
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Gets a SHA-256 message digest.
+     *
+     * @return the message digest.
+     */
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The scoring result of a single candidate.
+     */
+    private static class Entry {
+        private final double rawScore;
+        private final List<Double> conformerScores;
+        private final String scoredConformersFileName;
+        private final byte[] scoredConformers;
+        private final byte[] bestConformer;
+
+        Entry(double rawScore, List<Double> conformerScores, String scoredConformersFileName,
+              byte[] scoredConformers, byte[] bestConformer) {
+            this.rawScore = rawScore;
+            this.conformerScores = conformerScores;
+            this.scoredConformersFileName = scoredConformersFileName;
+            this.scoredConformers = scoredConformers;
+            this.bestConformer = bestConformer;
+        }
+
+        byte[] serialize(String key) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeUTF(key);
+                out.writeDouble(rawScore);
+                out.writeInt(conformerScores.size());
+                for (Double conformerScore : conformerScores) {
+                    out.writeDouble(conformerScore);
+                }
+                out.writeUTF(scoredConformersFileName);
+                out.writeInt(scoredConformers.length);
+                out.write(scoredConformers);
+                out.writeInt(bestConformer.length);
+                out.write(bestConformer);
+            }
+            return bytes.toByteArray();
+        }
+
+        static Entry deserialize(byte[] payload, String key) throws IOException {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+                // Different keys can have the same hash
+                if (!in.readUTF().equals(key)) {
+                    return null;
+                }
+                double rawScore = in.readDouble();
+                List<Double> conformerScores = new ArrayList<>();
+                int conformerCount = in.readInt();
+                for (int i = 0; i < conformerCount; i++) {
+                    conformerScores.add(in.readDouble());
+                }
+                String scoredConformersFileName = in.readUTF();
+                byte[] scoredConformers = new byte[in.readInt()];
+                in.readFully(scoredConformers);
+                byte[] bestConformer = new byte[in.readInt()];
+                in.readFully(bestConformer);
+                return new Entry(rawScore, conformerScores, scoredConformersFileName, scoredConformers, bestConformer);
+            }
+        }
+    }
+}
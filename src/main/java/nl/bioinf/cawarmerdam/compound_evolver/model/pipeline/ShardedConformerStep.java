@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model.pipeline;
+
+import nl.bioinf.cawarmerdam.compound_evolver.model.Candidate;
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+
+/**
+ * Step that splits the conformers of a candidate into shards, and executes a docking or scoring step for every
+ * shard in its own process at the same time. The step that is sharded handles the conformers of a candidate one
+ * after another in a single external process, so a candidate with many conformers would otherwise keep a single
+ * worker busy while other workers are idle.
+ * <p>
+ * Every shard is a copy of the candidate with a part of the conformers, in a directory of its own. When every
+ * shard is done, the output files and the conformer scores of the shards are merged in the original order of the
+ * conformers, into the files that the step would have written without sharding.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class ShardedConformerStep implements PipelineStep<Candidate, Candidate> {
+    private static final String SDF_RECORD_SEPARATOR = "$$$$";
+    private final PipelineStep<Candidate, Candidate> step;
+    private final Executor executor;
+    private final int maximumShardCount;
+    private final IntSupplier idleWorkerCount;
+
+    /**
+     * Constructor for a sharded conformer step.
+     *
+     * @param step              The step to execute for every shard.
+     * @param executor          The executor that runs the shards, other than the shard that runs in the thread
+     *                          that executes this step.
+     * @param maximumShardCount The maximum amount of shards that the conformers of a candidate are split into.
+     * @param idleWorkerCount   The amount of workers of the executor that are idle, which limits the amount of
+     *                          shards, so that the shards do not wait on each other.
+     */
+    public ShardedConformerStep(PipelineStep<Candidate, Candidate> step, Executor executor,
+                                int maximumShardCount, IntSupplier idleWorkerCount) {
+        if (maximumShardCount < 1) {
+            throw new IllegalArgumentException("The maximum amount of shards should be at least 1");
+        }
+        this.step = step;
+        this.executor = executor;
+        this.maximumShardCount = maximumShardCount;
+        this.idleWorkerCount = idleWorkerCount;
+    }
+
+    /**
+     * Executes the step for the shards of the candidate, and merges their output.
+     *
+     * @param candidate The candidate to execute the step for.
+     * @return the candidate with the merged output of the shards.
+     * @throws PipelineException if the step failed for a shard.
+     */
+    @Override
+    public Candidate execute(Candidate candidate) throws PipelineException {
+        if (candidate == null) {
+            return step.execute(null);
+        }
+        boolean minimized = candidate.getMinimizationOutputFilePath() != null;
+        Path inputFile = minimized ? candidate.getMinimizationOutputFilePath() : candidate.getFixedConformersFile();
+        if (inputFile == null) {
+            return step.execute(candidate);
+        }
+        // The thread that executes this step runs a shard as well
+        int shardCount = Math.min(maximumShardCount, 1 + Math.max(0, idleWorkerCount.getAsInt()));
+        if (shardCount < 2) {
+            return step.execute(candidate);
+        }
+        List<String> records = readRecords(inputFile);
+        shardCount = Math.min(shardCount, records.size());
+        if (shardCount < 2) {
+            return step.execute(candidate);
+        }
+        List<Path> shardDirectories = new ArrayList<>();
+        try {
+            List<Shard> shards = new ArrayList<>();
+            for (int i = 0; i < shardCount; i++) {
+                // Contiguous shards keep the conformers in their original order
+                List<String> shardRecords = records.subList(i * records.size() / shardCount,
+                        (i + 1) * records.size() / shardCount);
+                Path shardDirectory = inputFile.resolveSibling("shard-" + i);
+                Path shardFile = shardDirectory.resolve(inputFile.getFileName());
+                shardDirectories.add(shardDirectory);
+                writeRecords(shardDirectory, shardFile, shardRecords);
+                Candidate shardCandidate = candidate.copy();
+                shardCandidate.setFixedConformersFile(shardFile);
+                shardCandidate.setMinimizationOutputFilePath(minimized ? shardFile : null);
+                shardCandidate.setScoredConformersFile(null);
+                if (candidate.getConformerScores() != null && candidate.getConformerScores().size() == records.size()) {
+                    shardCandidate.setConformerScores(new ArrayList<>(candidate.getConformerScores().subList(
+                            i * records.size() / shardCount, (i + 1) * records.size() / shardCount)));
+                }
+                shards.add(new Shard(shardCandidate));
+            }
+            List<Candidate> results = run(shards);
+            merge(candidate, inputFile, shardDirectories, results);
+            return candidate;
+        } finally {
+            // The shards are removed as well when a shard or the merge fails
+            for (Path shardDirectory : shardDirectories) {
+                try {
+                    FileUtils.deleteDirectory(shardDirectory.toFile());
+                } catch (IOException e) {
+                    System.err.println("Could not delete shard directory: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the shards. Every shard but the first is offered to the executor, after which the current thread runs
+     * every shard that was not started yet, so that shards never wait on workers that wait on them in turn.
+     *
+     * @param shards The shards to run.
+     * @return the output of the step for every shard.
+     * @throws PipelineException if the step failed for a shard.
+     */
+    private List<Candidate> run(List<Shard> shards) throws PipelineException {
+        for (Shard shard : shards.subList(1, shards.size())) {
+            try {
+                executor.execute(shard);
+            } catch (RejectedExecutionException e) {
+                // The shard is run by the current thread
+                break;
+            }
+        }
+        for (Shard shard : shards) {
+            shard.run();
+        }
+        List<Candidate> results = new ArrayList<>();
+        // Every shard is waited on before a failure is thrown, so that no shard is running when it is removed
+        ExecutionException failure = null;
+        for (Shard shard : shards) {
+            try {
+                results.add(shard.result.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PipelineException("Interrupted while waiting on conformer shards", e);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            if (failure.getCause() instanceof PipelineException) {
+                throw (PipelineException) failure.getCause();
+            } else if (failure.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) failure.getCause();
+            }
+            throw new PipelineException("Conformer shard failed", failure);
+        }
+        return results;
+    }
+
+    /**
+     * Merges the output of the shards into the candidate. The output files of the shards are concatenated next to
+     * the input file of the candidate, and the conformer scores are concatenated in the order of the shards.
+     *
+     * @param candidate        The candidate to merge the output into.
+     * @param inputFile        The conformers file that was split into the shards.
+     * @param shardDirectories The directories of the shards.
+     * @param results          The output of the step for every shard.
+     * @throws PipelineException if a shard did not produce output, or if the output could not be merged.
+     */
+    private static void merge(Candidate candidate, Path inputFile, List<Path> shardDirectories,
+                              List<Candidate> results) throws PipelineException {
+        for (Candidate result : results) {
+            if (result == null) {
+                throw new PipelineException("A conformer shard of candidate " + candidate.getIdentifier() +
+                        " was rejected");
+            }
+        }
+        Path minimizationOutputFile = mergeFiles(inputFile, shardDirectories, results, true);
+        if (minimizationOutputFile != null) {
+            candidate.setMinimizationOutputFilePath(minimizationOutputFile);
+        }
+        Path scoredConformersFile = mergeFiles(inputFile, shardDirectories, results, false);
+        if (scoredConformersFile != null) {
+            candidate.setScoredConformersFile(scoredConformersFile);
+        }
+        List<Double> conformerScores = new ArrayList<>();
+        for (Candidate result : results) {
+            if (result.getConformerScores() == null) {
+                return;
+            }
+            conformerScores.addAll(result.getConformerScores());
+        }
+        candidate.setConformerScores(conformerScores);
+    }
+
+    /**
+     * Concatenates an output file of every shard into a file next to the input file of the candidate.
+     *
+     * @param inputFile        The conformers file that was split into the shards.
+     * @param shardDirectories The directories of the shards.
+     * @param results          The output of the step for every shard.
+     * @param minimization     If the minimization output files should be merged, otherwise the scored conformer
+     *                         files are merged.
+     * @return the merged file, or null if the step did not write the output file for the shards.
+     * @throws PipelineException if the output could not be merged.
+     */
+    private static Path mergeFiles(Path inputFile, List<Path> shardDirectories, List<Candidate> results,
+                                   boolean minimization) throws PipelineException {
+        List<Path> shardFiles = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            Path shardFile = minimization ?
+                    results.get(i).getMinimizationOutputFilePath() :
+                    results.get(i).getScoredConformersFile();
+            // Files outside of the shard directory were not written by the step
+            if (shardFile == null || !shardFile.startsWith(shardDirectories.get(i)) ||
+                    shardFile.equals(shardDirectories.get(i).resolve(inputFile.getFileName()))) {
+                return null;
+            }
+            shardFiles.add(shardFile);
+        }
+        Path mergedFile = inputFile.resolveSibling(shardFiles.get(0).getFileName());
+        try (OutputStream outputStream = Files.newOutputStream(mergedFile)) {
+            for (Path shardFile : shardFiles) {
+                Files.copy(shardFile, outputStream);
+            }
+        } catch (IOException e) {
+            throw new PipelineException(String.format("Could not merge conformer shards into '%s'", mergedFile), e);
+        }
+        return mergedFile;
+    }
+
+    /**
+     * Reads the records of a conformers file in sdf format, including the line that ends every record.
+     *
+     * @param file The conformers file.
+     * @return the records of the file.
+     * @throws PipelineException if the file could not be read.
+     */
+    private static List<String> readRecords(Path file) throws PipelineException {
+        List<String> records = new ArrayList<>();
+        StringBuilder record = new StringBuilder();
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                record.append(line).append(System.lineSeparator());
+                if (line.startsWith(SDF_RECORD_SEPARATOR)) {
+                    records.add(record.toString());
+                    record.setLength(0);
+                }
+            }
+        } catch (IOException e) {
+            throw new PipelineException(String.format("Could not read conformers '%s'", file), e);
+        }
+        if (record.toString().trim().length() > 0) {
+            records.add(record.toString());
+        }
+        return records;
+    }
+
+    /**
+     * Writes the records of a shard to the conformers file of the shard.
+     *
+     * @param directory The directory of the shard.
+     * @param file      The conformers file of the shard.
+     * @param records   The records of the shard.
+     * @throws PipelineException if the file could not be written.
+     */
+    private static void writeRecords(Path directory, Path file, List<String> records) throws PipelineException {
+        try {
+            Files.createDirectories(directory);
+            Files.write(file, String.join("", records).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new PipelineException(String.format("Could not write conformer shard '%s'", file), e);
+        }
+    }
+
+    /**
+     * The execution of the step for a single shard, which is run by the first thread that claims it.
+     */
+    private class Shard implements Runnable {
+        private final Candidate candidate;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<Candidate> result = new CompletableFuture<>();
+
+        /**
+         * Constructor for a shard.
+         *
+         * @param candidate The copy of the candidate with the conformers of the shard.
+         */
+        Shard(Candidate candidate) {
+            this.candidate = candidate;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                result.complete(step.execute(candidate));
+            } catch (PipelineException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model.pipeline;
+
+import nl.bioinf.cawarmerdam.compound_evolver.model.Candidate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ligand preparation that is shared between the pipelines of multiple receptors. The conformers of a candidate do
+ * not depend on the receptor, so a preparation step is executed once for every candidate, after which the
+ * pipelines of the other receptors reuse its output. Every preparation step has a key that describes the settings
+ * it depends on, so that a step is only reused by receptors with the same settings, for instance alignment to the
+ * same anchor.
+ * <p>
+ * The prepared conformers are written to a directory for each receptor, so that the receptor specific steps that
+ * follow the preparation can run at the same time without overwriting each other's files.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class SharedLigandPreparation {
+    private static final int MAXIMUM_CANDIDATE_COUNT = 256;
+    private final int receptorCount;
+    private final Map<Long, Entry> entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            // Candidates of which not every receptor took the preparation are dropped eventually
+            return size() > MAXIMUM_CANDIDATE_COUNT;
+        }
+    };
+
+    /**
+     * Constructor for a shared ligand preparation.
+     *
+     * @param receptorCount The amount of receptors that the preparation of a candidate is shared between.
+     */
+    public SharedLigandPreparation(int receptorCount) {
+        this.receptorCount = receptorCount;
+    }
+
+    /**
+     * Gets the directory of a receptor within the directory of a candidate.
+     *
+     * @param candidateDirectory The directory of the candidate.
+     * @param receptorIndex      The index of the receptor.
+     * @return the receptor directory.
+     */
+    public static Path resolveReceptorDirectory(Path candidateDirectory, int receptorIndex) {
+        return candidateDirectory.resolve("receptor-" + receptorIndex);
+    }
+
+    /**
+     * Creates the preparation step for the pipeline of a receptor, which executes the given steps in order, or
+     * reuses their output if they were executed for the candidate by the pipeline of another receptor.
+     *
+     * @param receptorIndex The index of the receptor that the step is for.
+     * @param keys          The settings that every step depends on, which are compared to the keys of the steps of
+     *                      other receptors.
+     * @param steps         The preparation steps, in the order that they should be executed.
+     * @return the preparation step for the receptor.
+     */
+    public PipelineStep<Candidate, Candidate> getStep(int receptorIndex, List<Object> keys,
+                                                      List<PipelineStep<Candidate, Candidate>> steps) {
+        if (keys.size() != steps.size()) {
+            throw new IllegalArgumentException("Every preparation step should have a key");
+        }
+        List<Object> stepKeys = new ArrayList<>(keys);
+        List<PipelineStep<Candidate, Candidate>> preparationSteps = new ArrayList<>(steps);
+        return candidate -> prepare(candidate, receptorIndex, stepKeys, preparationSteps);
+    }
+
+    /**
+     * Prepares a candidate for the pipeline of a receptor. The preparations of a single candidate are done one at
+     * a time, since the steps of every receptor write to the same files.
+     *
+     * @param candidate     The candidate to prepare.
+     * @param receptorIndex The index of the receptor.
+     * @param keys          The settings that every step depends on.
+     * @param steps         The preparation steps.
+     * @return the prepared candidate.
+     * @throws PipelineException if a preparation step failed, either now or for another receptor.
+     */
+    private Candidate prepare(Candidate candidate, int receptorIndex, List<Object> keys,
+                              List<PipelineStep<Candidate, Candidate>> steps) throws PipelineException {
+        Entry entry = acquire(candidate.getIdentifier());
+        try {
+            synchronized (entry) {
+                Preparation preparation = null;
+                for (int i = 0; i < steps.size(); i++) {
+                    // A step is only reused if the steps before it were the same as well
+                    List<Object> key = new ArrayList<>(keys.subList(0, i + 1));
+                    preparation = entry.preparations.get(key);
+                    if (preparation == null) {
+                        // A failed step is kept as well, so that it is not retried for every receptor
+                        preparation = Preparation.execute(steps.get(i), candidate);
+                        entry.preparations.put(key, preparation);
+                        preparation.rethrow();
+                    } else {
+                        preparation.restore(candidate);
+                    }
+                }
+                if (preparation != null) {
+                    preparation.relocate(candidate, receptorIndex);
+                }
+                return candidate;
+            }
+        } finally {
+            release(candidate.getIdentifier(), entry);
+        }
+    }
+
+    /**
+     * Gets the preparations of a candidate, and counts the receptor that takes them.
+     *
+     * @param identifier The identifier of the candidate.
+     * @return the preparations of the candidate.
+     */
+    private Entry acquire(long identifier) {
+        synchronized (entries) {
+            Entry entry = entries.computeIfAbsent(identifier, key -> new Entry());
+            entry.takers++;
+            return entry;
+        }
+    }
+
+    /**
+     * Drops the preparations of a candidate once every receptor took them.
+     *
+     * @param identifier The identifier of the candidate.
+     * @param entry      The preparations of the candidate.
+     */
+    private void release(long identifier, Entry entry) {
+        synchronized (entries) {
+            if (entry.takers >= receptorCount) {
+                entries.remove(identifier, entry);
+            }
+        }
+    }
+
+    /**
+     * The preparations of a single candidate, by the keys of the steps that made them.
+     */
+    private static class Entry {
+        private final Map<List<Object>, Preparation> preparations = new HashMap<>();
+        private int takers;
+    }
+
+    /**
+     * The output of a preparation step for a candidate. The conformer files are kept in memory, so that they can be
+     * restored after the steps of another receptor overwrote them.
+     */
+    private static class Preparation {
+        private final Path conformersFile;
+        private final byte[] conformers;
+        private final Path fixedConformersFile;
+        private final byte[] fixedConformers;
+        private final PipelineException failure;
+
+        /**
+         * Constructor for a preparation.
+         *
+         * @param conformersFile      The file of the conformers.
+         * @param conformers          The content of the conformers file.
+         * @param fixedConformersFile The file of the fixed conformers.
+         * @param fixedConformers     The content of the fixed conformers file.
+         * @param failure             The exception that the step failed with, or null if it did not fail.
+         */
+        private Preparation(Path conformersFile, byte[] conformers, Path fixedConformersFile, byte[] fixedConformers,
+                            PipelineException failure) {
+            this.conformersFile = conformersFile;
+            this.conformers = conformers;
+            this.fixedConformersFile = fixedConformersFile;
+            this.fixedConformers = fixedConformers;
+            this.failure = failure;
+        }
+
+        /**
+         * Executes a preparation step and keeps its output.
+         *
+         * @param step      The step to execute.
+         * @param candidate The candidate to execute the step for.
+         * @return the preparation, which holds the exception of the step if it failed.
+         */
+        static Preparation execute(PipelineStep<Candidate, Candidate> step, Candidate candidate) {
+            try {
+                if (step.execute(candidate) == null) {
+                    throw new PipelineException("Ligand preparation rejected candidate " + candidate.getIdentifier());
+                }
+                return new Preparation(
+                        candidate.getConformersFile(), read(candidate.getConformersFile()),
+                        candidate.getFixedConformersFile(), read(candidate.getFixedConformersFile()), null);
+            } catch (PipelineException e) {
+                return new Preparation(null, null, null, null, e);
+            }
+        }
+
+        /**
+         * Restores the output of the preparation step to a candidate, including the files.
+         *
+         * @param candidate The candidate to restore the output to.
+         * @throws PipelineException if the step failed, or if the files could not be restored.
+         */
+        void restore(Candidate candidate) throws PipelineException {
+            rethrow();
+            write(conformersFile, conformers);
+            if (fixedConformersFile != null && !fixedConformersFile.equals(conformersFile)) {
+                write(fixedConformersFile, fixedConformers);
+            }
+            candidate.setConformersFile(conformersFile);
+            candidate.setFixedConformersFile(fixedConformersFile);
+        }
+
+        /**
+         * Writes the fixed conformers to the directory of a receptor, where the steps that follow the preparation
+         * continue with them.
+         *
+         * @param candidate     The candidate that the conformers belong to.
+         * @param receptorIndex The index of the receptor.
+         * @throws PipelineException if the fixed conformers could not be written.
+         */
+        void relocate(Candidate candidate, int receptorIndex) throws PipelineException {
+            rethrow();
+            if (fixedConformersFile == null) {
+                throw new PipelineException("Ligand preparation did not produce conformers for candidate " +
+                        candidate.getIdentifier());
+            }
+            Path receptorDirectory = resolveReceptorDirectory(fixedConformersFile.getParent(), receptorIndex);
+            Path receptorConformersFile = receptorDirectory.resolve(fixedConformersFile.getFileName());
+            try {
+                Files.createDirectories(receptorDirectory);
+            } catch (IOException e) {
+                throw new PipelineException(String.format("Could not create directory '%s' for docking files",
+                        receptorDirectory.toString()), e);
+            }
+            write(receptorConformersFile, fixedConformers);
+            candidate.setFixedConformersFile(receptorConformersFile);
+        }
+
+        /**
+         * Throws the exception that the preparation step failed with, if it failed.
+         *
+         * @throws PipelineException if the step failed.
+         */
+        void rethrow() throws PipelineException {
+            if (failure != null) {
+                throw new PipelineException(failure.getMessage(), failure);
+            }
+        }
+
+        /**
+         * Reads a conformer file.
+         *
+         * @param file The file to read, which can be null.
+         * @return the content of the file, or null if there is no file.
+         * @throws PipelineException if the file could not be read.
+         */
+        private static byte[] read(Path file) throws PipelineException {
+            if (file == null) {
+                return null;
+            }
+            try {
+                return Files.readAllBytes(file);
+            } catch (IOException e) {
+                throw new PipelineException(String.format("Could not read prepared conformers '%s'", file), e);
+            }
+        }
+
+        /**
+         * Writes a conformer file.
+         *
+         * @param file    The file to write, which can be null.
+         * @param content The content of the file.
+         * @throws PipelineException if the file could not be written.
+         */
+        private static void write(Path file, byte[] content) throws PipelineException {
+            if (file == null) {
+                return;
+            }
+            try {
+                Files.write(file, content);
+            } catch (IOException e) {
+                throw new PipelineException(String.format("Could not write prepared conformers '%s'", file), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model.pipeline;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Pipeline of which every step is a stage that runs asynchronously on its own executor, with its own limit on the
+ * amount of values that it handles at once. Values that pass through the pipeline are handed from stage to stage
+ * with completable futures, so a thread is never held while a value waits for the next stage. While one value is
+ * docked by an external process, the conformers of another value can be generated on a CPU-bound stage.
+ * <p>
+ * Every existing pipeline step can be used as a stage, including steps that were combined with
+ * {@link PipelineStep#pipe(PipelineStep)}.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class StagedPipeline<I, O> {
+    private final Stage<I, O> stage;
+
+    /**
+     * Constructor for a staged pipeline.
+     *
+     * @param stage The function that passes a value through every stage of the pipeline.
+     */
+    private StagedPipeline(Stage<I, O> stage) {
+        this.stage = stage;
+    }
+
+    /**
+     * Creates a pipeline with a single stage.
+     *
+     * @param step        The step that the stage executes.
+     * @param executor    The executor that runs the step.
+     * @param concurrency The maximum amount of values that the stage handles at once.
+     * @param <I>         The type of the input of the step.
+     * @param <O>         The type of the output of the step.
+     * @return the staged pipeline.
+     */
+    public static <I, O> StagedPipeline<I, O> of(PipelineStep<I, O> step, Executor executor, int concurrency) {
+        Executor stageExecutor = new BoundedExecutor(executor, concurrency);
+        return new StagedPipeline<>(value -> CompletableFuture.supplyAsync(() -> execute(step, value), stageExecutor));
+    }
+
+    /**
+     * Creates a pipeline that passes the output of this pipeline to a new stage.
+     *
+     * @param step        The step that the new stage executes.
+     * @param executor    The executor that runs the step.
+     * @param concurrency The maximum amount of values that the new stage handles at once.
+     * @param <R>         The type of the output of the step.
+     * @return the staged pipeline.
+     */
+    public <R> StagedPipeline<I, R> then(PipelineStep<O, R> step, Executor executor, int concurrency) {
+        Executor stageExecutor = new BoundedExecutor(executor, concurrency);
+        return new StagedPipeline<>(value -> stage.submit(value)
+                .thenApplyAsync(output -> execute(step, output), stageExecutor));
+    }
+
+    /**
+     * Submits a value to the pipeline.
+     *
+     * @param value The input of the first stage.
+     * @return the future output of the last stage, which completes exceptionally with the pipeline exception of
+     * a stage that failed.
+     */
+    public CompletableFuture<O> submit(I value) {
+        return stage.submit(value);
+    }
+
+    /**
+     * Executes a step, and wraps a pipeline exception so that it can complete a future.
+     *
+     * @param step  The step to execute.
+     * @param value The input of the step.
+     * @param <I>   The type of the input of the step.
+     * @param <O>   The type of the output of the step.
+     * @return the output of the step.
+     */
+    private static <I, O> O execute(PipelineStep<I, O> step, I value) {
+        try {
+            return step.execute(value);
+        } catch (PipelineException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Function that passes a value through the stages of a pipeline.
+     *
+     * @param <I> The type of the input of the first stage.
+     * @param <O> The type of the output of the last stage.
+     */
+    private interface Stage<I, O> {
+        CompletableFuture<O> submit(I value);
+    }
+
+    /**
+     * Executor that runs at most a given amount of tasks at once on another executor. Tasks that exceed the limit
+     * wait in a queue, without holding a thread, until a running task finishes.
+     */
+    private static class BoundedExecutor implements Executor {
+        private final Executor executor;
+        private final int concurrency;
+        private final Queue<Runnable> queue = new ArrayDeque<>();
+        private int running;
+
+        /**
+         * Constructor for a bounded executor.
+         *
+         * @param executor    The executor that runs the tasks.
+         * @param concurrency The maximum amount of tasks that run at once.
+         */
+        BoundedExecutor(Executor executor, int concurrency) {
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("The concurrency of a stage should be at least 1");
+            }
+            this.executor = executor;
+            this.concurrency = concurrency;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            synchronized (this) {
+                if (running >= concurrency) {
+                    queue.add(command);
+                    return;
+                }
+                running++;
+            }
+            run(command);
+        }
+
+        /**
+         * Runs a task on the executor, after which the next waiting task is run.
+         *
+         * @param command The task to run.
+         */
+        private void run(Runnable command) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        runNext();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The slot of the rejected task is handed to the next task
+                runNext();
+                throw e;
+            }
+        }
+
+        /**
+         * Runs the next waiting task, or frees the slot of a finished task if no task is waiting.
+         */
+        private void runNext() {
+            Runnable next;
+            synchronized (this) {
+                next = queue.poll();
+                if (next == null) {
+                    running--;
+                }
+            }
+            if (next != null) {
+                run(next);
+            }
+        }
+    }
+}
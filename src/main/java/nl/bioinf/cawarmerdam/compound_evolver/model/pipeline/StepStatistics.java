@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model.pipeline;
+
+import nl.bioinf.cawarmerdam.compound_evolver.util.LatencyHistogram;
+
+/**
+ * Latencies and outcomes of the executions of a single pipeline step for a single receptor. Times are recorded in
+ * microseconds.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class StepStatistics {
+    private final String step;
+    private final int receptor;
+    private final LatencyHistogram wallTime;
+    private final LatencyHistogram cpuTime;
+    private long successCount;
+    private long rejectionCount;
+    private long exceptionCount;
+    private long conformersIn;
+    private long conformersOut;
+
+    /**
+     * Constructor for the statistics of a step that was not executed yet.
+     *
+     * @param step     The name of the step.
+     * @param receptor The index of the receptor that the step belongs to.
+     */
+    StepStatistics(String step, int receptor) {
+        this.step = step;
+        this.receptor = receptor;
+        this.wallTime = new LatencyHistogram();
+        this.cpuTime = new LatencyHistogram();
+    }
+
+    /**
+     * Constructor for a copy of the statistics of a step.
+     *
+     * @param statistics The statistics to copy.
+     */
+    StepStatistics(StepStatistics statistics) {
+        this.step = statistics.step;
+        this.receptor = statistics.receptor;
+        this.wallTime = new LatencyHistogram(statistics.wallTime);
+        this.cpuTime = new LatencyHistogram(statistics.cpuTime);
+        this.successCount = statistics.successCount;
+        this.rejectionCount = statistics.rejectionCount;
+        this.exceptionCount = statistics.exceptionCount;
+        this.conformersIn = statistics.conformersIn;
+        this.conformersOut = statistics.conformersOut;
+    }
+
+    /**
+     * Records a single execution of the step.
+     *
+     * @param outcome       The outcome of the execution.
+     * @param wallNanos     The time that passed during the execution in nanoseconds.
+     * @param cpuNanos      The CPU time of the executing thread in nanoseconds, or a negative value if it could
+     *                      not be measured.
+     * @param conformersIn  The amount of conformers of the candidate before the execution.
+     * @param conformersOut The amount of conformers of the candidate after the execution.
+     */
+    void record(InstrumentedStep.Outcome outcome, long wallNanos, long cpuNanos, int conformersIn, int conformersOut) {
+        switch (outcome) {
+            case SUCCESS:
+                successCount++;
+                break;
+            case REJECTION:
+                rejectionCount++;
+                break;
+            case EXCEPTION:
+                exceptionCount++;
+                break;
+        }
+        wallTime.record(Math.max(0, wallNanos) / 1000);
+        if (cpuNanos >= 0) {
+            cpuTime.record(cpuNanos / 1000);
+        }
+        this.conformersIn += conformersIn;
+        this.conformersOut += conformersOut;
+    }
+
+    /**
+     * Getter for the name of the step.
+     *
+     * @return the name of the step.
+     */
+    public String getStep() {
+        return step;
+    }
+
+    /**
+     * Getter for the index of the receptor that the step belongs to.
+     *
+     * @return the receptor index.
+     */
+    public int getReceptor() {
+        return receptor;
+    }
+
+    /**
+     * Getter for the wall time of the executions in microseconds.
+     *
+     * @return the histogram of the wall time.
+     */
+    public LatencyHistogram getWallTime() {
+        return wallTime;
+    }
+
+    /**
+     * Getter for the CPU time of the executing thread in microseconds. The CPU time of external processes that the
+     * step waits on is not included.
+     *
+     * @return the histogram of the CPU time, which is empty if the CPU time could not be measured.
+     */
+    public LatencyHistogram getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * Getter for the amount of executions that returned a candidate.
+     *
+     * @return the success count.
+     */
+    public long getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * Getter for the amount of executions that rejected the candidate.
+     *
+     * @return the rejection count.
+     */
+    public long getRejectionCount() {
+        return rejectionCount;
+    }
+
+    /**
+     * Getter for the amount of executions that failed with an unexpected exception.
+     *
+     * @return the exception count.
+     */
+    public long getExceptionCount() {
+        return exceptionCount;
+    }
+
+    /**
+     * Getter for the total amount of conformers that the candidates had before the executions.
+     *
+     * @return the amount of conformers that went into the step.
+     */
+    public long getConformersIn() {
+        return conformersIn;
+    }
+
+    /**
+     * Getter for the total amount of conformers that the candidates had after the executions.
+     *
+     * @return the amount of conformers that came out of the step.
+     */
+    public long getConformersOut() {
+        return conformersOut;
+    }
+}
@@ -5,8 +5,6 @@
 package nl.bioinf.cawarmerdam.compound_evolver.servlets;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import nl.bioinf.cawarmerdam.compound_evolver.model.Candidate;
-import nl.bioinf.cawarmerdam.compound_evolver.model.Generation;
 import nl.bioinf.cawarmerdam.compound_evolver.model.SessionEvolutionProgressConnector;
 import nl.bioinf.cawarmerdam.compound_evolver.util.GenerateCsv;
 import nl.bioinf.cawarmerdam.compound_evolver.util.UnknownProgressException;
@@ -17,9 +15,6 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
 
 import static nl.bioinf.cawarmerdam.compound_evolver.util.ServletUtils.getProgressConnector;
 
@@ -37,7 +32,8 @@ public class DownloadCsvServlet extends HttpServlet {
         try {
 
             SessionEvolutionProgressConnector progressConnector = getProgressConnector(request);
-            List<List<Double>> scores = extractScoresFromGenerations(progressConnector);
+            // The statistics of the evolution hold the score of every candidate in every generation
+            double[][] scores = progressConnector.getStatistics().getScoreTable();
             OutputStream outputStream = response.getOutputStream();
             String csvFile = GenerateCsv.generateCsvFile(scores, System.lineSeparator());
 
@@ -53,25 +49,4 @@ public class DownloadCsvServlet extends HttpServlet {
             mapper.writeValue(response.getOutputStream(), e.getMessage());
         }
     }
-
-    /**
-     * Method that extracts the scores from a progress connector.
-     *
-     * @param progressConnector A progress connector that holds the a set of generations.
-     * @return the score of every candidate in the generations collection from the progress connector.
-     */
-    private List<List<Double>> extractScoresFromGenerations(SessionEvolutionProgressConnector progressConnector) {
-        List<Generation> generations = progressConnector.getGenerations();
-
-        List<List<Double>> scores = new ArrayList<>();
-        // Collect scores
-        for (Generation generation : generations) {
-            List<Double> fitnesses = generation.getCandidateList().stream()
-                    .map(Candidate::getNormFitness)
-                    .collect(Collectors.toList());
-            // Add scores for the archive
-            scores.add(fitnesses);
-        }
-        return scores;
-    }
 }
@@ -1,7 +1,7 @@
 package nl.bioinf.cawarmerdam.compound_evolver.servlets;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import nl.bioinf.cawarmerdam.compound_evolver.model.Candidate;
+import nl.bioinf.cawarmerdam.compound_evolver.model.CandidateRecord;
 import nl.bioinf.cawarmerdam.compound_evolver.model.Generation;
 import nl.bioinf.cawarmerdam.compound_evolver.model.SessionEvolutionProgressConnector;
 import nl.bioinf.cawarmerdam.compound_evolver.util.ServletUtils;
@@ -33,13 +33,13 @@ public class DownloadMultiSdfServlet extends HttpServlet {
             String sessionId = getSessionId(request);
             Path uploadDirectory = Paths.get(pipelineTargetDirectory, sessionId);
 
-            List<Candidate> requestedCandidates = getRequestedCandidates(request, progressConnector.getGenerations());
+            List<CandidateRecord> requestedCandidates = getRequestedCandidates(request, progressConnector.getGenerations());
 
             response.setContentType("application/zip");
             response.setHeader("Content-Disposition", "attachment; filename=\"conformers.zip\"");
             ArrayList<Path> list = new ArrayList<>();
 
-            for (Candidate candidate : requestedCandidates) {
+            for (CandidateRecord candidate : requestedCandidates) {
                 Path resolve = uploadDirectory.resolve(String.valueOf(candidate.getIdentifier()));
                 list.add(resolve);
             }
@@ -55,7 +55,7 @@ public class DownloadMultiSdfServlet extends HttpServlet {
         }
     }
 
-    private List<Candidate> getRequestedCandidates(HttpServletRequest request, List<Generation> generations) {
+    private List<CandidateRecord> getRequestedCandidates(HttpServletRequest request, List<Generation> generations) {
         // Try to get the generation number.
         // When this fails the best conformers of the best candidates will be returned.
         try {
@@ -67,7 +67,7 @@ public class DownloadMultiSdfServlet extends HttpServlet {
         return getRequestedCandidatesFromGenerations(request, generations);
     }
 
-    private List<Candidate> getRequestedCandidatesFromGenerations(HttpServletRequest request, List<Generation> generations) {
+    private List<CandidateRecord> getRequestedCandidatesFromGenerations(HttpServletRequest request, List<Generation> generations) {
         if (ServletUtils.getBooleanParameterFromRequest(request, "bestOnly")) {
             return generations.stream()
                     .map(Generation::getFittestCandidate).collect(Collectors.toList());
@@ -59,7 +59,7 @@ public class EvolveServlet extends HttpServlet {
             // Create new compoundEvolver
             CompoundEvolver compoundEvolver = handleRequest(request);
             compoundEvolver.evolve();
-            mapper.writeValue(response.getOutputStream(), GenerateCsv.generateCsvFile(compoundEvolver.getFitness(), "\n"));
+            mapper.writeValue(response.getOutputStream(), GenerateCsv.generateCsvFile(compoundEvolver.getStatistics().getScoreTable(), "\n"));
         } catch (Exception e) {
             e.printStackTrace();
             response.setStatus(400);
@@ -205,6 +205,21 @@ public class EvolveServlet extends HttpServlet {
                 request.getParameter("selectionMethod"));
         initialPopulation.setSelectionMethod(selectionMethod);
 
+        // Get tournament size, the default of the population is kept when it is not given
+        try {
+            int tournamentSize = getIntegerParameterFromRequest(request, "tournamentSize");
+            initialPopulation.setTournamentSize(tournamentSize);
+        } catch (ServletUtils.FormFieldHandlingException e) {
+            if (e.cause != ServletUtils.FormFieldHandlingException.Cause.NULL && e.cause != ServletUtils.FormFieldHandlingException.Cause.EMPTY)
+                throw e;
+        }
+
+        // Get replacement policy for a steady state evolution
+        String replacementPolicy = request.getParameter("replacementPolicy");
+        if (replacementPolicy != null && !replacementPolicy.isEmpty()) {
+            initialPopulation.setReplacementPolicy(Population.ReplacementPolicy.fromString(replacementPolicy));
+        }
+
         initialPopulation.setSkipcheck(!getBooleanParameterFromRequest(request, "setFillGen"));
 
         SessionEvolutionProgressConnector progressConnector = new SessionEvolutionProgressConnector();
@@ -247,6 +262,53 @@ public class EvolveServlet extends HttpServlet {
                 request.getParameter("terminationCondition"));
         evolver.setTerminationCondition(terminationCondition);
 
+        // Get and set evolution mode, generational evolution is used when it is not given
+        String evolutionMode = request.getParameter("evolutionMode");
+        if (evolutionMode != null && !evolutionMode.isEmpty()) {
+            evolver.setEvolutionMode(CompoundEvolver.EvolutionMode.fromString(evolutionMode));
+        }
+
+        // Get island model parameters, a single population is evolved when they are not given
+        try {
+            int islandCount = getIntegerParameterFromRequest(request, "islandCount");
+            evolver.setIslandCount(islandCount);
+        } catch (ServletUtils.FormFieldHandlingException e) {
+            if (e.cause != ServletUtils.FormFieldHandlingException.Cause.NULL && e.cause != ServletUtils.FormFieldHandlingException.Cause.EMPTY)
+                throw e;
+        }
+        try {
+            int migrationInterval = getIntegerParameterFromRequest(request, "migrationInterval");
+            evolver.setMigrationInterval(migrationInterval);
+        } catch (ServletUtils.FormFieldHandlingException e) {
+            if (e.cause != ServletUtils.FormFieldHandlingException.Cause.NULL && e.cause != ServletUtils.FormFieldHandlingException.Cause.EMPTY)
+                throw e;
+        }
+        try {
+            int migrantCount = getIntegerParameterFromRequest(request, "migrantCount");
+            evolver.setMigrantCount(migrantCount);
+        } catch (ServletUtils.FormFieldHandlingException e) {
+            if (e.cause != ServletUtils.FormFieldHandlingException.Cause.NULL && e.cause != ServletUtils.FormFieldHandlingException.Cause.EMPTY)
+                throw e;
+        }
+        String migrationTopology = request.getParameter("migrationTopology");
+        if (migrationTopology != null && !migrationTopology.isEmpty()) {
+            evolver.setMigrationTopology(CompoundEvolver.MigrationTopology.fromString(migrationTopology));
+        }
+        String[] islandSelectionMethods = request.getParameterValues("islandSelectionMethods");
+        if (islandSelectionMethods != null) {
+            evolver.setIslandSelectionMethods(Arrays.stream(islandSelectionMethods)
+                    .filter(method -> !method.isEmpty())
+                    .map(Population.SelectionMethod::fromString)
+                    .collect(Collectors.toList()));
+        }
+        String[] islandMutationMethods = request.getParameterValues("islandMutationMethods");
+        if (islandMutationMethods != null) {
+            evolver.setIslandMutationMethods(Arrays.stream(islandMutationMethods)
+                    .filter(method -> !method.isEmpty())
+                    .map(Population.MutationMethod::fromString)
+                    .collect(Collectors.toList()));
+        }
+
         // Get and set fitness measure that should be used
         evolver.setFitnessMeasure(CompoundEvolver.FitnessMeasure.fromString(
                 request.getParameter("fitnessMeasure")));
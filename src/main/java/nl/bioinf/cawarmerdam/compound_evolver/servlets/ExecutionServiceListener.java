@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.servlets;
+
+import nl.bioinf.cawarmerdam.compound_evolver.util.ExecutionService;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listener that shuts down the shared thread pools when the web application is stopped.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class ExecutionServiceListener implements ServletContextListener {
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    @Override
+    public void contextInitialized(ServletContextEvent servletContextEvent) {
+        // The pools are created when they are first used
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent servletContextEvent) {
+        ExecutionService.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
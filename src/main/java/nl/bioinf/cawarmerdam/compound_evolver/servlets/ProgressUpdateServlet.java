@@ -4,14 +4,12 @@
  */
 package nl.bioinf.cawarmerdam.compound_evolver.servlets;
 
-import chemaxon.formats.MolExporter;
-import chemaxon.marvin.plugin.PluginException;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
-import nl.bioinf.cawarmerdam.compound_evolver.model.Candidate;
+import nl.bioinf.cawarmerdam.compound_evolver.model.CandidateRecord;
 import nl.bioinf.cawarmerdam.compound_evolver.model.SessionEvolutionProgressConnector;
 import nl.bioinf.cawarmerdam.compound_evolver.util.ServletUtils;
 import nl.bioinf.cawarmerdam.compound_evolver.util.UnknownProgressException;
@@ -21,8 +19,6 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.stream.Collectors;
 
 /**
  * Servlet used for acquiring updates from the evolution.
@@ -41,7 +37,7 @@ public class ProgressUpdateServlet extends HttpServlet {
             SessionEvolutionProgressConnector progressConnector = handleProgressUpdateRequest(request);
             // Get object mapper
             SimpleModule module = new SimpleModule();
-            module.addSerializer(Candidate.class, new CandidateSerializer());
+            module.addSerializer(CandidateRecord.class, new CandidateRecordSerializer());
             ObjectMapper mapper = new ObjectMapper();
             mapper.registerModule(module);
 
@@ -68,57 +64,37 @@ public class ProgressUpdateServlet extends HttpServlet {
 }
 
 /**
- * Class that is used to slim down candidates for transfer with the client.
+ * Class that is used to slim down candidate records for transfer with the client.
  * This is done by only serializing those fields that the client needs
  *
  * @author C.A. (Robert) Warmerdam
  * @author c.a.warmerdam@st.hanze.nl
  * @version 0.0.1
  */
-class CandidateSerializer extends StdSerializer<Candidate> {
+class CandidateRecordSerializer extends StdSerializer<CandidateRecord> {
 
-    CandidateSerializer() {
+    CandidateRecordSerializer() {
         this(null);
     }
 
-    private CandidateSerializer(Class<Candidate> t) {
+    private CandidateRecordSerializer(Class<CandidateRecord> t) {
         super(t);
     }
 
     @Override
     public void serialize(
-            Candidate candidate, JsonGenerator jgen, SerializerProvider provider)
+            CandidateRecord candidate, JsonGenerator jgen, SerializerProvider provider)
             throws IOException {
 
         jgen.writeStartObject();
         jgen.writeNumberField("id", candidate.getIdentifier());
-        String phenotypeName;
-        try {
-            phenotypeName = candidate.getPhenotypeName();
-        } catch (PluginException e) {
-            phenotypeName = "Anonymous compound";
-        }
-        String smilesString;
-        try {
-            smilesString = candidate.getPhenotypeSmiles();
-        } catch (IOException e) {
-            smilesString = "";
-        }
         // Write all fields that are necessary to the client.
-        jgen.writeStringField("smiles", smilesString);
-        jgen.writeStringField("iupacName", phenotypeName);
+        jgen.writeStringField("smiles", candidate.getSmiles());
         jgen.writeNumberField("rawScore", candidate.getRawScore());
         jgen.writeNumberField("ligandEfficiency", candidate.getLigandEfficiency());
         jgen.writeNumberField("ligandLipophilicityEfficiency", candidate.getLigandLipophilicityEfficiency());
-        jgen.writeStringField("species", candidate.getSpecies().toString());
-        jgen.writeObjectField("reactants", Arrays.stream(candidate.getReactants()).map(molecule -> {
-            try {
-                return MolExporter.exportToFormat(molecule, "smiles");
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            return null;
-        }).collect(Collectors.toList()));
+        jgen.writeStringField("species", candidate.getSpeciesName());
+        jgen.writeObjectField("reactants", candidate.getReactantSmiles());
         jgen.writeEndObject();
     }
 }
@@ -1,11 +1,5 @@
 package nl.bioinf.cawarmerdam.compound_evolver.util;
 
-import chemaxon.calculations.Ring;
-import chemaxon.calculations.TopologyAnalyser;
-import chemaxon.marvin.calculations.HBDAPlugin;
-import chemaxon.marvin.calculations.TPSAPlugin;
-import chemaxon.marvin.calculations.logPPlugin;
-import chemaxon.marvin.calculations.pKaPlugin;
 import chemaxon.marvin.plugin.PluginException;
 import chemaxon.struc.Molecule;
 
@@ -14,13 +8,6 @@ import java.util.OptionalDouble;
 
 public class BBBScoreCalculator {
 
-    private static final logPPlugin lpPlugin = new logPPlugin();
-    private static final HBDAPlugin hbdaPlugin = new HBDAPlugin();
-    private static final TPSAPlugin tpsaPlugin = new TPSAPlugin();
-    private static final TopologyAnalyser topologyAnalyser = new TopologyAnalyser();
-    private static final pKaPlugin pkaCalc = new pKaPlugin();
-
-
     //Don't allow instantiation of the class
     private BBBScoreCalculator() {
     }
@@ -65,37 +52,26 @@ public class BBBScoreCalculator {
      * @return the BBB score for the molecule, or 0 if an error is thrown while trying to calculate the BBB score
      */
     public static double getBBB(Molecule m) {
-        Ring r = new Ring();
-        r.setMolecule(m);
+        return getBBB(new DescriptorBundle(m));
+    }
 
-        // Set up plugins
+    /**
+     * Calculates the Blood Brain Barrier Score from the descriptors of a molecule, based on this paper: <href>https://pubs.acs.org/doi/10.1021/acs.jmedchem.9b01220</href>
+     *
+     * @param descriptors The descriptors of the molecule to get the BBB score for
+     * @return the BBB score for the molecule, or 0 if an error is thrown while trying to calculate the BBB score
+     */
+    public static double getBBB(DescriptorBundle descriptors) {
         try {
-            lpPlugin.setMolecule(m);
-
-            lpPlugin.run();
-
-            hbdaPlugin.setMolecule(m);
-            hbdaPlugin.setExcludeSulfur(true);
-            hbdaPlugin.setExcludeHalogens(true);
-            hbdaPlugin.run();
-
-            tpsaPlugin.setMolecule(m);
-            tpsaPlugin.run();
-
-            topologyAnalyser.setMolecule(m);
-
-            pkaCalc.setMolecule(m);
-            pkaCalc.run();
-
             // All variables
-            double mr = m.getMass();
-            double hbd = hbdaPlugin.getDonorAtomCount();
-            double hba = hbdaPlugin.getAcceptorAtomCount();
-            double psa = tpsaPlugin.getSurfaceArea();
+            double mr = descriptors.getMass();
+            double hbd = descriptors.getHydrogenBondDonorCount();
+            double hba = descriptors.getHydrogenBondAcceptorCount();
+            double psa = descriptors.getPolarSurfaceArea();
             double mwhbn = Math.pow(mr, -0.5) * (hba + hbd);
 
-            double[] acidicpKaValues = pkaCalc.getMacropKaValues(pKaPlugin.ACIDIC);
-            double[] basicpKaValues = pkaCalc.getMacropKaValues(pKaPlugin.BASIC);
+            double[] acidicpKaValues = descriptors.getAcidicpKaValues();
+            double[] basicpKaValues = descriptors.getBasicpKaValues();
             OptionalDouble maxBasicpKa = basicpKaValues != null ? Arrays.stream(basicpKaValues).max() : OptionalDouble.empty();
             OptionalDouble minAcidicpKa = acidicpKaValues != null ? Arrays.stream(acidicpKaValues).min() : OptionalDouble.empty();
             double pKa;
@@ -107,8 +83,8 @@ public class BBBScoreCalculator {
                 pKa = 8.11d;
             }
 
-            int arom = r.aromaticRingCount();
-            double bbb_score = arom_val(arom) + HA_val(m.getAtomCount() - m.getExplicitHcount()) +
+            int arom = descriptors.getAromaticRingCount();
+            double bbb_score = arom_val(arom) + HA_val(descriptors.getHeavyAtomCount()) +
                     MWHBN_val(mwhbn) * 1.5d + TPSA_val(psa) * 2.0d + PKa_val(pKa) * 0.5d;
             return bbb_score;
         } catch (PluginException e) {
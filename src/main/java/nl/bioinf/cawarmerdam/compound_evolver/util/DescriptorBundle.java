@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.util;
+
+import chemaxon.calculations.Ring;
+import chemaxon.marvin.plugin.PluginException;
+import chemaxon.sss.search.SearchException;
+import chemaxon.struc.Molecule;
+
+/**
+ * Bundle of the molecular descriptors of a single molecule. Every descriptor is calculated the first time that it is
+ * requested, after which it is remembered, so that the validity filters, the ligand efficiencies, the QED and the
+ * BBB score share the same calculations. Descriptors are calculated with the plugins of the {@link DescriptorService}.
+ * <p>
+ * The molecule should not be modified after the bundle is created, since the remembered descriptors would no
+ * longer belong to it.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class DescriptorBundle {
+    private final Molecule molecule;
+    private Double mass;
+    private Double exactMass;
+    private Integer heavyAtomCount;
+    private Double logP;
+    private int[] hydrogenBondAtomCounts;
+    private Double polarSurfaceArea;
+    private Integer rotatableBondCount;
+    private Integer aromaticRingCount;
+    private Integer alertCount;
+    private double[][] macropKaValues;
+
+    /**
+     * Constructor for a descriptor bundle.
+     *
+     * @param molecule The molecule to calculate the descriptors of.
+     */
+    public DescriptorBundle(Molecule molecule) {
+        this.molecule = molecule;
+    }
+
+    /**
+     * Constructor for a descriptor bundle with descriptors that were calculated before.
+     *
+     * @param molecule                  The molecule to calculate the other descriptors of.
+     * @param exactMass                 The exact molecular mass.
+     * @param logP                      The partition coefficient, or NaN if it should be calculated again.
+     * @param hydrogenBondDonorCount    The hydrogen bond donor atom count, or a negative value if the
+     *                                  hydrogen bond atoms should be counted again.
+     * @param hydrogenBondAcceptorCount The hydrogen bond acceptor atom count.
+     */
+    public DescriptorBundle(Molecule molecule, double exactMass, double logP,
+                            int hydrogenBondDonorCount, int hydrogenBondAcceptorCount) {
+        this(molecule);
+        this.exactMass = exactMass;
+        this.logP = Double.isNaN(logP) ? null : logP;
+        if (hydrogenBondDonorCount >= 0 && hydrogenBondAcceptorCount >= 0) {
+            this.hydrogenBondAtomCounts = new int[]{hydrogenBondDonorCount, hydrogenBondAcceptorCount};
+        }
+    }
+
+    /**
+     * Getter for the molecule that the descriptors belong to.
+     *
+     * @return the molecule.
+     */
+    public Molecule getMolecule() {
+        return molecule;
+    }
+
+    /**
+     * Getter for the molecular mass.
+     *
+     * @return the molecular mass.
+     */
+    public synchronized double getMass() {
+        if (mass == null) {
+            mass = molecule.getMass();
+        }
+        return mass;
+    }
+
+    /**
+     * Getter for the exact molecular mass.
+     *
+     * @return the exact molecular mass.
+     */
+    public synchronized double getExactMass() {
+        if (exactMass == null) {
+            exactMass = molecule.getExactMass();
+        }
+        return exactMass;
+    }
+
+    /**
+     * Getter for the amount of heavy atoms.
+     *
+     * @return the amount of atoms that are not hydrogen.
+     * @throws PluginException if the atoms could not be counted.
+     */
+    public synchronized int getHeavyAtomCount() throws PluginException {
+        if (heavyAtomCount == null) {
+            heavyAtomCount = DescriptorService.getHeavyAtomCount(molecule);
+        }
+        return heavyAtomCount;
+    }
+
+    /**
+     * Getter for the partition coefficient.
+     *
+     * @return the logP value.
+     * @throws PluginException if the partition coefficient could not be calculated.
+     */
+    public synchronized double getLogP() throws PluginException {
+        if (logP == null) {
+            logP = DescriptorService.getLogP(molecule);
+        }
+        return logP;
+    }
+
+    /**
+     * Getter for the amount of hydrogen bond donor atoms, excluding sulfur and halogens.
+     *
+     * @return the hydrogen bond donor atom count.
+     * @throws PluginException if the hydrogen bond donors could not be determined.
+     */
+    public synchronized int getHydrogenBondDonorCount() throws PluginException {
+        return getHydrogenBondAtomCounts()[0];
+    }
+
+    /**
+     * Getter for the amount of hydrogen bond acceptor atoms, excluding sulfur and halogens.
+     *
+     * @return the hydrogen bond acceptor atom count.
+     * @throws PluginException if the hydrogen bond acceptors could not be determined.
+     */
+    public synchronized int getHydrogenBondAcceptorCount() throws PluginException {
+        return getHydrogenBondAtomCounts()[1];
+    }
+
+    /**
+     * Getter for the topological polar surface area.
+     *
+     * @return the polar surface area.
+     * @throws PluginException if the polar surface area could not be calculated.
+     */
+    public synchronized double getPolarSurfaceArea() throws PluginException {
+        if (polarSurfaceArea == null) {
+            polarSurfaceArea = DescriptorService.getPolarSurfaceArea(molecule);
+        }
+        return polarSurfaceArea;
+    }
+
+    /**
+     * Getter for the amount of rotatable bonds.
+     *
+     * @return the rotatable bond count.
+     */
+    public synchronized int getRotatableBondCount() {
+        if (rotatableBondCount == null) {
+            rotatableBondCount = DescriptorService.getRotatableBondCount(molecule);
+        }
+        return rotatableBondCount;
+    }
+
+    /**
+     * Getter for the amount of aromatic rings.
+     *
+     * @return the aromatic ring count.
+     */
+    public synchronized int getAromaticRingCount() {
+        if (aromaticRingCount == null) {
+            Ring ring = new Ring();
+            ring.setMolecule(molecule);
+            aromaticRingCount = ring.aromaticRingCount();
+        }
+        return aromaticRingCount;
+    }
+
+    /**
+     * Getter for the amount of possibly problematic structural components.
+     *
+     * @return the amount of structural alerts.
+     * @throws SearchException if searching for a structural component failed.
+     */
+    public synchronized int getAlertCount() throws SearchException {
+        if (alertCount == null) {
+            alertCount = QuantitativeDrugEstimateCalculator.getAlerts(molecule);
+        }
+        return alertCount;
+    }
+
+    /**
+     * Getter for the acidic macro pKa values.
+     *
+     * @return the acidic pKa values, or null if there are none.
+     * @throws PluginException if the pKa values could not be calculated.
+     */
+    public synchronized double[] getAcidicpKaValues() throws PluginException {
+        return getMacropKaValues()[0];
+    }
+
+    /**
+     * Getter for the basic macro pKa values.
+     *
+     * @return the basic pKa values, or null if there are none.
+     * @throws PluginException if the pKa values could not be calculated.
+     */
+    public synchronized double[] getBasicpKaValues() throws PluginException {
+        return getMacropKaValues()[1];
+    }
+
+    /**
+     * Gets the hydrogen bond donor and acceptor atom counts, which are calculated together.
+     *
+     * @return an array with the donor atom count at index 0 and the acceptor atom count at index 1.
+     * @throws PluginException if the hydrogen bond donors and acceptors could not be determined.
+     */
+    private int[] getHydrogenBondAtomCounts() throws PluginException {
+        if (hydrogenBondAtomCounts == null) {
+            hydrogenBondAtomCounts = DescriptorService.getHydrogenBondAtomCounts(molecule);
+        }
+        return hydrogenBondAtomCounts;
+    }
+
+    /**
+     * Gets the acidic and basic macro pKa values, which are calculated together.
+     *
+     * @return an array with the acidic pKa values at index 0 and the basic pKa values at index 1.
+     * @throws PluginException if the pKa values could not be calculated.
+     */
+    private double[][] getMacropKaValues() throws PluginException {
+        if (macropKaValues == null) {
+            macropKaValues = DescriptorService.getMacropKaValues(molecule);
+        }
+        return macropKaValues;
+    }
+}
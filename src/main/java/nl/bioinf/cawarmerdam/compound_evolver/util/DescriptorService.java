@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.util;
+
+import chemaxon.calculations.TopologyAnalyser;
+import chemaxon.marvin.calculations.ElementalAnalyserPlugin;
+import chemaxon.marvin.calculations.HBDAPlugin;
+import chemaxon.marvin.calculations.TPSAPlugin;
+import chemaxon.marvin.calculations.logPPlugin;
+import chemaxon.marvin.calculations.pKaPlugin;
+import chemaxon.marvin.plugin.PluginException;
+import chemaxon.struc.Molecule;
+
+/**
+ * Service that calculates molecular descriptors with Chemaxon plugins. The plugins hold the molecule that they
+ * were last run with, so a plugin can not be shared between threads. Every thread therefore gets its own instance of
+ * every plugin, which it reuses for every molecule. Every method sets the molecule, runs the plugin and reads the
+ * result at once, so the result always belongs to the given molecule.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class DescriptorService {
+    private static final ThreadLocal<logPPlugin> logPPlugins = ThreadLocal.withInitial(logPPlugin::new);
+    private static final ThreadLocal<HBDAPlugin> hydrogenBondPlugins = ThreadLocal.withInitial(HBDAPlugin::new);
+    private static final ThreadLocal<TPSAPlugin> polarSurfaceAreaPlugins = ThreadLocal.withInitial(TPSAPlugin::new);
+    private static final ThreadLocal<ElementalAnalyserPlugin> elementalAnalyserPlugins =
+            ThreadLocal.withInitial(ElementalAnalyserPlugin::new);
+    private static final ThreadLocal<pKaPlugin> pKaPlugins = ThreadLocal.withInitial(pKaPlugin::new);
+    private static final ThreadLocal<TopologyAnalyser> topologyAnalysers = ThreadLocal.withInitial(TopologyAnalyser::new);
+
+    //Don't allow instantiation of the class
+    private DescriptorService() {
+    }
+
+    /**
+     * Calculates the partition coefficient of a molecule.
+     *
+     * @param molecule The molecule to calculate the partition coefficient for.
+     * @return the logP value of the molecule.
+     * @throws PluginException if the partition coefficient could not be calculated.
+     */
+    public static double getLogP(Molecule molecule) throws PluginException {
+        logPPlugin plugin = logPPlugins.get();
+        plugin.setMolecule(molecule);
+        plugin.run();
+        return plugin.getlogPTrue();
+    }
+
+    /**
+     * Calculates the amount of hydrogen bond donor and acceptor atoms of a molecule, excluding sulfur and halogens.
+     *
+     * @param molecule The molecule to count the hydrogen bond donor and acceptor atoms of.
+     * @return an array with the donor atom count at index 0 and the acceptor atom count at index 1.
+     * @throws PluginException if the hydrogen bond donors and acceptors could not be determined.
+     */
+    public static int[] getHydrogenBondAtomCounts(Molecule molecule) throws PluginException {
+        HBDAPlugin plugin = hydrogenBondPlugins.get();
+        plugin.setMolecule(molecule);
+        plugin.setExcludeSulfur(true);
+        plugin.setExcludeHalogens(true);
+        plugin.run();
+        return new int[]{plugin.getDonorAtomCount(), plugin.getAcceptorAtomCount()};
+    }
+
+    /**
+     * Calculates the topological polar surface area of a molecule.
+     *
+     * @param molecule The molecule to calculate the polar surface area for.
+     * @return the polar surface area of the molecule.
+     * @throws PluginException if the polar surface area could not be calculated.
+     */
+    public static double getPolarSurfaceArea(Molecule molecule) throws PluginException {
+        TPSAPlugin plugin = polarSurfaceAreaPlugins.get();
+        plugin.setMolecule(molecule);
+        plugin.run();
+        return plugin.getSurfaceArea();
+    }
+
+    /**
+     * Calculates the amount of heavy atoms of a molecule.
+     *
+     * @param molecule The molecule to count the heavy atoms of.
+     * @return the amount of atoms that are not hydrogen.
+     * @throws PluginException if the atoms could not be counted.
+     */
+    public static int getHeavyAtomCount(Molecule molecule) throws PluginException {
+        ElementalAnalyserPlugin plugin = elementalAnalyserPlugins.get();
+        plugin.setMolecule(molecule);
+        plugin.run();
+        // Get the amount of atoms and substract the amount of hydrogen atoms because heavy atom count is
+        // not implemented in the Chemaxon API
+        return plugin.getAllAtomCount() - plugin.getAtomCount(1);
+    }
+
+    /**
+     * Calculates the amount of rotatable bonds of a molecule.
+     *
+     * @param molecule The molecule to count the rotatable bonds of.
+     * @return the amount of rotatable bonds.
+     */
+    public static int getRotatableBondCount(Molecule molecule) {
+        TopologyAnalyser analyser = topologyAnalysers.get();
+        analyser.setMolecule(molecule);
+        return analyser.rotatableBondCount();
+    }
+
+    /**
+     * Calculates the acidic and basic macro pKa values of a molecule.
+     *
+     * @param molecule The molecule to calculate the pKa values for.
+     * @return an array with the acidic pKa values at index 0 and the basic pKa values at index 1, which can be null.
+     * @throws PluginException if the pKa values could not be calculated.
+     */
+    public static double[][] getMacropKaValues(Molecule molecule) throws PluginException {
+        pKaPlugin plugin = pKaPlugins.get();
+        plugin.setMolecule(molecule);
+        plugin.run();
+        return new double[][]{plugin.getMacropKaValues(pKaPlugin.ACIDIC), plugin.getMacropKaValues(pKaPlugin.BASIC)};
+    }
+}
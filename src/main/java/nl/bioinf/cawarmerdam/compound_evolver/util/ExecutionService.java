@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.util;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service that owns the long-lived thread pools that are shared by every evolution in this JVM.
+ * Work is divided over a pool for CPU-bound work, such as conformer generation and validation,
+ * a pool for work that mostly waits on external processes, such as smina, Moloc, Scorpion and
+ * the Python helpers, and a pool that runs the reactions of candidates with a deadline.
+ * <p>
+ * The pools have bounded queues. When a queue is full, the submitting thread runs the task itself, which slows
+ * down the submitter instead of queueing an unbounded amount of work. Evolutions submit their work through a
+ * {@link TaskGroup}, which can be shut down without affecting the work of other evolutions.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class ExecutionService {
+    private static final int QUEUE_CAPACITY_FACTOR = 16;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static ExecutionService instance;
+    private final Map<PoolType, ThreadPoolExecutor> pools = new EnumMap<>(PoolType.class);
+
+    /**
+     * Constructor for the execution service. The pool sizes are read from the environment once.
+     */
+    private ExecutionService() {
+        for (PoolType type : PoolType.values()) {
+            int poolSize = getPoolSizeFromEnvironment(type);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(poolSize * QUEUE_CAPACITY_FACTOR),
+                    new NamedThreadFactory("compound-evolver-" + type.name, true),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            // Idle threads are released, and created again when work arrives
+            pool.allowCoreThreadTimeOut(true);
+            pools.put(type, pool);
+        }
+    }
+
+    /**
+     * Getter for the execution service of this JVM, which is created when it is first used.
+     *
+     * @return the execution service.
+     */
+    public static synchronized ExecutionService getInstance() {
+        if (instance == null) {
+            instance = new ExecutionService();
+        }
+        return instance;
+    }
+
+    /**
+     * Shuts down the pools of the execution service gracefully. Running work is given the timeout to finish,
+     * after which it is interrupted. A new execution service is created when it is used afterwards.
+     *
+     * @param timeout The maximum time to wait for running work.
+     * @param unit    The unit of the timeout.
+     */
+    public static synchronized void shutdown(long timeout, TimeUnit unit) {
+        if (instance == null) return;
+        for (ThreadPoolExecutor pool : instance.pools.values()) {
+            pool.shutdown();
+        }
+        try {
+            for (ThreadPoolExecutor pool : instance.pools.values()) {
+                if (!pool.awaitTermination(timeout, unit)) {
+                    pool.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            instance.pools.values().forEach(ThreadPoolExecutor::shutdownNow);
+            Thread.currentThread().interrupt();
+        }
+        instance = null;
+    }
+
+    /**
+     * Getter for the amount of threads in a pool.
+     *
+     * @param type The type of pool.
+     * @return the amount of threads.
+     */
+    public int getPoolSize(PoolType type) {
+        return pools.get(type).getMaximumPoolSize();
+    }
+
+    /**
+     * Getter for the amount of threads in a pool that are not running a task, minus the tasks that wait for a
+     * thread. This is an estimate, as the pool changes while it is counted.
+     *
+     * @param type The type of pool.
+     * @return the amount of idle threads.
+     */
+    public int getIdleThreadCount(PoolType type) {
+        ThreadPoolExecutor pool = pools.get(type);
+        return Math.max(0, pool.getMaximumPoolSize() - pool.getActiveCount() - pool.getQueue().size());
+    }
+
+    /**
+     * Creates a new task group that submits its tasks to a pool.
+     *
+     * @param type The type of pool to submit the tasks to.
+     * @return a new task group.
+     */
+    public TaskGroup newTaskGroup(PoolType type) {
+        return new TaskGroup(pools.get(type));
+    }
+
+    /**
+     * Submits a single task to a pool, outside of any task group.
+     *
+     * @param type The type of pool to submit the task to.
+     * @param task The task to run.
+     * @param <T>  The type of the result of the task.
+     * @return the future result of the task.
+     */
+    public <T> Future<T> submit(PoolType type, Callable<T> task) {
+        return pools.get(type).submit(task);
+    }
+
+    /**
+     * Reads the size of a pool from the environment. The size falls back to the POOL_SIZE environment variable.
+     *
+     * @param type The type of pool.
+     * @return the amount of threads in the pool.
+     */
+    private static int getPoolSizeFromEnvironment(PoolType type) {
+        String value = System.getenv(type.environmentVariable);
+        if (value == null) {
+            value = System.getenv("POOL_SIZE");
+        }
+        if (value != null && NumberCheckUtilities.isInteger(value, 10) && Integer.parseInt(value) > 0) {
+            return Integer.parseInt(value);
+        }
+        throw new RuntimeException(String.format(
+                "Environment variable '%s' or 'POOL_SIZE' was not a positive integer value", type.environmentVariable));
+    }
+
+    /**
+     * The types of pools.
+     */
+    public enum PoolType {
+        CPU("cpu", "CPU_POOL_SIZE"),
+        PROCESS("process", "PROCESS_POOL_SIZE"),
+        REACTION("reaction", "REACTION_POOL_SIZE");
+
+        private final String name;
+        private final String environmentVariable;
+
+        PoolType(String name, String environmentVariable) {
+            this.name = name;
+            this.environmentVariable = environmentVariable;
+        }
+    }
+
+    /**
+     * An executor service view on a shared pool. Shutting a task group down only affects the tasks that were
+     * submitted through the task group, the shared pool keeps running.
+     */
+    public static class TaskGroup extends AbstractExecutorService {
+        private final ExecutorService pool;
+        private final Set<Future<?>> tasks = ConcurrentHashMap.newKeySet();
+        private volatile boolean shutdown;
+
+        /**
+         * Constructor for a task group.
+         *
+         * @param pool The pool that runs the tasks.
+         */
+        private TaskGroup(ExecutorService pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException("The task group was shut down");
+            }
+            // Tasks that are submitted are futures, which are tracked so that they can be cancelled
+            Future<?> future = command instanceof Future ? (Future<?>) command : null;
+            if (future != null) {
+                tasks.add(future);
+            }
+            pool.execute(() -> {
+                try {
+                    command.run();
+                } finally {
+                    if (future != null) {
+                        tasks.remove(future);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> cancelled = new ArrayList<>();
+            for (Future<?> task : tasks) {
+                if (task.cancel(true) && task instanceof Runnable) {
+                    cancelled.add((Runnable) task);
+                }
+            }
+            tasks.clear();
+            return cancelled;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && tasks.isEmpty();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!isTerminated()) {
+                if (System.nanoTime() >= deadline) {
+                    return false;
+                }
+                Thread.sleep(10);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Thread factory that gives the threads of a pool recognizable names.
+     */
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+        private final String prefix;
+        private final boolean daemon;
+
+        NamedThreadFactory(String prefix, boolean daemon) {
+            this.prefix = prefix;
+            this.daemon = daemon;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(daemon);
+            return thread;
+        }
+    }
+}
@@ -24,6 +24,7 @@ public class GAParameters implements Serializable {
     private int populationSize;
     private int maxGenerations;
     private Double selectionRate;
+    private Integer tournamentSize;
     private Double mutationRate;
     private Double crossoverRate;
     private Double randomImmigrantRate;
@@ -93,6 +94,24 @@ public class GAParameters implements Serializable {
         this.selectionRate = selectionRate;
     }
 
+    /**
+     * Getter for the tournament size.
+     *
+     * @return the amount of candidates that compete in a single tournament.
+     */
+    public Integer getTournamentSize() {
+        return tournamentSize;
+    }
+
+    /**
+     * Setter for the tournament size.
+     *
+     * @param tournamentSize The amount of candidates that compete in a single tournament.
+     */
+    public void setTournamentSize(int tournamentSize) {
+        this.tournamentSize = tournamentSize;
+    }
+
     /**
      * Getter for the mutation rate.
      *
@@ -44,4 +44,24 @@ public class GenerateCsv {
         // Return the joined joiner object
         return joiner.toString();
     }
+
+    /**
+     * Method that generates a csv from a two dimensional array of numbers.
+     *
+     * @param data          The rows of numbers that have to be converted to a csv.
+     * @param lineSeparator The line separator to use.
+     * @return a string of all numbers in the rows separated by ', ', where the rows are separated by a line separator
+     * that is given.
+     */
+    public static String generateCsvFile(double[][] data, String lineSeparator) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < data.length; i++) {
+            if (i > 0) builder.append(lineSeparator);
+            for (int j = 0; j < data[i].length; j++) {
+                if (j > 0) builder.append(", ");
+                builder.append(data[i][j]);
+            }
+        }
+        return builder.toString();
+    }
 }
@@ -23,7 +23,15 @@ public class GenerationDataFileManager {
     }
 
     public void writeGeneration(Population population) throws IOException {
-        this.writer.write("Generation: " + population.getGenerationNumber() + "\n");
+        writeGeneration(population, "Generation: " + population.getGenerationNumber() + "\n");
+    }
+
+    public void writeGeneration(Population population, int islandIndex) throws IOException {
+        writeGeneration(population, "Generation: " + population.getGenerationNumber() + ", island: " + islandIndex + "\n");
+    }
+
+    private synchronized void writeGeneration(Population population, String header) throws IOException {
+        this.writer.write(header);
         List<Candidate> sortedList = MultiReceptorHelper.getCandidatesWithFitness(population.getCandidateList(), population.isSelective());
         sortedList.sort(Candidate::compareTo);
         for (int i = 0; i < sortedList.size(); i++) {
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.util;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative values with a log-linear bucket layout, as used by HDR histograms. Every power of two
+ * is split in the same amount of linear sub-buckets, so that the relative error of a recorded value is at most
+ * one in sixteen, whatever the magnitude of the value. Recording a value takes constant time, and the buckets only
+ * grow up to the largest recorded value.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private long[] buckets = new long[SUB_BUCKET_COUNT * 2];
+    private long count;
+    private long total;
+    private long minimum = Long.MAX_VALUE;
+    private long maximum;
+
+    /**
+     * Constructor for an empty histogram.
+     */
+    public LatencyHistogram() {
+    }
+
+    /**
+     * Constructor for a copy of a histogram.
+     *
+     * @param histogram The histogram to copy.
+     */
+    public LatencyHistogram(LatencyHistogram histogram) {
+        this.buckets = histogram.buckets.clone();
+        this.count = histogram.count;
+        this.total = histogram.total;
+        this.minimum = histogram.minimum;
+        this.maximum = histogram.maximum;
+    }
+
+    /**
+     * Records a value in the histogram.
+     *
+     * @param value The value to record, which should not be negative.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(String.format("Histogram values should not be negative, got %d", value));
+        }
+        int index = getBucketIndex(value);
+        if (index >= buckets.length) {
+            buckets = Arrays.copyOf(buckets, Math.max(index + 1, buckets.length * 2));
+        }
+        buckets[index]++;
+        count++;
+        total += value;
+        minimum = Math.min(minimum, value);
+        maximum = Math.max(maximum, value);
+    }
+
+    /**
+     * Adds the values that were recorded in another histogram to this histogram.
+     *
+     * @param histogram The histogram to add.
+     */
+    public void add(LatencyHistogram histogram) {
+        if (histogram.buckets.length > buckets.length) {
+            buckets = Arrays.copyOf(buckets, histogram.buckets.length);
+        }
+        for (int i = 0; i < histogram.buckets.length; i++) {
+            buckets[i] += histogram.buckets[i];
+        }
+        count += histogram.count;
+        total += histogram.total;
+        minimum = Math.min(minimum, histogram.minimum);
+        maximum = Math.max(maximum, histogram.maximum);
+    }
+
+    /**
+     * Getter for the amount of recorded values.
+     *
+     * @return the amount of recorded values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Getter for the sum of the recorded values.
+     *
+     * @return the sum of the recorded values.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Getter for the mean of the recorded values.
+     *
+     * @return the mean, or 0 if no value was recorded.
+     */
+    public double getMean() {
+        return count > 0 ? (double) total / count : 0;
+    }
+
+    /**
+     * Getter for the smallest recorded value.
+     *
+     * @return the smallest value, or 0 if no value was recorded.
+     */
+    public long getMinimum() {
+        return count > 0 ? minimum : 0;
+    }
+
+    /**
+     * Getter for the largest recorded value.
+     *
+     * @return the largest value, or 0 if no value was recorded.
+     */
+    public long getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * Getter for the median of the recorded values.
+     *
+     * @return the median.
+     */
+    public long getMedian() {
+        return getValueAtPercentile(50);
+    }
+
+    /**
+     * Getter for the 90th percentile of the recorded values.
+     *
+     * @return the 90th percentile.
+     */
+    public long getPercentile90() {
+        return getValueAtPercentile(90);
+    }
+
+    /**
+     * Getter for the 99th percentile of the recorded values.
+     *
+     * @return the 99th percentile.
+     */
+    public long getPercentile99() {
+        return getValueAtPercentile(99);
+    }
+
+    /**
+     * Gets the value below which the given percentage of the recorded values fall. The value is the largest value
+     * of the bucket that holds the percentile, but never more than the largest recorded value.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return the value at the percentile, or 0 if no value was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException(String.format(
+                    "The percentile should be between 0 and 100, got %s", percentile));
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(getHighestValue(i), maximum);
+            }
+        }
+        return maximum;
+    }
+
+    /**
+     * Gets the index of the bucket that a value is counted in. Values below twice the amount of sub-buckets have a
+     * bucket of their own, larger values share a bucket with values that have the same highest bits.
+     *
+     * @param value The value to get the bucket of.
+     * @return the bucket index.
+     */
+    private static int getBucketIndex(long value) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = Math.max(0, magnitude - SUB_BUCKET_BITS);
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * Gets the largest value that is counted in a bucket.
+     *
+     * @param index The index of the bucket.
+     * @return the largest value of the bucket.
+     */
+    private static long getHighestValue(int index) {
+        if (index < SUB_BUCKET_COUNT * 2) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -1,10 +1,5 @@
 package nl.bioinf.cawarmerdam.compound_evolver.util;
 
-import chemaxon.calculations.Ring;
-import chemaxon.calculations.TopologyAnalyser;
-import chemaxon.marvin.calculations.HBDAPlugin;
-import chemaxon.marvin.calculations.TPSAPlugin;
-import chemaxon.marvin.calculations.logPPlugin;
 import chemaxon.marvin.plugin.PluginException;
 import chemaxon.sss.search.MolSearch;
 import chemaxon.sss.search.SearchException;
@@ -22,11 +17,6 @@ public class QuantitativeDrugEstimateCalculator {
     private static final double[] AROM_PARAMS = {3.218d, 957.737d, 2.275d, 1.0E-12d, 1.318d, 0.376d, 312.337d};
     private static final double[] ALERTS_PARAMS = {0.010d, 1199.094d, -0.090d, 1.0E-12d, 0.186d, 0.875d, 417.725d};
 
-    private static final logPPlugin lpPlugin = new logPPlugin();
-    private static final HBDAPlugin hbdaPlugin = new HBDAPlugin();
-    private static final TPSAPlugin tpsaPlugin = new TPSAPlugin();
-    private static final TopologyAnalyser topologyAnalyser = new TopologyAnalyser();
-
     private static final double[] weights = {0.66d, 0.46d, 0.05d, 0.61d, 0.06d, 0.65d, 0.48d, 0.95d};
 
     //Don't allow instantiation of the class
@@ -149,7 +139,7 @@ public class QuantitativeDrugEstimateCalculator {
      * @return the amount of alerts
      * @throws SearchException when searching for a structural component fails
      */
-    private static int getAlerts(Molecule m) throws SearchException {
+    static int getAlerts(Molecule m) throws SearchException {
         MolSearch s = new MolSearch();
         int alerts = 0;
         s.setTarget(m);
@@ -187,34 +177,26 @@ public class QuantitativeDrugEstimateCalculator {
      * @return the QED value for the molecule, or 0 if an error is thrown while trying to calculate the QED
      */
     public static double getQED(Molecule m) {
-        Ring r = new Ring();
-        r.setMolecule(m);
+        return getQED(new DescriptorBundle(m));
+    }
 
-        // Set up plugins
+    /**
+     * Calculates the Quantitive Estimate of Druglikeness (QED) from the descriptors of a molecule.
+     *
+     * @param descriptors The descriptors of the molecule to get the QED for
+     * @return the QED value for the molecule, or 0 if an error is thrown while trying to calculate the QED
+     */
+    public static double getQED(DescriptorBundle descriptors) {
         try {
-            lpPlugin.setMolecule(m);
-
-            lpPlugin.run();
-
-            hbdaPlugin.setMolecule(m);
-            hbdaPlugin.setExcludeSulfur(true);
-            hbdaPlugin.setExcludeHalogens(true);
-            hbdaPlugin.run();
-
-            tpsaPlugin.setMolecule(m);
-            tpsaPlugin.run();
-
-            topologyAnalyser.setMolecule(m);
-
             // All variables
-            double mr = m.getMass();
-            double alogp = lpPlugin.getlogPTrue();
-            double hbd = hbdaPlugin.getDonorAtomCount();
-            double hba = hbdaPlugin.getAcceptorAtomCount();
-            double psa = tpsaPlugin.getSurfaceArea();
-            double rotb = topologyAnalyser.rotatableBondCount();
-            double arom = r.aromaticRingCount();
-            double alerts = getAlerts(m);
+            double mr = descriptors.getMass();
+            double alogp = descriptors.getLogP();
+            double hbd = descriptors.getHydrogenBondDonorCount();
+            double hba = descriptors.getHydrogenBondAcceptorCount();
+            double psa = descriptors.getPolarSurfaceArea();
+            double rotb = descriptors.getRotatableBondCount();
+            double arom = descriptors.getAromaticRingCount();
+            double alerts = descriptors.getAlertCount();
 
             return Math.exp((weights[0] * Math.log(ads(mr, MW_PARAMS)) +
                     weights[1] * Math.log(ads(alogp, ALOGP_PARAMS)) +
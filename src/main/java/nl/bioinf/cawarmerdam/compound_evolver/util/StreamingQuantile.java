@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.util;
+
+import java.util.Arrays;
+
+/**
+ * Estimates a quantile of a stream of values in constant time and memory per value, by using the P-square
+ * algorithm of Jain and Chlamtac. The estimate is exact for the first five values.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class StreamingQuantile {
+    private static final int MARKER_COUNT = 5;
+    private final double probability;
+    private final double[] heights = new double[MARKER_COUNT];
+    private final int[] positions = new int[MARKER_COUNT];
+    private final double[] desiredPositions = new double[MARKER_COUNT];
+    private final double[] increments;
+    private int count;
+
+    /**
+     * Constructor for a streaming quantile.
+     *
+     * @param probability The probability of the quantile to estimate, between 0 and 1.
+     */
+    public StreamingQuantile(double probability) {
+        if (probability < 0 || probability > 1) {
+            throw new IllegalArgumentException(String.format(
+                    "The quantile probability should be between 0 and 1, got %s", probability));
+        }
+        this.probability = probability;
+        this.increments = new double[]{0, probability / 2, probability, (1 + probability) / 2, 1};
+    }
+
+    /**
+     * Adds a value to the stream.
+     *
+     * @param value The value to add.
+     */
+    public void accept(double value) {
+        if (count < MARKER_COUNT) {
+            heights[count++] = value;
+            if (count == MARKER_COUNT) {
+                initializeMarkers();
+            }
+            return;
+        }
+        count++;
+        // Find the cell that the value falls in, extending the extreme markers if necessary
+        int cell;
+        if (value < heights[0]) {
+            heights[0] = value;
+            cell = 0;
+        } else if (value >= heights[MARKER_COUNT - 1]) {
+            heights[MARKER_COUNT - 1] = value;
+            cell = MARKER_COUNT - 2;
+        } else {
+            cell = 0;
+            while (value >= heights[cell + 1]) {
+                cell++;
+            }
+        }
+        for (int i = cell + 1; i < MARKER_COUNT; i++) {
+            positions[i]++;
+        }
+        for (int i = 0; i < MARKER_COUNT; i++) {
+            desiredPositions[i] += increments[i];
+        }
+        // Move the middle markers towards their desired positions
+        for (int i = 1; i < MARKER_COUNT - 1; i++) {
+            double difference = desiredPositions[i] - positions[i];
+            if ((difference >= 1 && positions[i + 1] - positions[i] > 1) ||
+                    (difference <= -1 && positions[i - 1] - positions[i] < -1)) {
+                int direction = difference > 0 ? 1 : -1;
+                double height = parabolic(i, direction);
+                if (heights[i - 1] < height && height < heights[i + 1]) {
+                    heights[i] = height;
+                } else {
+                    heights[i] = linear(i, direction);
+                }
+                positions[i] += direction;
+            }
+        }
+    }
+
+    /**
+     * Getter for the estimate of the quantile.
+     *
+     * @return the estimated quantile, or NaN if no values were added.
+     */
+    public double getQuantile() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (count < MARKER_COUNT) {
+            // Too few values for the markers, so the quantile is calculated from the sorted values
+            double[] sorted = Arrays.copyOf(heights, count);
+            Arrays.sort(sorted);
+            double rank = probability * (count - 1);
+            int lower = (int) Math.floor(rank);
+            int upper = (int) Math.ceil(rank);
+            return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+        }
+        return heights[2];
+    }
+
+    /**
+     * Getter for the amount of values that were added.
+     *
+     * @return the amount of values.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Initializes the markers from the first five values.
+     */
+    private void initializeMarkers() {
+        Arrays.sort(heights);
+        for (int i = 0; i < MARKER_COUNT; i++) {
+            positions[i] = i + 1;
+        }
+        desiredPositions[0] = 1;
+        desiredPositions[1] = 1 + 2 * probability;
+        desiredPositions[2] = 1 + 4 * probability;
+        desiredPositions[3] = 3 + 2 * probability;
+        desiredPositions[4] = 5;
+    }
+
+    /**
+     * Calculates a new height of a marker with the piecewise parabolic formula.
+     *
+     * @param i         The index of the marker.
+     * @param direction The direction that the marker moves in.
+     * @return the new height of the marker.
+     */
+    private double parabolic(int i, int direction) {
+        return heights[i] + (double) direction / (positions[i + 1] - positions[i - 1]) *
+                ((positions[i] - positions[i - 1] + direction) * (heights[i + 1] - heights[i]) /
+                        (positions[i + 1] - positions[i]) +
+                        (positions[i + 1] - positions[i] - direction) * (heights[i] - heights[i - 1]) /
+                                (positions[i] - positions[i - 1]));
+    }
+
+    /**
+     * Calculates a new height of a marker with linear interpolation.
+     *
+     * @param i         The index of the marker.
+     * @param direction The direction that the marker moves in.
+     * @return the new height of the marker.
+     */
+    private double linear(int i, int direction) {
+        return heights[i] + direction * (heights[i + direction] - heights[i]) /
+                (positions[i + direction] - positions[i]);
+    }
+}
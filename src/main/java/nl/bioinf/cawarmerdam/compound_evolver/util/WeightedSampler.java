@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.util;
+
+import java.util.Random;
+
+/**
+ * Samples indices in proportion to a set of weights in constant time, by using Vose's alias method.
+ * Building the sampler takes linear time in the amount of weights, so a sampler should be built once and
+ * reused for as long as the weights do not change.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class WeightedSampler {
+    private final double[] probabilities;
+    private final int[] aliases;
+    private final boolean degenerate;
+
+    /**
+     * Constructor for a weighted sampler.
+     *
+     * @param weights The non negative weights to sample indices with.
+     */
+    public WeightedSampler(double[] weights) {
+        int n = weights.length;
+        this.probabilities = new double[n];
+        this.aliases = new int[n];
+        double weightsSum = 0;
+        for (double weight : weights) {
+            weightsSum += weight;
+        }
+        // Without a positive and finite sum of weights the last index is always sampled
+        this.degenerate = n == 0 || !(weightsSum > 0) || Double.isInfinite(weightsSum);
+        if (degenerate) {
+            return;
+        }
+        // Scale the weights so that the average weight is one, and divide them in small and large weights
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / weightsSum;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        // Fill the column of every small weight with the excess of a large weight
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probabilities[less] = scaled[less];
+            aliases[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // The remaining columns are full, apart from rounding errors
+        while (largeCount > 0) {
+            probabilities[large[--largeCount]] = 1;
+        }
+        while (smallCount > 0) {
+            probabilities[small[--smallCount]] = 1;
+        }
+    }
+
+    /**
+     * Samples an index.
+     *
+     * @param random The random number generator to sample with.
+     * @return the sampled index.
+     */
+    public int sample(Random random) {
+        if (degenerate) {
+            return probabilities.length - 1;
+        }
+        int column = random.nextInt(probabilities.length);
+        return random.nextDouble() < probabilities[column] ? column : aliases[column];
+    }
+
+    /**
+     * Getter for the amount of indices that can be sampled.
+     *
+     * @return the amount of weights.
+     */
+    public int size() {
+        return probabilities.length;
+    }
+}
@@ -812,7 +812,32 @@
                                     proportionate selection or roulette wheel selection picks candidates by their
                                     relative probability, based on the fitness score. Truncated selection picks
                                     only the best individuals, exerting big selective pressure. Tournament selection
-                                    picks the best individual from two randomly selected individuals.
+                                    picks the best individual from a number of randomly selected individuals.
+                                </small>
+                            </div>
+                        </div>
+                        <div class="form-group row" ng-show="formModel.selectionMethod === 'Tournament selection'">
+                            <label for="tournament-size" class="col-sm-3 col-form-label">Tournament size</label>
+                            <div class="col-sm-9">
+                                <input type="number"
+                                       class="form-control"
+                                       ng-model="formModel.tournamentSize"
+                                       id="tournament-size"
+                                       name="tournamentSize"
+                                       min="1"
+                                       step="1"
+                                       ng-class="{
+                    'is-invalid':!compoundEvolverForm.tournamentSize.$valid && (!compoundEvolverForm.tournamentSize.$pristine || compoundEvolverForm.$submitted),
+                    'is-valid':compoundEvolverForm.tournamentSize.$valid && (!compoundEvolverForm.tournamentSize.$pristine || compoundEvolverForm.$submitted)}">
+                            </div>
+                            <div class="col-sm-9 offset-sm-3">
+                                <small class="form-text text-danger"
+                                       ng-show="(compoundEvolverForm.tournamentSize.$error.number || compoundEvolverForm.tournamentSize.$error.step || compoundEvolverForm.tournamentSize.$error.min) && (!compoundEvolverForm.$pristine || compoundEvolverForm.$submitted)">
+                                    An integer value (a whole number) more or equal to 1 is required
+                                </small>
+                                <small class="form-text">
+                                The number of randomly drawn candidates that compete in a single tournament.
+                                Larger tournaments exert more selective pressure.
                                 </small>
                             </div>
                         </div>
@@ -836,6 +861,134 @@
                                 </small>
                             </div>
                         </div>
+                        <div class="form-group row">
+                            <label for="evolution-mode" class="col-sm-3 col-form-label">Evolution mode</label>
+                            <div class="col-sm-9">
+                                <select class="form-control"
+                                        id="evolution-mode"
+                                        name="evolutionMode"
+                                        ng-model="formModel.evolutionMode"
+                                        required="required">
+                                    <option value="generational">Generational</option>
+                                    <option value="steady state">Steady state</option>
+                                </select>
+                                <small class="form-text">
+                                    In generational mode every generation is scored completely before a new
+                                    generation is produced. In steady state mode a scored candidate is inserted into
+                                    the population right away, after which a new candidate is produced, so that no
+                                    worker waits for the slowest candidate of a generation.
+                                </small>
+                            </div>
+                        </div>
+                        <div class="form-group row" ng-show="formModel.evolutionMode === 'steady state'">
+                            <label for="replacement-policy" class="col-sm-3 col-form-label">Replacement policy</label>
+                            <div class="col-sm-9">
+                                <select class="form-control"
+                                        id="replacement-policy"
+                                        name="replacementPolicy"
+                                        ng-model="formModel.replacementPolicy">
+                                    <option>Worst</option>
+                                    <option>Inverse tournament</option>
+                                    <option>Age</option>
+                                </select>
+                                <small class="form-text">
+                                    The replacement policy specifies which candidate leaves the population when a new
+                                    candidate is inserted in steady state mode. Worst replaces the worst candidate,
+                                    inverse tournament replaces the worst candidate of a tournament and age replaces
+                                    the oldest candidate.
+                                </small>
+                            </div>
+                        </div>
+                        <div class="form-group row" ng-show="formModel.evolutionMode === 'generational'">
+                            <label for="island-count" class="col-sm-3 col-form-label">Island count</label>
+                            <div class="col-sm-9">
+                                <input type="number"
+                                       class="form-control"
+                                       ng-model="formModel.islandCount"
+                                       id="island-count"
+                                       name="islandCount"
+                                       min="1"
+                                       step="1"
+                                       ng-class="{
+                    'is-invalid':!compoundEvolverForm.islandCount.$valid && (!compoundEvolverForm.islandCount.$pristine || compoundEvolverForm.$submitted),
+                    'is-valid':compoundEvolverForm.islandCount.$valid && (!compoundEvolverForm.islandCount.$pristine || compoundEvolverForm.$submitted)}">
+                            </div>
+                            <div class="col-sm-9 offset-sm-3">
+                                <small class="form-text text-danger"
+                                       ng-show="(compoundEvolverForm.islandCount.$error.number || compoundEvolverForm.islandCount.$error.step || compoundEvolverForm.islandCount.$error.min) && (!compoundEvolverForm.$pristine || compoundEvolverForm.$submitted)">
+                                    An integer value (a whole number) more or equal to 1 is required
+                                </small>
+                                <small class="form-text">
+                                The number of populations, or islands, that evolve in parallel. Islands periodically exchange
+                                their best candidates, which counters premature convergence. Islands are only used
+                                in generational mode.
+                                </small>
+                            </div>
+                        </div>
+                        <div class="form-group row" ng-show="formModel.evolutionMode === 'generational' && formModel.islandCount > 1">
+                            <label for="migration-interval" class="col-sm-3 col-form-label">Migration interval</label>
+                            <div class="col-sm-9">
+                                <input type="number"
+                                       class="form-control"
+                                       ng-model="formModel.migrationInterval"
+                                       id="migration-interval"
+                                       name="migrationInterval"
+                                       min="0"
+                                       step="1"
+                                       ng-class="{
+                    'is-invalid':!compoundEvolverForm.migrationInterval.$valid && (!compoundEvolverForm.migrationInterval.$pristine || compoundEvolverForm.$submitted),
+                    'is-valid':compoundEvolverForm.migrationInterval.$valid && (!compoundEvolverForm.migrationInterval.$pristine || compoundEvolverForm.$submitted)}">
+                            </div>
+                            <div class="col-sm-9 offset-sm-3">
+                                <small class="form-text text-danger"
+                                       ng-show="(compoundEvolverForm.migrationInterval.$error.number || compoundEvolverForm.migrationInterval.$error.step || compoundEvolverForm.migrationInterval.$error.min) && (!compoundEvolverForm.$pristine || compoundEvolverForm.$submitted)">
+                                    An integer value (a whole number) more or equal to 0 is required
+                                </small>
+                                <small class="form-text">
+                                The number of generations between two migrations. Set to 0 to never migrate.
+                                </small>
+                            </div>
+                        </div>
+                        <div class="form-group row" ng-show="formModel.evolutionMode === 'generational' && formModel.islandCount > 1">
+                            <label for="migrant-count" class="col-sm-3 col-form-label">Migrant count</label>
+                            <div class="col-sm-9">
+                                <input type="number"
+                                       class="form-control"
+                                       ng-model="formModel.migrantCount"
+                                       id="migrant-count"
+                                       name="migrantCount"
+                                       min="1"
+                                       step="1"
+                                       ng-class="{
+                    'is-invalid':!compoundEvolverForm.migrantCount.$valid && (!compoundEvolverForm.migrantCount.$pristine || compoundEvolverForm.$submitted),
+                    'is-valid':compoundEvolverForm.migrantCount.$valid && (!compoundEvolverForm.migrantCount.$pristine || compoundEvolverForm.$submitted)}">
+                            </div>
+                            <div class="col-sm-9 offset-sm-3">
+                                <small class="form-text text-danger"
+                                       ng-show="(compoundEvolverForm.migrantCount.$error.number || compoundEvolverForm.migrantCount.$error.step || compoundEvolverForm.migrantCount.$error.min) && (!compoundEvolverForm.$pristine || compoundEvolverForm.$submitted)">
+                                    An integer value (a whole number) more or equal to 1 is required
+                                </small>
+                                <small class="form-text">
+                                The number of best candidates that migrate from every island in a single migration.
+                                </small>
+                            </div>
+                        </div>
+                        <div class="form-group row" ng-show="formModel.evolutionMode === 'generational' && formModel.islandCount > 1">
+                            <label for="migration-topology" class="col-sm-3 col-form-label">Migration topology</label>
+                            <div class="col-sm-9">
+                                <select class="form-control"
+                                        id="migration-topology"
+                                        name="migrationTopology"
+                                        ng-model="formModel.migrationTopology">
+                                    <option value="ring">Ring</option>
+                                    <option value="fully connected">Fully connected</option>
+                                </select>
+                                <small class="form-text">
+                                    In a ring, candidates migrate to the next island. When fully connected, candidates
+                                    migrate to every other island.
+                                </small>
+                            </div>
+                        </div>
                         <div class="form-group row">
                             <label for="termination-condition" class="col-sm-3 col-form-label">Termination
                                 condition</label>
@@ -1370,6 +1523,18 @@
             <canvas id="score-distribution-chart" width="400" height="400"></canvas>
             <canvas id="species-distribution-chart" width="400" height="400"></canvas>
             <h6>Generation {{$rootScope.selectedGenerationNumber}}</h6>
+            <p class="mono-font" ng-show="getSelectedStatistics() != null">
+                best {{getSelectedStatistics().bestScore | number:4}}
+                (unchanged for {{getSelectedStatistics().generationsSinceImprovement}} generations),
+                mean {{getSelectedStatistics().mean | number:4}}
+                &plusmn; {{getSelectedStatistics().standardDeviation | number:4}},
+                min | Q1 | median | Q3 | max
+                {{getSelectedStatistics().minimum | number:4}} |
+                {{getSelectedStatistics().lowerQuartile | number:4}} |
+                {{getSelectedStatistics().median | number:4}} |
+                {{getSelectedStatistics().upperQuartile | number:4}} |
+                {{getSelectedStatistics().maximum | number:4}}
+            </p>
             <table class="table table-condensed table-borderless mono-font">
                 <thead>
                 <tr>
@@ -24,7 +24,14 @@ app.controller('FormInputCtrl', function ($scope, $rootScope) {
         elitismRate: 0.1,
         randomImmigrantRate: 0.1,
         selectionMethod: 'Tournament selection',
+        tournamentSize: 2,
         mutationMethod: 'Distance dependent',
+        evolutionMode: 'generational',
+        replacementPolicy: 'Worst',
+        islandCount: 1,
+        migrationInterval: 5,
+        migrantCount: 1,
+        migrationTopology: 'ring',
         terminationCondition: 'fixed',
         nonImprovingGenerationQuantity: 0.3,
         conformerCount: 50,
@@ -550,6 +557,18 @@ app.controller('FormInputCtrl', function ($scope, $rootScope) {
         return [];
     };
 
+    /**
+     * Get the score statistics of the selected generation, or nothing if there is no selected generation
+     * @returns {Object|null}
+     */
+    $scope.getSelectedStatistics = function () {
+        if ($scope.hasData() && $scope.generationSelected()) {
+            let generation = $rootScope.generations[$rootScope.selectedGenerationNumber];
+            return generation.statistics != null ? generation.statistics : null;
+        }
+        return null;
+    };
+
     /**
      * Gets the compound with the highest fitness
      * @param generation the generation to get the compound from
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the run-wide genotype registry.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class GenotypeRegistryTest {
+
+    @Test
+    public void registerRejectsDuplicates() {
+        GenotypeRegistry registry = new GenotypeRegistry(createReactantLists(10, 10));
+        assertTrue(registry.register(new int[]{1, 2}));
+        assertFalse(registry.register(new int[]{1, 2}));
+        assertTrue(registry.register(new int[]{2, 1}));
+        assertTrue(registry.contains(new int[]{1, 2}));
+        assertFalse(registry.contains(new int[]{3, 3}));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void genotypeWithKeyZeroIsRegistered() {
+        GenotypeRegistry registry = new GenotypeRegistry(createReactantLists(10, 10));
+        int[] genotype = {0, 0};
+        assertEquals(0, registry.getKey(genotype));
+        assertFalse(registry.contains(genotype));
+        assertTrue(registry.register(genotype));
+        assertFalse(registry.register(genotype));
+        assertTrue(registry.contains(genotype));
+        assertTrue(registry.unregister(genotype));
+        assertFalse(registry.contains(genotype));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void registryGrowsBeyondInitialCapacity() {
+        GenotypeRegistry registry = new GenotypeRegistry(createReactantLists(100, 100));
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 100; j++) {
+                assertTrue(registry.register(new int[]{i, j}));
+            }
+        }
+        assertEquals(10000, registry.size());
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 100; j++) {
+                assertTrue(registry.contains(new int[]{i, j}));
+            }
+        }
+    }
+
+    @Test
+    public void unregisterKeepsOtherGenotypes() {
+        GenotypeRegistry registry = new GenotypeRegistry(createReactantLists(50, 50));
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 50; j++) {
+                registry.register(new int[]{i, j});
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 50; j += 2) {
+                assertTrue(registry.unregister(new int[]{i, j}));
+            }
+        }
+        assertFalse(registry.unregister(new int[]{0, 0}));
+        assertEquals(1250, registry.size());
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 50; j++) {
+                assertEquals(j % 2 == 1, registry.contains(new int[]{i, j}));
+            }
+        }
+    }
+
+    @Test
+    public void largeReactantSpacesAreHashed() {
+        // Ten genes of eight bits do not fit in a single long
+        List<List<String>> reactantLists = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            reactantLists.add(createReactants(256));
+        }
+        GenotypeRegistry registry = new GenotypeRegistry(reactantLists);
+        int[] genotype = {255, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        int[] other = {255, 1, 2, 3, 4, 5, 6, 7, 8, 10};
+        assertTrue(registry.register(genotype));
+        assertFalse(registry.register(genotype.clone()));
+        assertFalse(registry.contains(other));
+        assertTrue(registry.register(other));
+    }
+
+    /**
+     * Creates reactant lists of the given sizes.
+     *
+     * @param sizes The size of every reactant list.
+     * @return the reactant lists.
+     */
+    private static List<List<String>> createReactantLists(int... sizes) {
+        List<List<String>> reactantLists = new ArrayList<>();
+        for (int size : sizes) {
+            reactantLists.add(createReactants(size));
+        }
+        return reactantLists;
+    }
+
+    /**
+     * Creates a reactant list of placeholder reactants.
+     *
+     * @param size The amount of reactants.
+     * @return the reactant list.
+     */
+    private static List<String> createReactants(int size) {
+        return new ArrayList<>(Collections.nCopies(size, "C"));
+    }
+}
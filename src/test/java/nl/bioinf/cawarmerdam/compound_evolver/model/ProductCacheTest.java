@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for the cache of reaction outcomes. Species are compared by identity, so the outcomes in these tests
+ * are stored without a species.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class ProductCacheTest {
+
+    @Test
+    public void outcomeIsStoredByGenotype() {
+        ProductCache cache = new ProductCache(4, Long.MAX_VALUE);
+        ProductCache.Outcome outcome = new ProductCache.Outcome(3);
+        cache.put(new int[]{1, 2}, null, outcome);
+        // Genotypes are compared by content
+        assertSame(outcome, cache.get(new int[]{1, 2}, null));
+        assertNull(cache.get(new int[]{2, 1}, null));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedOutcomeIsEvicted() {
+        ProductCache cache = new ProductCache(2, Long.MAX_VALUE);
+        cache.put(new int[]{1}, null, new ProductCache.Outcome(1));
+        cache.put(new int[]{2}, null, new ProductCache.Outcome(1));
+        // Using the first outcome makes the second the least recently used
+        assertNotNull(cache.get(new int[]{1}, null));
+        cache.put(new int[]{3}, null, new ProductCache.Outcome(1));
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(new int[]{1}, null));
+        assertNull(cache.get(new int[]{2}, null));
+        assertNotNull(cache.get(new int[]{3}, null));
+    }
+
+    @Test
+    public void outcomesAreEvictedByEstimatedMemory() {
+        ProductCache.Outcome first = new ProductCache.Outcome("Reactor produced an error");
+        ProductCache.Outcome second = new ProductCache.Outcome("Reactor produced an error");
+        // The memory bound only fits a single outcome
+        ProductCache cache = new ProductCache(10, first.getEstimatedBytes() + 1);
+        cache.put(new int[]{1}, null, first);
+        assertEquals(first.getEstimatedBytes(), cache.getEstimatedBytes());
+        cache.put(new int[]{2}, null, second);
+        assertEquals(1, cache.size());
+        assertNull(cache.get(new int[]{1}, null));
+        assertSame(second, cache.get(new int[]{2}, null));
+        assertEquals(second.getEstimatedBytes(), cache.getEstimatedBytes());
+    }
+
+    @Test
+    public void outcomeHoldsRejectionOrProducts() {
+        ProductCache.Outcome rejection = new ProductCache.Outcome("Reactor produced an error");
+        assertEquals("Reactor produced an error", rejection.getRejectionMessage());
+        assertEquals(0, rejection.getProductCount());
+
+        ProductCache.Outcome products = new ProductCache.Outcome(2);
+        assertNull(products.getRejectionMessage());
+        assertEquals(2, products.getProductCount());
+        assertNull(products.getProduct(1));
+    }
+
+    @Test
+    public void hitsAndMissesAreCounted() {
+        ProductCache cache = new ProductCache(1, Long.MAX_VALUE);
+        cache.recordHit();
+        cache.recordMiss();
+        cache.recordMiss();
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the sampling of random candidates. The genomes are finished without a reaction, so that the sampling
+ * is tested without reactants.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class RandomCompoundReactorTest {
+
+    @Test
+    public void exhaustedSpaceReturnsFewerCandidates() {
+        GenotypeRegistry registry = new GenotypeRegistry(createReactantLists(2, 2));
+        List<Candidate> candidates = new RandomCompoundReactor(10).sample(
+                random -> new int[]{random.nextInt(2), random.nextInt(2)},
+                candidate -> true, new AtomicLong(), 42, registry);
+        // Only four genomes exist, every one of which is sampled once
+        assertEquals(4, candidates.size());
+        Set<Long> keys = new HashSet<>();
+        for (Candidate candidate : candidates) {
+            keys.add(registry.getKey(candidate.getGenome()));
+        }
+        assertEquals(4, keys.size());
+    }
+
+    @Test
+    public void fullRegistryReturnsNoCandidates() {
+        GenotypeRegistry registry = new GenotypeRegistry(createReactantLists(1, 1));
+        assertTrue(registry.register(new int[]{0, 0}));
+        List<Candidate> candidates = new RandomCompoundReactor(1).sample(
+                random -> new int[]{0, 0}, candidate -> true, new AtomicLong(), 42, registry);
+        assertTrue(candidates.isEmpty());
+    }
+
+    @Test
+    public void duplicatesAreSampledWithoutRegistry() {
+        List<Candidate> candidates = new RandomCompoundReactor(10).sample(
+                random -> new int[]{0, 0}, candidate -> true, new AtomicLong(), 42, null);
+        assertEquals(10, candidates.size());
+    }
+
+    /**
+     * Creates reactant lists of the given sizes.
+     *
+     * @param sizes The size of every reactant list.
+     * @return the reactant lists.
+     */
+    private static List<List<String>> createReactantLists(int... sizes) {
+        List<List<String>> reactantLists = new ArrayList<>();
+        for (int size : sizes) {
+            reactantLists.add(new ArrayList<>(Collections.nCopies(size, "C")));
+        }
+        return reactantLists;
+    }
+}
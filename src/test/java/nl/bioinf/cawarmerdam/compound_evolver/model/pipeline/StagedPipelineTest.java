@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.model.pipeline;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the asynchronous staged pipeline.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class StagedPipelineTest {
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void valuesPassThroughEveryStageInOrder() throws Exception {
+        StagedPipeline<Integer, String> pipeline = StagedPipeline
+                .of((Integer value) -> value + 1, executor, 2)
+                .then(value -> value * 2, executor, 2)
+                .then(value -> "value " + value, executor, 1);
+        assertEquals("value 4", pipeline.submit(1).get(5, TimeUnit.SECONDS));
+        assertEquals("value 22", pipeline.submit(10).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failureSkipsLaterStages() throws Exception {
+        AtomicBoolean laterStageExecuted = new AtomicBoolean();
+        StagedPipeline<Integer, Integer> pipeline = StagedPipeline
+                .<Integer, Integer>of(value -> {
+                    throw new PipelineException("Rejected " + value);
+                }, executor, 1)
+                .then(value -> {
+                    laterStageExecuted.set(true);
+                    return value;
+                }, executor, 1);
+        try {
+            pipeline.submit(1).get(5, TimeUnit.SECONDS);
+            fail("The pipeline should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof PipelineException);
+            assertEquals("Rejected 1", e.getCause().getMessage());
+        }
+        assertFalse(laterStageExecuted.get());
+    }
+
+    @Test
+    public void stageRunsAtMostConcurrencyValuesAtOnce() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maximum = new AtomicInteger();
+        StagedPipeline<Integer, Integer> pipeline = StagedPipeline.of((Integer value) -> {
+            maximum.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return value;
+        }, executor, 2);
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(pipeline.submit(i));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i, (int) futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertTrue(maximum.get() <= 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void concurrencyShouldBePositive() {
+        StagedPipeline.of((Integer value) -> value, executor, 0);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the log-linear latency histogram.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMinimum());
+        assertEquals(0, histogram.getMaximum());
+        assertEquals(0, histogram.getMedian());
+        assertEquals(0, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < 32; value++) {
+            histogram.record(value);
+        }
+        assertEquals(32, histogram.getCount());
+        assertEquals(0, histogram.getMinimum());
+        assertEquals(31, histogram.getMaximum());
+        assertEquals(15, histogram.getMedian());
+        assertEquals(15.5, histogram.getMean(), 1e-12);
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        assertEquals(31, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void largeValuesHaveBoundedRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+        // Four sub-bucket bits bound the relative error to one sixteenth
+        assertRelativelyEqual(50000, histogram.getMedian());
+        assertRelativelyEqual(90000, histogram.getPercentile90());
+        assertRelativelyEqual(99000, histogram.getPercentile99());
+        assertEquals(100000L * 100001 / 2, histogram.getTotal());
+    }
+
+    @Test
+    public void percentileNeverExceedsMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        assertEquals(1000, histogram.getPercentile99());
+        assertEquals(1000, histogram.getMinimum());
+    }
+
+    @Test
+    public void addCombinesHistograms() {
+        LatencyHistogram first = new LatencyHistogram();
+        first.record(3);
+        first.record(5);
+        LatencyHistogram second = new LatencyHistogram();
+        second.record(1L << 40);
+        LatencyHistogram copy = new LatencyHistogram(first);
+        copy.add(second);
+        assertEquals(3, copy.getCount());
+        assertEquals(3, copy.getMinimum());
+        assertEquals(1L << 40, copy.getMaximum());
+        assertEquals(5, copy.getMedian());
+        // The copy does not share its buckets with the original
+        assertEquals(2, first.getCount());
+        assertEquals(5, first.getMaximum());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeValuesAreRejected() {
+        new LatencyHistogram().record(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentileShouldBeBetweenZeroAndHundred() {
+        new LatencyHistogram().getValueAtPercentile(101);
+    }
+
+    /**
+     * Asserts that a value of the histogram is within the precision of the histogram of the expected value.
+     *
+     * @param expected The expected value.
+     * @param actual   The value of the histogram.
+     */
+    private static void assertRelativelyEqual(long expected, long actual) {
+        assertTrue(String.format("Expected %d but was %d", expected, actual),
+                Math.abs(actual - expected) <= expected / 16);
+    }
+}
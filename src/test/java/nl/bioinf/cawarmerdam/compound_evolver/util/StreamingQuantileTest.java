@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the P-square quantile estimator.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class StreamingQuantileTest {
+
+    @Test
+    public void quantileIsNaNWithoutValues() {
+        assertTrue(Double.isNaN(new StreamingQuantile(0.5).getQuantile()));
+    }
+
+    @Test
+    public void quantileIsExactForFewValues() {
+        StreamingQuantile median = new StreamingQuantile(0.5);
+        median.accept(3);
+        median.accept(1);
+        median.accept(2);
+        assertEquals(2, median.getQuantile(), 0);
+
+        StreamingQuantile quartile = new StreamingQuantile(0.25);
+        for (double value : new double[]{4, 3, 2, 1}) {
+            quartile.accept(value);
+        }
+        assertEquals(1.75, quartile.getQuantile(), 1e-12);
+        assertEquals(4, quartile.getCount());
+    }
+
+    @Test
+    public void quantileApproximatesUniformStream() {
+        Random random = new Random(42);
+        StreamingQuantile median = new StreamingQuantile(0.5);
+        StreamingQuantile percentile90 = new StreamingQuantile(0.9);
+        for (int i = 0; i < 100000; i++) {
+            double value = random.nextDouble();
+            median.accept(value);
+            percentile90.accept(value);
+        }
+        assertEquals(0.5, median.getQuantile(), 0.01);
+        assertEquals(0.9, percentile90.getQuantile(), 0.01);
+        assertEquals(100000, median.getCount());
+    }
+
+    @Test
+    public void quantileApproximatesSkewedStream() {
+        Random random = new Random(7);
+        StreamingQuantile median = new StreamingQuantile(0.5);
+        for (int i = 0; i < 100000; i++) {
+            median.accept(-Math.log(1 - random.nextDouble()));
+        }
+        // The median of the standard exponential distribution is ln 2
+        assertEquals(Math.log(2), median.getQuantile(), 0.02);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void probabilityShouldBeBetweenZeroAndOne() {
+        new StreamingQuantile(1.5);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2018 C.A. (Robert) Warmerdam [c.a.warmerdam@st.hanze.nl].
+ * All rights reserved.
+ */
+package nl.bioinf.cawarmerdam.compound_evolver.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the alias table sampler.
+ *
+ * @author C.A. (Robert) Warmerdam
+ * @author c.a.warmerdam@st.hanze.nl
+ * @version 0.0.1
+ */
+public class WeightedSamplerTest {
+    private static final int SAMPLE_COUNT = 200000;
+
+    @Test
+    public void sampleFollowsWeights() {
+        double[] weights = {1, 2, 3, 4};
+        int[] counts = sample(new WeightedSampler(weights), weights.length);
+        for (int i = 0; i < weights.length; i++) {
+            assertEquals(weights[i] / 10, (double) counts[i] / SAMPLE_COUNT, 0.01);
+        }
+    }
+
+    @Test
+    public void sampleNeverReturnsZeroWeight() {
+        int[] counts = sample(new WeightedSampler(new double[]{0, 5, 0, 1}), 4);
+        assertEquals(0, counts[0]);
+        assertEquals(0, counts[2]);
+        assertEquals(5.0 / 6, (double) counts[1] / SAMPLE_COUNT, 0.01);
+    }
+
+    @Test
+    public void sampleReturnsLastIndexWithoutPositiveWeights() {
+        WeightedSampler sampler = new WeightedSampler(new double[]{0, 0, 0});
+        int[] counts = sample(sampler, 3);
+        assertEquals(SAMPLE_COUNT, counts[2]);
+        assertEquals(3, sampler.size());
+    }
+
+    @Test
+    public void sampleIsDeterministicForSeed() {
+        WeightedSampler sampler = new WeightedSampler(new double[]{0.5, 0.1, 0.4});
+        Random first = new Random(7);
+        Random second = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(sampler.sample(first), sampler.sample(second));
+        }
+    }
+
+    /**
+     * Counts how often every index is sampled.
+     *
+     * @param sampler The sampler to sample with.
+     * @param size    The amount of indices.
+     * @return the count of every index.
+     */
+    private static int[] sample(WeightedSampler sampler, int size) {
+        Random random = new Random(42);
+        int[] counts = new int[size];
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            counts[sampler.sample(random)]++;
+        }
+        return counts;
+    }
+}